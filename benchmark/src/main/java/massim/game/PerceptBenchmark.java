@@ -0,0 +1,73 @@
+package massim.game;
+
+import massim.protocol.messages.BinaryCodec;
+import massim.protocol.messages.Message;
+import massim.protocol.messages.RequestActionMessage;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks serializing and parsing a single agent's step percept, as sent to and received by the agents
+ * (as JSON or in the binary format, after all strings of the percept have been interned).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerceptBenchmark {
+
+    @Param({"100"})
+    public int size;
+
+    @Param({"20"})
+    public int agents;
+
+    @Param({"5", "8"})
+    public int vision;
+
+    private RequestActionMessage percept;
+    private String text;
+    private BinaryCodec encoder;
+    private BinaryCodec decoder;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var simulation = Worlds.create(size, agents, vision);
+        percept = simulation.preStep(20).get("A1");
+        text = percept.toJson().toString();
+        encoder = new BinaryCodec(BinaryCodec.Side.SERVER);
+        decoder = new BinaryCodec(BinaryCodec.Side.AGENT);
+        decoder.decode(encoder.encode(percept)); // both string tables now contain all strings of the percept
+        binary = encoder.encode(percept);
+    }
+
+    @Benchmark
+    public Object toJson() {
+        return percept.toJson();
+    }
+
+    @Benchmark
+    public String toText() {
+        return percept.toJson().toString();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return Message.buildFromJson(new JSONObject(text));
+    }
+
+    @Benchmark
+    public byte[] toBinary() {
+        return encoder.encode(percept);
+    }
+
+    @Benchmark
+    public Object parseBinary() {
+        return decoder.decode(binary);
+    }
+}
@@ -0,0 +1,64 @@
+package massim.game;
+
+import massim.protocol.messages.ActionMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parts of a simulation step that depend on the size of the world.
+ * The world is created again for each iteration, since the benchmarks change it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepBenchmark {
+
+    @Param({"50", "100"})
+    public int size;
+
+    @Param({"20", "50"})
+    public int agents;
+
+    @Param({"5"})
+    public int vision;
+
+    private Simulation simulation;
+    private List<Map<String, ActionMessage>> actionMixes;
+    private int step;
+    private int nextMix;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        simulation = Worlds.create(size, agents, vision);
+        actionMixes = Worlds.randomActionMixes(simulation, 64, new Random(42));
+        step = 20;
+        nextMix = 0;
+    }
+
+    @Benchmark
+    public Object prepareStep() {
+        return simulation.preStep(step++);
+    }
+
+    @Benchmark
+    public Object getStepPercepts() {
+        return simulation.getState().getStepPercepts();
+    }
+
+    @Benchmark
+    public void handleActions() {
+        simulation.step(step, actionMixes.get(nextMix++ % actionMixes.size()));
+    }
+
+    @Benchmark
+    public Object takeSnapshot() {
+        return simulation.getSnapshot();
+    }
+}
@@ -0,0 +1,76 @@
+package massim.game;
+
+import massim.helper.ConfigBuilder;
+import massim.protocol.messages.ActionMessage;
+import massim.util.Log;
+
+import java.util.*;
+
+import static massim.protocol.messages.scenario.Actions.*;
+
+/**
+ * Creates simulations and action mixes for the benchmarks.
+ */
+public abstract class Worlds {
+
+    private static final List<String> DIRECTIONS = List.of("n", "s", "e", "w");
+
+    /**
+     * @param size width and height of the grid
+     * @param agents the number of agents per team
+     * @param vision the vision of all agents
+     * @return a new simulation, in which some steps have already been played with random actions
+     */
+    public static Simulation create(int size, int agents, int vision) {
+        Log.setLogLevel(Log.Level.CRITICAL); // random actions fail a lot, which should not be measured
+        var config = ConfigBuilder.buildGameStateConfig(agents, size, vision);
+        ConfigBuilder.setObstacles(config, 0.45);
+        ConfigBuilder.setDispensers(config, 3, 5);
+        ConfigBuilder.setRoleZones(config, 3, 3);
+        var simulation = new Simulation(SimulationContext.fromConfig(config));
+        simulation.init(config.getInt("steps"), config, ConfigBuilder.buildTeams(agents));
+
+        var random = new Random(17);
+        var actions = randomActionMixes(simulation, 1, random).get(0);
+        for (var step = 0; step < 20; step++) {
+            simulation.preStep(step);
+            simulation.step(step, actions);
+            actions = randomActionMixes(simulation, 1, random).get(0);
+        }
+        return simulation;
+    }
+
+    /**
+     * Creates actions roughly resembling those of real teams: mostly moves, some skips, and a few of each
+     * of the actions dealing with blocks and obstacles.
+     * @return the given number of mappings from agent names to actions
+     */
+    public static List<Map<String, ActionMessage>> randomActionMixes(Simulation simulation, int count, Random random) {
+        var names = new ArrayList<String>();
+        for (var entity : simulation.getState().grid().entities().getAll()) names.add(entity.getAgentName());
+        Collections.sort(names);
+
+        var result = new ArrayList<Map<String, ActionMessage>>();
+        long id = 0;
+        for (var i = 0; i < count; i++) {
+            var actions = new HashMap<String, ActionMessage>();
+            for (var name : names) actions.put(name, randomAction(random, id++));
+            result.add(actions);
+        }
+        return result;
+    }
+
+    private static ActionMessage randomAction(Random random, long id) {
+        var roll = random.nextInt(100);
+        var direction = DIRECTIONS.get(random.nextInt(DIRECTIONS.size()));
+        if (roll < 45) return new ActionMessage(MOVE, id, List.of(direction));
+        if (roll < 65) return new ActionMessage(SKIP, id, List.of());
+        if (roll < 73) return new ActionMessage(REQUEST, id, List.of(direction));
+        if (roll < 83) return new ActionMessage(ATTACH, id, List.of(direction));
+        if (roll < 88) return new ActionMessage(DETACH, id, List.of(direction));
+        if (roll < 95) return new ActionMessage(ROTATE, id, List.of(random.nextBoolean()? "cw" : "ccw"));
+        var x = String.valueOf(random.nextInt(3) - 1);
+        var y = String.valueOf(random.nextInt(3) - 1);
+        return new ActionMessage(CLEAR, id, List.of(x, y));
+    }
+}
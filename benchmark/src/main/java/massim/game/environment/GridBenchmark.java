@@ -0,0 +1,61 @@
+package massim.game.environment;
+
+import massim.game.environment.positionable.Attachable;
+import massim.game.environment.positionable.Entity;
+import massim.helper.ConfigBuilder;
+import massim.protocol.data.Position;
+import massim.util.Log;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks moving and rotating an agent with a structure of attached blocks.
+ * The agent moves back and forth (or rotates in alternating directions), so the world does not change over time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GridBenchmark {
+
+    @Param({"100"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int blocks;
+
+    private Grid grid;
+    private Entity entity;
+    private boolean forward;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Log.setLogLevel(Log.Level.CRITICAL);
+        var state = ConfigBuilder.buildGameState(1, size, 5);
+        grid = state.grid();
+        entity = grid.entities().getByName("A1");
+        var center = Position.of(size / 2, size / 2);
+        grid.moveWithoutAttachments(entity, center);
+        Attachable anchor = entity;
+        for (var i = 1; i <= blocks; i++) {
+            var block = grid.blocks().create(grid.torus().moved(center, "s", i), "b1");
+            if (!grid.attach(anchor, block)) throw new IllegalStateException("Cannot attach block " + i);
+            anchor = block;
+        }
+    }
+
+    @Benchmark
+    public boolean moveWithAttached() {
+        forward = !forward;
+        return grid.moveWithAttached(entity, forward? "e" : "w", 1);
+    }
+
+    @Benchmark
+    public boolean rotateWithAttached() {
+        forward = !forward;
+        return grid.rotateWithAttached(entity, forward);
+    }
+}
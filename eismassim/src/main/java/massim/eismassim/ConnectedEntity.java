@@ -6,6 +6,7 @@ import eis.exceptions.PerceiveException;
 import eis.iilang.Action;
 import eis.iilang.Percept;
 import massim.protocol.messages.*;
+import massim.protocol.messages.scenario.StepPercept;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -29,6 +30,10 @@ public abstract class ConnectedEntity extends Entity {
     private static boolean scheduling = false; // send only one action per action-id?
     private static boolean notifications = false; // send percepts as notifications?
     private static boolean throwExceptions = false; // throw exceptions? (some agent platforms don't like that)
+    private static boolean deltaPercepts = false; // request step percepts as deltas?
+    private static boolean binaryProtocol = false; // request the binary message encoding?
+
+    private static final int MAX_STORED_PERCEPTS = 16; // how many complete percepts to keep as delta bases
 
     // config for this entity
     private final String username;
@@ -43,6 +48,10 @@ public abstract class ConnectedEntity extends Entity {
     private Socket socket;
     private InputStream in;
     private OutputStream out;
+    private boolean useDeltaPercepts = false; // negotiated with the server
+    private BinaryCodec codec; // negotiated with the server (null for JSON)
+    private final Object sendLock = new Object();
+    private final NavigableMap<Long, StepPercept> receivedPercepts = new TreeMap<>();
 
     private final Set<Percept> simStartPercepts = new HashSet<>();
     private final Set<Percept> previousSimStartPercepts = new HashSet<>();
@@ -130,6 +139,20 @@ public abstract class ConnectedEntity extends Entity {
         throwExceptions = true;
     }
 
+    /**
+     * Enables requesting delta percepts, i.e. the server only sends what changed since an earlier step percept.
+     */
+    static void enableDeltaPercepts() {
+        deltaPercepts = true;
+    }
+
+    /**
+     * Enables requesting the binary protocol, i.e. all messages after authentication are binary instead of JSON.
+     */
+    static void enableBinaryProtocol() {
+        binaryProtocol = true;
+    }
+
     /**
      * Enables json output for percepts.
      */
@@ -150,8 +173,9 @@ public abstract class ConnectedEntity extends Entity {
         new Thread(() -> {
             while (connected) {
                 try {
-                    var json = receiveMessage();
-                    var msg = Message.buildFromJson(json);
+                    var msg = receiveMessage();
+                    if (msg instanceof StepPercept percept)
+                        msg = completePercept(percept);
                     if (msg != null)
                         inbox.add(msg);
                 } catch (IOException e) {
@@ -169,6 +193,29 @@ public abstract class ConnectedEntity extends Entity {
         }
     }
 
+    /**
+     * Completes a delta percept and keeps complete percepts as bases for later delta percepts.
+     * @param percept the received percept
+     * @return the complete percept or null if it cannot be completed
+     */
+    private StepPercept completePercept(StepPercept percept) {
+        if (!useDeltaPercepts) return percept;
+        if (percept.isDelta()) {
+            var baseId = percept.getDeltaBase();
+            var base = receivedPercepts.get(baseId);
+            if (base == null) {
+                log("cannot complete delta percept " + percept.getId() + ": base " + baseId + " unknown");
+                return null;
+            }
+            percept.applyDelta(base);
+            receivedPercepts.headMap(baseId, false).clear(); // the server will not use older bases
+        }
+        receivedPercepts.put(percept.getId(), percept);
+        while (receivedPercepts.size() > MAX_STORED_PERCEPTS) // keep the current base and the latest percepts
+            receivedPercepts.remove(receivedPercepts.higherKey(receivedPercepts.firstKey()));
+        return percept;
+    }
+
     private synchronized void updatePercepts(Message msg) {
         if (msg == null) return;
 
@@ -355,7 +402,11 @@ public abstract class ConnectedEntity extends Entity {
      */
     private boolean authenticate() {
 
-        Message authReq = new AuthRequestMessage(username, password);
+        var extensions = new HashSet<String>();
+        if (deltaPercepts) extensions.add(AuthRequestMessage.EXTENSION_DELTA_PERCEPTS);
+        if (binaryProtocol) extensions.add(AuthRequestMessage.EXTENSION_BINARY);
+        Message authReq = new AuthRequestMessage(username, password, extensions);
+        codec = null; // authentication always uses JSON
         try {
             sendMessage(authReq.toJson());
         } catch (IOException e) {
@@ -363,17 +414,20 @@ public abstract class ConnectedEntity extends Entity {
             return false;
         }
 
-        JSONObject jsonResponse;
+        Message responseMsg;
         try {
-            jsonResponse = receiveMessage();
+            responseMsg = receiveMessage();
         }
         catch (IOException e) {
             e.printStackTrace();
             return false;
         }
-        Message responseMsg = Message.buildFromJson(jsonResponse);
 
         if (responseMsg instanceof AuthResponseMessage authResponse) {
+            useDeltaPercepts = authResponse.getExtensions().contains(AuthRequestMessage.EXTENSION_DELTA_PERCEPTS);
+            receivedPercepts.clear();
+            if (authResponse.getExtensions().contains(AuthRequestMessage.EXTENSION_BINARY))
+                codec = new BinaryCodec(BinaryCodec.Side.AGENT);
             return authResponse.getResult().equals(AuthResponseMessage.OK);
         }
         return false;
@@ -406,35 +460,56 @@ public abstract class ConnectedEntity extends Entity {
     }
 
     /**
-     * Sends a document.
+     * Sends a document (binary encoded if the binary protocol is used).
      * @param json the message to be sent
      * @throws IOException if the document could not be sent
      */
     private void sendMessage(JSONObject json) throws IOException {
-        OutputStreamWriter osw = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-        osw.write(json.toString());
-        osw.write(0);
-        osw.flush();
+        if (codec != null) {
+            var message = Message.buildFromJson(json);
+            if (message == null) throw new IOException("Invalid message");
+            synchronized (sendLock) { // messages have to be sent in the order in which they are encoded
+                out.write(codec.encode(message));
+                out.write(0);
+                out.flush();
+            }
+        }
+        else {
+            OutputStreamWriter osw = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            osw.write(json.toString());
+            osw.write(0);
+            osw.flush();
+        }
         if (useJSON) log(json.toString(3) + "\tsent");
     }
 
     /**
-     * Receives a document from the server,
-     * @return the received document.
+     * Receives a message from the server,
+     * @return the received message or null if it could not be parsed
      * @throws IOException if no message could be received
      */
-    private JSONObject receiveMessage() throws IOException {
+    private Message receiveMessage() throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int read;
         while ((read = in.read()) != 0) {
             if (read == -1) throw new IOException();
             buffer.write(read);
         }
+        if (codec != null) {
+            try {
+                var message = codec.decode(buffer.toByteArray());
+                if (useJSON) log(message.toJson().toString(3) + "\treceived");
+                return message;
+            } catch (IllegalArgumentException e) {
+                log("Invalid binary message: " + e.getMessage());
+                return null;
+            }
+        }
         String message = buffer.toString(StandardCharsets.UTF_8);
         try {
             JSONObject json = new JSONObject(message);
             if (useJSON) log(json.toString(3) + "\treceived");
-            return json;
+            return Message.buildFromJson(json);
         } catch(JSONException e){
             log("Invalid object: " + message);
         }
@@ -154,6 +154,16 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
             Log.log("Notifications enabled.");
         }
 
+        if(config.optBoolean("delta-percepts", false)){
+            ConnectedEntity.enableDeltaPercepts();
+            Log.log("Delta percepts enabled.");
+        }
+
+        if(config.optBoolean("binary-protocol", false)){
+            ConnectedEntity.enableBinaryProtocol();
+            Log.log("Binary protocol enabled.");
+        }
+
         int timeout = config.optInt("timeout", 3000);
         ConnectedEntity.setTimeout(timeout);
         Log.log("Timeout set to " + timeout);
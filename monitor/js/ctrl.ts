@@ -1,4 +1,4 @@
-import { Redraw, StaticWorld, DynamicWorld, ConnectionState, Pos } from './interfaces';
+import { Redraw, StaticWorld, DynamicWorld, DynamicWorldDelta, ItemDelta, ConnectionState, Pos } from './interfaces';
 import { MapCtrl, minScale, maxScale } from './map';
 import { compareEntity, compareNumbered, samePos } from './util';
 
@@ -38,7 +38,14 @@ export class Ctrl {
     ws.onmessage = msg => {
       const data = JSON.parse(msg.data);
       if (data.grid) this.setStatic(data);
-      else this.setDynamic(data);
+      else {
+        if (data.delta) {
+          // changes can only be applied to the step they are based on, otherwise reconnect to get the full state
+          if (!this.applyDelta(data)) ws.close();
+        } else this.setDynamic(data);
+        // the server only sends the next state after the previous one has been acknowledged
+        ws.send('ack');
+      }
       this.redraw();
     };
 
@@ -91,6 +98,20 @@ export class Ctrl {
     this.vm.dynamic = dynamic;
   }
 
+  applyDelta(update: DynamicWorldDelta): boolean {
+    const previous = this.vm.dynamic;
+    if (!previous || previous.step !== update.delta.base) return false;
+    const { delta, ...rest } = update;
+    this.setDynamic({
+      ...rest,
+      entities: applyItemDelta(previous.entities, delta.entities),
+      blocks: applyItemDelta(previous.blocks, delta.blocks),
+      obstacles: applyItemDelta(previous.obstacles, delta.obstacles),
+      dispensers: applyItemDelta(previous.dispensers, delta.dispensers),
+    });
+    return true;
+  }
+
   toggleMaps() {
     if (this.vm.dynamic && !this.maps.length) {
       this.maps = this.vm.dynamic.entities.map(agent => {
@@ -112,6 +133,14 @@ export class Ctrl {
   }
 }
 
+function applyItemDelta<T extends { id: number }>(items: T[], delta: ItemDelta<T>): T[] {
+  const byId = new Map<string, T>();
+  for (const item of items) byId.set(String(item.id), item);
+  for (const id of delta.remove) byId.delete(id);
+  for (const item of delta.put) byId.set(String(item.id), item);
+  return Array.from(byId.values());
+}
+
 export class ReplayCtrl {
   public step = -1;
 
@@ -37,6 +37,24 @@ export interface DynamicWorld {
   violations: Violation[];
 }
 
+export interface ItemDelta<T> {
+  put: T[];
+  remove: string[]; // ids
+}
+
+export interface WorldDelta {
+  base: number;
+  entities: ItemDelta<Entity>;
+  blocks: ItemDelta<Block>;
+  obstacles: ItemDelta<Obstacle>;
+  dispensers: ItemDelta<Dispenser>;
+}
+
+// the changes of a live step, containing all parts of the dynamic world except the ones in the delta
+export type DynamicWorldDelta = Omit<DynamicWorld, 'entities' | 'blocks' | 'obstacles' | 'dispensers'> & {
+  delta: WorldDelta;
+};
+
 export type Pos = [number, number];
 
 export interface Positionable {
@@ -47,7 +65,9 @@ export interface Zone extends Positionable {
   r: number;
 }
 
-export interface Obstacle extends Positionable {}
+export interface Obstacle extends Positionable {
+  id: number;
+}
 
 export interface GoalZone extends Zone {}
 
@@ -71,6 +91,7 @@ export interface Entity extends Positionable, EntityStatus {
 }
 
 export interface Block extends Positionable {
+  id: number;
   type: BlockType;
   attached?: Pos[];
 }
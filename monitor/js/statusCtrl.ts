@@ -15,6 +15,7 @@ export function makeStatusCtrl(redraw: Redraw): StatusCtrl {
       const data = JSON.parse(msg.data);
       console.log(data);
       vm.data = data;
+      ws.send('ack'); // request the next status
       redraw();
     };
 
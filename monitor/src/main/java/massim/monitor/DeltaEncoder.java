@@ -0,0 +1,128 @@
+package massim.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Encodes consecutive states as changes to the respective previous state. Only the given sets of items
+ * are encoded as changes, all other parts of a state are always contained completely:
+ * <pre>
+ * {"step": 7, ..., "delta": {"base": 6, "blocks": {"put": [changed or new items], "remove": [item keys]}, ...}}
+ * </pre>
+ * Not thread-safe, but the encoded states can be used from any thread.
+ */
+class DeltaEncoder {
+
+    private final ItemCache itemCache;
+    private EncodedState previous;
+
+    /**
+     * @param setNames the names of the sets to encode as changes
+     */
+    DeltaEncoder(List<String> setNames) {
+        this.itemCache = new ItemCache(setNames);
+    }
+
+    /**
+     * Forgets the previous state, so that the next state cannot be encoded as changes.
+     */
+    void reset() {
+        previous = null;
+    }
+
+    /**
+     * Encodes the next state.
+     */
+    EncodedState next(int step, JSONObject state) {
+        var sets = new HashMap<String, Map<String, ItemCache.Item>>();
+        itemCache.serializeSets(state).forEach((name, list) -> {
+            var items = new LinkedHashMap<String, ItemCache.Item>();
+            for (var item : list) items.put(item.key(), item);
+            sets.put(name, items);
+        });
+
+        var others = new JSONObject();
+        for (var key : state.keySet())
+            if (!sets.containsKey(key)) others.put(key, state.get(key));
+
+        JSONObject delta = null;
+        if (previous != null && step == previous.step + 1 && sets.keySet().equals(previous.sets.keySet())) {
+            delta = new JSONObject().put("base", previous.step);
+            for (var entry : sets.entrySet())
+                delta.put(entry.getKey(), diff(previous.sets.get(entry.getKey()), entry.getValue()));
+        }
+        previous = new EncodedState(step, others, sets, delta);
+        return previous;
+    }
+
+    private static JSONObject diff(Map<String, ItemCache.Item> before, Map<String, ItemCache.Item> after) {
+        var put = new JSONArray();
+        var remove = new JSONArray();
+        after.forEach((key, item) -> {
+            var old = before.get(key);
+            if (old == null || !old.json().equals(item.json())) put.put(item);
+        });
+        for (var key : before.keySet())
+            if (!after.containsKey(key)) remove.put(key);
+        return new JSONObject().put("put", put).put("remove", remove);
+    }
+
+    /**
+     * A state, which can be written either completely or (if possible) as changes to the previous state.
+     */
+    static final class EncodedState {
+
+        private final int step;
+        private final JSONObject others;
+        private final Map<String, Map<String, ItemCache.Item>> sets;
+        private final JSONObject delta;
+
+        private EncodedState(int step, JSONObject others, Map<String, Map<String, ItemCache.Item>> sets,
+                             JSONObject delta) {
+            this.step = step;
+            this.others = others;
+            this.sets = sets;
+            this.delta = delta;
+        }
+
+        int getStep() {
+            return step;
+        }
+
+        boolean hasDelta() {
+            return delta != null;
+        }
+
+        /**
+         * @return the step that the changes refer to (only if there are changes)
+         */
+        int getBase() {
+            return delta.getInt("base");
+        }
+
+        /**
+         * @return a new object with the complete state
+         */
+        JSONObject toFull() {
+            var result = copyOthers();
+            sets.forEach((name, items) -> result.put(name, new JSONArray(items.values())));
+            return result;
+        }
+
+        /**
+         * @return a new object with the changes to the previous state or null if there are none
+         */
+        JSONObject toDelta() {
+            if (delta == null) return null;
+            return copyOthers().put("delta", delta);
+        }
+
+        private JSONObject copyOthers() {
+            var result = new JSONObject();
+            for (var key : others.keySet()) result.put(key, others.get(key));
+            return result;
+        }
+    }
+}
@@ -3,59 +3,132 @@ package massim.monitor;
 import org.webbitserver.BaseWebSocketHandler;
 import org.webbitserver.WebSocketConnection;
 
-import java.util.HashSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
+/**
+ * Sends messages to all connected clients. Newly connected clients first receive the latest static
+ * and dynamic messages.
+ *
+ * Clients acknowledge each dynamic message (by sending {@link #ACK}) and only receive the next one afterwards.
+ * Meanwhile, only the latest message is kept for them, so that clients which fall behind skip intermediate
+ * messages. Dynamic messages may also consist of changes to the previous message (see {@link Frame}),
+ * which are only sent to clients that have received the previous message, all others get the complete state.
+ *
+ * All methods must be called by the web server's executor thread.
+ */
 public class EventSink extends BaseWebSocketHandler {
+
+    static final String ACK = "ack";
+
     private final String name;
     private String latestStatic;
-    private String latestDynamic;
-    private final ReentrantReadWriteLock poolLock = new ReentrantReadWriteLock();
-    private final HashSet<WebSocketConnection> pool = new HashSet<WebSocketConnection>();
+    private Frame latestDynamic;
+    private final Map<WebSocketConnection, Client> pool = new HashMap<>();
+
+    /**
+     * A dynamic message.
+     */
+    static final class Frame {
+        private final int step;
+        private final String delta;
+        private final int base;
+        private Supplier<String> full;
+        private String fullText;
+
+        /**
+         * @param delta the changes to the state of step <code>base</code>
+         * @param full creates the complete state if required (called at most once)
+         */
+        Frame(int step, String delta, int base, Supplier<String> full) {
+            this.step = step;
+            this.delta = delta;
+            this.base = base;
+            this.full = full;
+        }
+
+        /**
+         * A message that is always sent completely.
+         */
+        Frame(int step, String full) {
+            this(step, null, 0, null);
+            this.fullText = full;
+        }
+
+        private String getFull() {
+            if (fullText == null) {
+                fullText = full.get();
+                full = null;
+            }
+            return fullText;
+        }
+    }
+
+    private static final class Client {
+        private boolean waiting; // for the acknowledgement of the last dynamic message
+        private Frame pending;
+        private Integer lastStep;
+    }
 
     public EventSink(String name) {
         this.name = name;
     }
 
     @Override
-    public void onOpen(WebSocketConnection client) {
-        Lock lock = poolLock.writeLock();
-        lock.lock();
-        try {
-            pool.add(client);
-            if (latestStatic != null) client.send(latestStatic);
-            if (latestDynamic != null) client.send(latestDynamic);
-            System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
-        } finally {
-            lock.unlock();
-        }
+    public void onOpen(WebSocketConnection connection) {
+        var client = new Client();
+        pool.put(connection, client);
+        if (latestStatic != null) connection.send(latestStatic);
+        if (latestDynamic != null) deliver(connection, client, latestDynamic);
+        System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
     }
 
     @Override
-    public void onClose(WebSocketConnection client) {
-        Lock lock = poolLock.writeLock();
-        lock.lock();
-        try {
-            pool.remove(client);
-            System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
-        } finally {
-            lock.unlock();
-        }
+    public void onClose(WebSocketConnection connection) {
+        pool.remove(connection);
+        System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
     }
 
-    public void broadcast(String message, boolean dynamic) {
-        if (dynamic) this.latestDynamic = message;
-        else this.latestStatic = message;
+    @Override
+    public void onMessage(WebSocketConnection connection, String message) {
+        var client = pool.get(connection);
+        if (client == null || !ACK.equals(message)) return;
+        client.waiting = false;
+        if (client.pending != null) deliver(connection, client, client.pending);
+    }
 
-        Lock lock = poolLock.readLock();
-        lock.lock();
-        try {
-            for (WebSocketConnection client: pool) {
-                client.send(message);
-            }
-        } finally {
-            lock.unlock();
+    /**
+     * Sends a static message to all clients. Dynamic messages not yet sent are dropped.
+     */
+    public void broadcastStatic(String message) {
+        latestStatic = message;
+        latestDynamic = null;
+        for (var entry : pool.entrySet()) {
+            entry.getValue().pending = null;
+            entry.getValue().lastStep = null;
+            entry.getKey().send(message);
         }
     }
+
+    /**
+     * Sends a dynamic message to all clients that are not waiting for an acknowledgement.
+     * For all others, it replaces the message they have not received yet.
+     */
+    public void broadcast(Frame frame) {
+        latestDynamic = frame;
+        for (var entry : pool.entrySet()) {
+            var client = entry.getValue();
+            if (client.waiting) client.pending = frame;
+            else deliver(entry.getKey(), client, frame);
+        }
+    }
+
+    private void deliver(WebSocketConnection connection, Client client, Frame frame) {
+        var useDelta = frame.delta != null && client.lastStep != null && client.lastStep == frame.base;
+        connection.send(useDelta? frame.delta : frame.getFull());
+        client.lastStep = frame.step;
+        client.pending = null;
+        client.waiting = true;
+    }
 }
@@ -0,0 +1,55 @@
+package massim.monitor;
+
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.util.*;
+
+/**
+ * Serializes the items of some sets (e.g. the {@link ReplayFile#DELTA_SETS}) of consecutive states.
+ * The server reuses the same JSON object for a thing as long as it does not change, so an item that is
+ * the same object as in the previous state is not serialized again. Not thread-safe.
+ */
+class ItemCache {
+
+    private final List<String> setNames;
+    private Map<JSONObject, Item> previous = new IdentityHashMap<>();
+
+    ItemCache(List<String> setNames) {
+        this.setNames = setNames;
+    }
+
+    /**
+     * An item of a delta set, identified by its key (see {@link ReplayFile#itemKey(JSONObject)}),
+     * which has already been serialized (and is written as is).
+     */
+    record Item(String key, String json) implements JSONString {
+        @Override
+        public String toJSONString() {
+            return json;
+        }
+    }
+
+    /**
+     * @return the items of all sets contained in the state (by set)
+     */
+    Map<String, List<Item>> serializeSets(JSONObject state) {
+        var current = new IdentityHashMap<JSONObject, Item>(previous.size());
+        var sets = new HashMap<String, List<Item>>();
+        for (var name : setNames) {
+            var array = state.optJSONArray(name);
+            if (array == null) continue;
+            var items = new ArrayList<Item>(array.length());
+            for (var value : array) {
+                if (!(value instanceof JSONObject o)) continue;
+                var item = previous.get(o);
+                if (item == null) item = new Item(ReplayFile.itemKey(o), o.toString());
+                current.put(o, item);
+                items.add(item);
+            }
+            sets.put(name, items);
+        }
+        previous = current;
+        return sets;
+    }
+}
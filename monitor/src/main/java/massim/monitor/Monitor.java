@@ -2,6 +2,7 @@ package massim.monitor;
 
 import org.json.JSONObject;
 import org.webbitserver.BaseWebSocketHandler;
+import org.webbitserver.HttpHandler;
 import org.webbitserver.WebServer;
 import org.webbitserver.WebServers;
 import org.webbitserver.WebSocketConnection;
@@ -10,32 +11,48 @@ import org.webbitserver.handler.HttpToWebSocketHandler;
 import org.webbitserver.handler.StaticFileHandler;
 import org.webbitserver.handler.StringHttpHandler;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The web monitor for the MASSim server.
  */
 public class Monitor {
 
+    // runs the web server's handlers and publishes all updates
+    private final ExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
     private final EventSink monitorSink = new EventSink("monitor");
 
     private final EventSink statusSink = new EventSink("status");
 
+    /**
+     * Parts of the live state that are sent as changes (all of their items have an "id").
+     */
+    static final List<String> LIVE_DELTA_SETS = List.of("entities", "blocks", "obstacles", "dispensers");
+
+    private final DeltaEncoder encoder = new DeltaEncoder(LIVE_DELTA_SETS);
+
+    // updates handed over by the server, which have not been published yet (only the latest of each kind)
+    private final Object pendingLock = new Object();
+    private JSONObject pendingStatic;
+    private JSONObject pendingState;
+    private JSONObject pendingStatus;
+    private boolean publishScheduled;
+
     /**
      * Constructor.
      * Used by the massim server to create the "live" monitor.
      */
     public Monitor(int port) throws ExecutionException, InterruptedException {
-        ExecutorService executor = Executors.newSingleThreadScheduledExecutor();
         InetSocketAddress bind = new InetSocketAddress(port);
         String publicUri = "http://localhost:" + port + "/";
 
@@ -52,22 +69,25 @@ public class Monitor {
 
     /**
      * Creates a new monitor to watch replays with.
-     * @param replayPath the path to a replay file
+     * @param replayPath the path to a replay directory or single-file replay
      */
-    Monitor(int port, String replayPath) throws ExecutionException, InterruptedException {
+    Monitor(int port, String replayPath) throws ExecutionException, InterruptedException, IOException {
         // read index.html from resources
         String html = new Scanner(Monitor.class.getClassLoader().getResourceAsStream("www/index.html"), "UTF-8")
             .useDelimiter("\\A")
             .next();
 
-        ExecutorService executor = Executors.newSingleThreadScheduledExecutor();
         InetSocketAddress bind = new InetSocketAddress(port);
         String publicUri = "http://localhost:" + port + "/";
 
+        var replayFile = Paths.get(replayPath);
+        HttpHandler replayHandler = Files.isRegularFile(replayFile)?
+            new ReplayFileHandler(replayFile) : new StaticFileHandler(replayPath);
+
         WebServer server = WebServers.createWebServer(executor, bind, URI.create(publicUri))
             .add(new EmbeddedResourceHandler("www"))
             .add("/?/", new StringHttpHandler("text/html", html))
-            .add(new StaticFileHandler(replayPath))
+            .add(replayHandler)
             .start()
             .get();
 
@@ -77,16 +97,59 @@ public class Monitor {
     /**
      * Updates the current state of the monitor.
      * Called by the massim server after each step.
+     * The state is serialized and sent later by the monitor's own thread. If that thread falls behind,
+     * intermediate states are skipped. Clients receive the complete state once and afterwards only the changes
+     * of each step (see {@link EventSink}).
      */
     public void updateState(JSONObject state) {
-        monitorSink.broadcast(state.toString(), !state.has("grid"));
+        synchronized (pendingLock) {
+            if (state.has("grid")) {
+                pendingStatic = state;
+                pendingState = null;
+            }
+            else pendingState = state;
+            schedulePublish();
+        }
     }
 
     public void updateStatus(JSONObject status) {
-        statusSink.broadcast(status.toString(), true);
+        synchronized (pendingLock) {
+            pendingStatus = status;
+            schedulePublish();
+        }
     }
 
-    public static void main(String[] args) throws ExecutionException, InterruptedException {
+    private void schedulePublish() {
+        if (publishScheduled) return;
+        publishScheduled = true;
+        executor.execute(this::publish);
+    }
+
+    private void publish() {
+        JSONObject staticState, state, status;
+        synchronized (pendingLock) {
+            staticState = pendingStatic;
+            state = pendingState;
+            status = pendingStatus;
+            pendingStatic = pendingState = pendingStatus = null;
+            publishScheduled = false;
+        }
+        if (staticState != null) {
+            encoder.reset();
+            monitorSink.broadcastStatic(staticState.toString());
+        }
+        if (state != null) {
+            var encoded = encoder.next(state.optInt("step"), state);
+            if (encoded.hasDelta())
+                monitorSink.broadcast(new EventSink.Frame(encoded.getStep(), encoded.toDelta().toString(),
+                        encoded.getBase(), () -> encoded.toFull().toString()));
+            else
+                monitorSink.broadcast(new EventSink.Frame(encoded.getStep(), encoded.toFull().toString()));
+        }
+        if (status != null) statusSink.broadcast(new EventSink.Frame(status.optInt("step"), status.toString()));
+    }
+
+    public static void main(String[] args) throws ExecutionException, InterruptedException, IOException {
         int port = 8000;
         String path = null;
 
@@ -106,7 +169,13 @@ public class Monitor {
             return;
         }
 
-        if (!Paths.get(path, "static.json").toFile().exists()) {
+        if (Files.isRegularFile(Paths.get(path))) {
+            if (!ReplayFile.isReplayFile(Paths.get(path))) {
+                System.out.println("Not a replay. The file is not a " + ReplayFile.EXTENSION + " file.");
+                return;
+            }
+        }
+        else if (!Paths.get(path, "static.json").toFile().exists()) {
             System.out.println("Not a replay. static.json does not seem to exist in this directory.");
             return;
         }
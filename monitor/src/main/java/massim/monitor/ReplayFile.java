@@ -0,0 +1,327 @@
+package massim.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A replay stored in a single file. Each step (and the static data) is a separately deflate-compressed frame.
+ *
+ * Layout (all numbers big-endian):
+ * <pre>
+ * header: "MASREPL1"
+ * frame:  int step | int length | length bytes (compressed JSON)
+ * index:  int count | count * (int step | long offset of the frame)
+ * footer: long offset of the index | "MASINDEX"
+ * </pre>
+ * The static data is stored with step {@link #STATIC}. If the index is missing (e.g. the server stopped before
+ * completing the replay), the reader restores it by scanning all frames.
+ *
+ * Every few steps, a frame holds the complete state (keyframe). The frames in between only store the changes
+ * of the {@link #DELTA_SETS} compared to the previous step (plus all other, small parts of the state):
+ * <pre>
+ * {"step": 7, ..., "delta": {"base": 6, "blocks": {"put": [changed or new items], "remove": [item keys]}, ...}}
+ * </pre>
+ * Items are identified by their "id" or, if they have none, by all their values.
+ */
+public abstract class ReplayFile {
+
+    public static final String EXTENSION = ".replay";
+    public static final int STATIC = Integer.MIN_VALUE;
+    public static final int KEYFRAME_INTERVAL = 20;
+
+    /**
+     * Parts of the state that are stored as changes between keyframes.
+     */
+    public static final List<String> DELTA_SETS =
+            List.of("entities", "blocks", "obstacles", "dispensers", "goalZones", "roleZones");
+
+    private static final byte[] HEADER = "MASREPL1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOOTER = "MASINDEX".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return whether the file starts like a replay file
+     */
+    public static boolean isReplayFile(Path file) {
+        try (var in = new FileInputStream(file.toFile())) {
+            return Arrays.equals(in.readNBytes(HEADER.length), HEADER);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the key identifying an item of one of the {@link #DELTA_SETS}
+     */
+    static String itemKey(JSONObject item) {
+        var id = item.opt("id");
+        if (id != null) return id.toString();
+        return new TreeMap<>(item.toMap()).toString();
+    }
+
+    /**
+     * Appends frames to a new replay file. Not thread-safe.
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater();
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final Map<Integer, Long> index = new LinkedHashMap<>();
+        private final int keyframeInterval;
+        private final DeltaEncoder encoder = new DeltaEncoder(DELTA_SETS);
+        private long offset;
+        private int lastKeyframe;
+
+        /**
+         * Creates (or truncates) the file and writes the header.
+         */
+        public Writer(Path file) throws IOException {
+            this(file, KEYFRAME_INTERVAL);
+        }
+
+        /**
+         * @param keyframeInterval number of steps after which a complete state is stored again (1 for only keyframes)
+         */
+        public Writer(Path file, int keyframeInterval) throws IOException {
+            var channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            this.keyframeInterval = Math.max(1, keyframeInterval);
+            out.write(HEADER);
+            offset = HEADER.length;
+        }
+
+        public void writeStatic(JSONObject data) throws IOException {
+            writeFrame(STATIC, data);
+        }
+
+        /**
+         * Writes one step, either as a keyframe or as changes to the previously written step.
+         * Writing the same step again replaces it in the index.
+         * Items that are the same objects as in the previous step are not serialized again (see {@link DeltaEncoder}).
+         */
+        public void writeStep(int step, JSONObject state) throws IOException {
+            var encoded = encoder.next(step, state);
+            var keyframe = !encoded.hasDelta() || step - lastKeyframe >= keyframeInterval;
+            if (keyframe) lastKeyframe = step;
+            writeFrame(step, keyframe? encoded.toFull() : encoded.toDelta());
+        }
+
+        private void writeFrame(int step, JSONObject json) throws IOException {
+            frame.reset();
+            deflater.reset();
+            var compressing = new DeflaterOutputStream(frame, deflater, BUFFER_SIZE);
+            var writer = new OutputStreamWriter(compressing, StandardCharsets.UTF_8);
+            json.write(writer);
+            writer.flush();
+            compressing.finish();
+
+            index.put(step, offset);
+            out.writeInt(step);
+            out.writeInt(frame.size());
+            frame.writeTo(out);
+            offset += FRAME_HEADER_SIZE + frame.size();
+        }
+
+        /**
+         * Writes the index and closes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            var indexOffset = offset;
+            out.writeInt(index.size());
+            for (var entry : index.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeLong(indexOffset);
+            out.write(FOOTER);
+            out.close();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads single steps of a replay file. Steps stored as changes are rebuilt from the closest keyframe
+     * (or from the previously read step, so that reading the steps in order applies each change only once).
+     */
+    public static class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final NavigableMap<Integer, Long> index = new TreeMap<>();
+
+        // the last rebuilt step
+        private int cachedStep;
+        private JSONObject cachedFrame;
+        private Map<String, Map<String, Object>> cachedSets;
+
+        public Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, READ);
+            var header = read(0, HEADER.length);
+            if (!Arrays.equals(header.array(), HEADER)) {
+                channel.close();
+                throw new IOException("Not a replay file: " + file);
+            }
+            if (!readIndex()) scanFrames();
+        }
+
+        /**
+         * @return all steps contained in the replay (in ascending order, excluding the static data)
+         */
+        public SortedSet<Integer> getSteps() {
+            return index.navigableKeySet().tailSet(STATIC, false);
+        }
+
+        public boolean hasStep(int step) {
+            return index.containsKey(step);
+        }
+
+        /**
+         * @return the static data as JSON text or null if not contained in the replay
+         */
+        public synchronized String readStatic() throws IOException {
+            return readFrame(STATIC);
+        }
+
+        /**
+         * @return the state of the given step as JSON text or null if not contained in the replay
+         */
+        public synchronized String readStep(int step) throws IOException {
+            var state = readState(step);
+            return state == null? null : state.toString();
+        }
+
+        /**
+         * Rebuilds the complete state of a step.
+         * @return a new object with the state (the items of the state are shared and must not be modified)
+         * or null if the step is not contained in the replay
+         */
+        public synchronized JSONObject readState(int step) throws IOException {
+            if (step == STATIC || !index.containsKey(step)) return null;
+
+            // collect all frames back to the closest keyframe (or the cached step)
+            var frames = new ArrayDeque<JSONObject>();
+            Map<String, Map<String, Object>> sets = null;
+            for (var current = step; ; ) {
+                if (cachedSets != null && current == cachedStep) {
+                    sets = cachedSets;
+                    break;
+                }
+                var text = readFrame(current);
+                if (text == null) throw new IOException("Replay is missing step " + current);
+                var frame = new JSONObject(text);
+                frames.push(frame);
+                var delta = frame.optJSONObject("delta");
+                if (delta == null) break;
+                current = delta.getInt("base");
+            }
+
+            var last = cachedFrame;
+            cachedSets = null; // the sets are changed in place
+            for (var frame : frames) {
+                var delta = (JSONObject) frame.remove("delta");
+                if (delta == null) sets = new HashMap<>();
+                for (var name : DELTA_SETS) {
+                    if (delta == null) {
+                        var array = (JSONArray) frame.remove(name);
+                        if (array != null) sets.put(name, toItems(array));
+                    }
+                    else if (delta.has(name)) apply(sets.get(name), delta.getJSONObject(name));
+                }
+                last = frame;
+            }
+            cachedStep = step;
+            cachedFrame = last;
+            cachedSets = sets;
+
+            var result = new JSONObject();
+            for (var key : last.keySet()) result.put(key, last.get(key));
+            for (var entry : sets.entrySet()) result.put(entry.getKey(), new JSONArray(entry.getValue().values()));
+            return result;
+        }
+
+        private static Map<String, Object> toItems(JSONArray array) {
+            var items = new LinkedHashMap<String, Object>();
+            for (var item : array) items.put(item instanceof JSONObject o? itemKey(o) : item.toString(), item);
+            return items;
+        }
+
+        private static void apply(Map<String, Object> items, JSONObject delta) {
+            for (var key : delta.getJSONArray("remove")) items.remove(key.toString());
+            for (var item : delta.getJSONArray("put")) items.put(itemKey((JSONObject) item), item);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * @return the (uncompressed) content of the frame or null if there is no frame for the step
+         */
+        private String readFrame(int step) throws IOException {
+            var offset = index.get(step);
+            if (offset == null) return null;
+            var length = read(offset + 4, 4).getInt();
+            var compressed = read(offset + FRAME_HEADER_SIZE, length);
+            try (var in = new InflaterInputStream(new ByteArrayInputStream(compressed.array(), 0, length))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        private boolean readIndex() throws IOException {
+            var size = channel.size();
+            var footerSize = 8 + FOOTER.length;
+            if (size < HEADER.length + footerSize) return false;
+            var footer = read(size - footerSize, footerSize);
+            var indexOffset = footer.getLong();
+            var magic = new byte[FOOTER.length];
+            footer.get(magic);
+            if (!Arrays.equals(magic, FOOTER) || indexOffset < HEADER.length || indexOffset > size - footerSize)
+                return false;
+            var count = read(indexOffset, 4).getInt();
+            var entries = read(indexOffset + 4, count * 12);
+            for (var i = 0; i < count; i++) index.put(entries.getInt(), entries.getLong());
+            return true;
+        }
+
+        /**
+         * Restores the index from the frames (ignoring an incomplete last frame).
+         */
+        private void scanFrames() throws IOException {
+            var size = channel.size();
+            long offset = HEADER.length;
+            while (offset + FRAME_HEADER_SIZE <= size) {
+                var frameHeader = read(offset, FRAME_HEADER_SIZE);
+                var step = frameHeader.getInt();
+                var length = frameHeader.getInt();
+                if (length < 0 || offset + FRAME_HEADER_SIZE + length > size) break;
+                index.put(step, offset);
+                offset += FRAME_HEADER_SIZE + length;
+            }
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            var buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1)
+                    throw new EOFException("Unexpected end of replay file");
+            }
+            return buffer.flip();
+        }
+    }
+}
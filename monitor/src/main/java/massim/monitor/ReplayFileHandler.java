@@ -0,0 +1,66 @@
+package massim.monitor;
+
+import org.json.JSONObject;
+import org.webbitserver.HttpControl;
+import org.webbitserver.HttpHandler;
+import org.webbitserver.HttpRequest;
+import org.webbitserver.HttpResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Serves a single-file replay in the same layout as a replay directory, i.e. static.json and one file
+ * for each group of steps (0.json, 5.json, ...). Each group is assembled from the steps it contains.
+ */
+class ReplayFileHandler implements HttpHandler {
+
+    private static final int GROUP_SIZE = 5;
+
+    private final ReplayFile.Reader reader;
+
+    ReplayFileHandler(Path replayFile) throws IOException {
+        this.reader = new ReplayFile.Reader(replayFile);
+    }
+
+    @Override
+    public void handleHttpRequest(HttpRequest request, HttpResponse response, HttpControl control) throws Exception {
+        var path = request.uri();
+        var query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        if (path.startsWith("/")) path = path.substring(1);
+        if (!path.endsWith(".json")) {
+            control.nextHandler();
+            return;
+        }
+
+        var name = path.substring(0, path.length() - ".json".length());
+        String content = null;
+        if (name.equals("static")) content = reader.readStatic();
+        else if (name.matches("\\d+")) content = readGroup(Integer.parseInt(name));
+
+        if (content == null) {
+            control.nextHandler();
+            return;
+        }
+        response.header("Content-Type", "application/json")
+                .content(content.getBytes(StandardCharsets.UTF_8))
+                .end();
+    }
+
+    /**
+     * @return all steps of the group as one JSON object (mapping steps to states) or null if there are none
+     */
+    private String readGroup(int group) throws IOException {
+        var result = new StringBuilder("{");
+        var first = group == 0? -1 : group; // the initial state is stored with the first group
+        for (var step = first; step < group + GROUP_SIZE; step++) {
+            var state = reader.readStep(step);
+            if (state == null) continue;
+            if (result.length() > 1) result.append(',');
+            result.append(JSONObject.quote(String.valueOf(step))).append(':').append(state);
+        }
+        return result.length() > 1? result.append('}').toString() : null;
+    }
+}
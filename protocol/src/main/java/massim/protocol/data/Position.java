@@ -7,8 +7,11 @@ import java.util.Objects;
 
 public final class Position {
 
-    private static int dimX = 0;
-    private static int dimY = 0;
+    /**
+     * The grid dimensions {width, height} used for wrapping, set per thread so that simulations running
+     * in different threads can use different grids.
+     */
+    private static final ThreadLocal<int[]> dimensions = ThreadLocal.withInitial(() -> new int[2]);
 
     public final int x;
     public final int y;
@@ -29,24 +32,43 @@ public final class Position {
         return Objects.hash(x, y);
     }
 
+    /**
+     * Sets the grid dimensions for all positions used by the current thread.
+     * @deprecated the server no longer sets these; the dimension-dependent methods moved to the server's Torus
+     */
+    @Deprecated
     public static void setGridDimensions(int dimX, int dimY) {
-        Position.dimX = dimX;
-        Position.dimY = dimY;
+        var dimensions = Position.dimensions.get();
+        dimensions[0] = dimX;
+        dimensions[1] = dimY;
     }
 
     /**
      * @return the same position but wrapped back into the bounds
+     * @deprecated depends on {@link #setGridDimensions(int, int)}; use Torus#wrap instead
      */
+    @Deprecated
     public static Position wrapped(int someX, int someY) {
         // handle negative values correctly
-        return Position.of(Math.floorMod(someX, dimX), Math.floorMod(someY, dimY));
+        var dimensions = Position.dimensions.get();
+        return Position.of(Math.floorMod(someX, dimensions[0]), Math.floorMod(someY, dimensions[1]));
     }
 
+    /**
+     * @deprecated use Torus#wrap instead
+     */
+    @Deprecated
     public Position wrapped() {
         return Position.wrapped(x, y);
     }
 
+    /**
+     * @deprecated use Torus#distance instead
+     */
+    @Deprecated
     public int distanceTo(Position other) {
+            var dimensions = Position.dimensions.get();
+            int dimX = dimensions[0], dimY = dimensions[1];
             int dx = Math.abs(x - other.x);
             if (dx > dimX/2.0) dx = dimX - dx;
             int dy = Math.abs(y - other.y);
@@ -54,6 +76,10 @@ public final class Position {
             return dx + dy;
     }
 
+    /**
+     * @deprecated use Torus#moved instead
+     */
+    @Deprecated
     public Position moved(String direction, int distance) {
         return switch (direction) {
             case "n" -> Position.wrapped(x, y - distance);
@@ -73,15 +99,29 @@ public final class Position {
         return "(" + x + "," + y + ")";
     }
 
+    /**
+     * @deprecated use Torus#translate instead
+     */
+    @Deprecated
     public Position translate(int x, int y) {
         return Position.wrapped(this.x + x, this.y + y);
     }
 
+    /**
+     * @deprecated use Torus#translate instead
+     */
+    @Deprecated
     public Position translate(Position other) {
         return this.translate(other.x, other.y);
     }
 
+    /**
+     * @deprecated use Torus#relative instead
+     */
+    @Deprecated
     public Position relativeTo(Position origin) {
+        var dimensions = Position.dimensions.get();
+        int dimX = dimensions[0], dimY = dimensions[1];
         var dx = x - origin.x;
         if (dx < -(dimX / 2.0)) dx += dimX;
         else if (dx > dimX / 2.0) dx -= dimX;
@@ -101,7 +141,9 @@ public final class Position {
 
     /**
      * @return list containing all positions belonging to the area around this position within the given radius.
+     * @deprecated use Torus#spanArea instead
      */
+    @Deprecated
     public ArrayList<Position> spanArea(int radius) {
         var area = new ArrayList<Position>();
         for (var dx = -radius; dx <= radius; dx++) {
@@ -116,7 +158,9 @@ public final class Position {
 
     /**
      * @return this position rotated 90 degrees in the given direction
+     * @deprecated use Torus#rotated90 instead
      */
+    @Deprecated
     public Position rotated90(Position center, boolean clockwise) {
         var pos = this.relativeTo(center);
         // the rotation is calculated relative to the rotation center
@@ -126,18 +170,34 @@ public final class Position {
         return Position.wrapped(center.x + dx, center.y + dy);
     }
 
+    /**
+     * @deprecated use Torus#moved instead
+     */
+    @Deprecated
     public Position north() {
         return Position.of(this.x, this.y - 1).wrapped();
     }
 
+    /**
+     * @deprecated use Torus#moved instead
+     */
+    @Deprecated
     public Position east() {
         return Position.of(this.x + 1, this.y).wrapped();
     }
 
+    /**
+     * @deprecated use Torus#moved instead
+     */
+    @Deprecated
     public Position south() {
         return Position.of(this.x, this.y + 1).wrapped();
     }
 
+    /**
+     * @deprecated use Torus#moved instead
+     */
+    @Deprecated
     public Position west() {
         return Position.of(this.x - 1, this.y).wrapped();
     }
@@ -1,15 +1,33 @@
 package massim.protocol.messages;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
 public class AuthRequestMessage extends Message {
 
+    /**
+     * Protocol extension: step percepts may contain only the changes relative to an earlier percept.
+     */
+    public final static String EXTENSION_DELTA_PERCEPTS = "delta-percepts";
+
+    /**
+     * Protocol extension: all messages after the auth-response are encoded with the {@link BinaryCodec}.
+     */
+    public final static String EXTENSION_BINARY = "binary";
+
     private String username;
     private String password;
+    private Set<String> extensions = new HashSet<>();
 
     public AuthRequestMessage(JSONObject content) {
         this.username = content.optString("user");
         this.password = content.optString("pw");
+        var extensions = content.optJSONArray("extensions");
+        if (extensions != null) extensions.forEach(e -> this.extensions.add(String.valueOf(e)));
     }
 
     public AuthRequestMessage(String username, String password) {
@@ -17,6 +35,14 @@ public class AuthRequestMessage extends Message {
         this.password = password;
     }
 
+    /**
+     * @param extensions the protocol extensions the agent would like to use
+     */
+    public AuthRequestMessage(String username, String password, Collection<String> extensions) {
+        this(username, password);
+        this.extensions.addAll(extensions);
+    }
+
     @Override
     public String getMessageType() {
         return Message.TYPE_AUTH_REQUEST;
@@ -27,6 +53,7 @@ public class AuthRequestMessage extends Message {
         JSONObject content = new JSONObject();
         content.put("user", username);
         content.put("pw", password);
+        if (!extensions.isEmpty()) content.put("extensions", new JSONArray(extensions));
         return content;
     }
 
@@ -37,4 +64,8 @@ public class AuthRequestMessage extends Message {
     public String getPassword() {
         return password;
     }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
 }
@@ -1,7 +1,12 @@
 package massim.protocol.messages;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
 public class AuthResponseMessage extends Message {
 
     public final static String OK = "ok";
@@ -9,10 +14,13 @@ public class AuthResponseMessage extends Message {
 
     private long time;
     private String result;
+    private Set<String> extensions = new HashSet<>();
 
     public AuthResponseMessage(JSONObject content) {
         this.time = content.optLong("time");
         this.result = content.optString("result");
+        var extensions = content.optJSONArray("extensions");
+        if (extensions != null) extensions.forEach(e -> this.extensions.add(String.valueOf(e)));
     }
 
     public AuthResponseMessage(long time, String result) {
@@ -20,6 +28,14 @@ public class AuthResponseMessage extends Message {
         this.result = result;
     }
 
+    /**
+     * @param extensions the protocol extensions that are enabled for the connection
+     */
+    public AuthResponseMessage(long time, String result, Collection<String> extensions) {
+        this(time, result);
+        this.extensions.addAll(extensions);
+    }
+
     @Override
     public String getMessageType() {
         return Message.TYPE_AUTH_RESPONSE;
@@ -29,6 +45,7 @@ public class AuthResponseMessage extends Message {
     public JSONObject makeContent() {
         JSONObject content = new JSONObject();
         content.put("result", result);
+        if (!extensions.isEmpty()) content.put("extensions", new JSONArray(extensions));
         return content;
     }
 
@@ -39,4 +56,8 @@ public class AuthResponseMessage extends Message {
     public String getResult() {
         return result;
     }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
 }
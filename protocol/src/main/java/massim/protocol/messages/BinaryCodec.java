@@ -0,0 +1,465 @@
+package massim.protocol.messages;
+
+import massim.protocol.data.*;
+import massim.protocol.messages.scenario.InitialPercept;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Encodes messages in the compact binary format of the "binary" protocol extension and decodes them again.
+ * Numbers are written as varints (signed ones zigzag-encoded), so that positions and small counts take one byte each.
+ * Strings are interned: each string is only sent once per connection and direction; afterwards, it is referenced by
+ * its index in a table that both sides build in the same way.
+ * Encoded messages contain no 0 bytes (using consistent overhead byte stuffing), so they can be
+ * 0-terminated just like JSON messages.
+ *
+ * Each connection needs its own codec, as the string tables depend on all messages sent and received before.
+ * Messages have to be decoded in the order in which they have been encoded and none may be left out.
+ * Only the messages exchanged after authentication are supported.
+ * A codec only decodes the messages that the other side may send (agents send actions, the server everything else).
+ */
+public class BinaryCodec {
+
+    /**
+     * The side of the connection a codec is used on.
+     */
+    public enum Side {
+        SERVER,
+        AGENT
+    }
+
+    private static final int ACTION = 1;
+    private static final int REQUEST_ACTION = 2;
+    private static final int SIM_START = 3;
+    private static final int SIM_END = 4;
+    private static final int BYE = 5;
+
+    // string codes (all greater codes refer to the string table)
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+    private static final int PLAIN_STRING = 2;
+    private static final int FIRST_INDEX = 3;
+
+    /**
+     * The maximum number of strings to intern per direction. Further new strings are always sent completely.
+     */
+    private static final int MAX_STRINGS = 1 << 14;
+
+    private final Side side;
+    private final Map<String, Integer> sentStrings = new HashMap<>();
+    private final List<String> receivedStrings = new ArrayList<>();
+
+    /**
+     * @param side the side of the connection the codec is used on
+     */
+    public BinaryCodec(Side side) {
+        this.side = side;
+    }
+
+    /**
+     * @param message the message to encode
+     * @return the encoded message (without 0 bytes)
+     * @throws IllegalArgumentException if the message type is not supported
+     */
+    public synchronized byte[] encode(Message message) {
+        var out = new Output();
+        if (message instanceof ActionMessage action) {
+            out.writeByte(ACTION);
+            out.writeString(action.getActionType());
+            out.writeSigned(action.getId());
+            out.writeList(action.getParams(), out::writeString);
+        }
+        else if (message instanceof StepPercept percept) {
+            out.writeByte(REQUEST_ACTION);
+            writeStepPercept(out, percept);
+        }
+        else if (message instanceof InitialPercept percept) {
+            out.writeByte(SIM_START);
+            writeInitialPercept(out, percept);
+        }
+        else if (message instanceof SimEndMessage simEnd) {
+            out.writeByte(SIM_END);
+            out.writeSigned(simEnd.getTime());
+            out.writeSigned(simEnd.getScore());
+            out.writeSigned(simEnd.getRanking());
+        }
+        else if (message instanceof ByeMessage bye) {
+            out.writeByte(BYE);
+            out.writeSigned(bye.getTime());
+        }
+        else throw new IllegalArgumentException("Cannot encode " + message.getMessageType() + " messages");
+        return stuff(out.bytes, out.length);
+    }
+
+    /**
+     * @param frame an encoded message (without the terminating 0 byte)
+     * @return the decoded message
+     * @throws IllegalArgumentException if the message cannot be decoded or may not be sent by the other side
+     */
+    public synchronized Message decode(byte[] frame) {
+        var in = new Input(unstuff(frame));
+        try {
+            var type = in.readByte();
+            if ((type == ACTION) != (side == Side.SERVER))
+                throw new IllegalArgumentException("Unexpected message type " + type);
+            return switch (type) {
+                case ACTION -> new ActionMessage(in.readString(), in.readSigned(), in.readList(in::readString));
+                case REQUEST_ACTION -> readStepPercept(in);
+                case SIM_START -> readInitialPercept(in);
+                case SIM_END -> new SimEndMessage(in.readSigned(), in.readSigned(), (int) in.readSigned());
+                case BYE -> new ByeMessage(in.readSigned());
+                default -> throw new IllegalArgumentException("Unknown message type");
+            };
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Message incomplete");
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid events");
+        }
+    }
+
+    private void writeStepPercept(Output out, StepPercept percept) {
+        out.writeSigned(percept.getTime());
+        out.writeSigned(percept.getId());
+        out.writeSigned(percept.getDeadline() - percept.getTime());
+        out.writeSigned(percept.getStep());
+        out.writeSigned(percept.score);
+        out.writeList(percept.taskInfo, task -> {
+            out.writeString(task.name);
+            out.writeSigned(task.deadline);
+            out.writeSigned(task.reward);
+            out.writeList(task.requirements, out::writeThing);
+        });
+        out.writeList(percept.normsInfo, norm -> {
+            out.writeString(norm.name);
+            out.writeSigned(norm.start);
+            out.writeSigned(norm.until);
+            out.writeSigned(norm.punishment);
+            out.writeList(norm.requirements, subject -> {
+                out.writeSigned(subject.type.ordinal());
+                out.writeString(subject.name);
+                out.writeSigned(subject.quantity);
+                out.writeString(subject.details);
+            });
+        });
+        out.writeSigned(percept.energy);
+        out.writeBoolean(percept.deactivated);
+        out.writeString(percept.lastAction);
+        out.writeString(percept.lastActionResult);
+        out.writeList(percept.lastActionParams, out::writeString);
+        out.writePlainString(percept.stepEvents == null || percept.stepEvents.isEmpty()?
+                null : percept.stepEvents.toString());
+        out.writeString(percept.role);
+        out.writeList(percept.attachedThings, out::writePosition);
+        out.writeList(percept.violations != null? percept.violations : List.of(), out::writeString);
+        out.writeBoolean(percept.isDelta());
+        if (percept.isDelta()) {
+            out.writeSigned(percept.getDeltaBase());
+            out.writeChanges(percept.getThingChanges(), out::writeThing);
+            out.writeChanges(percept.getGoalZoneChanges(), out::writePosition);
+            out.writeChanges(percept.getRoleZoneChanges(), out::writePosition);
+        }
+        else {
+            out.writeList(percept.things, out::writeThing);
+            out.writeList(percept.goalZones, out::writePosition);
+            out.writeList(percept.roleZones, out::writePosition);
+        }
+        out.writeBoolean(percept.optAbsolutePosition != null);
+        if (percept.optAbsolutePosition != null) out.writePosition(percept.optAbsolutePosition);
+    }
+
+    private StepPercept readStepPercept(Input in) {
+        var time = in.readSigned();
+        var id = in.readSigned();
+        var deadline = time + in.readSigned();
+        var percept = new StepPercept(time, id, deadline, (int) in.readSigned());
+        percept.score = in.readSigned();
+        percept.taskInfo.addAll(in.readList(() -> new TaskInfo(in.readString(), (int) in.readSigned(),
+                (int) in.readSigned(), new HashSet<>(in.readList(in::readThing)))));
+        percept.normsInfo.addAll(in.readList(() -> {
+            var name = in.readString();
+            var start = (int) in.readSigned();
+            var until = (int) in.readSigned();
+            var punishment = (int) in.readSigned();
+            var requirements = in.readList(() -> new Subject(Subject.Type.values()[(int) in.readSigned()],
+                    in.readString(), (int) in.readSigned(), in.readString()));
+            return new NormInfo(name, start, until, new HashSet<>(requirements), punishment);
+        }));
+        percept.energy = (int) in.readSigned();
+        percept.deactivated = in.readBoolean();
+        percept.lastAction = in.readString();
+        percept.lastActionResult = in.readString();
+        percept.lastActionParams.addAll(in.readList(in::readString));
+        var events = in.readString();
+        percept.stepEvents = events != null? new JSONArray(events) : new JSONArray();
+        percept.role = in.readString();
+        percept.attachedThings = in.readList(in::readPosition);
+        percept.violations = in.readList(in::readString);
+        if (in.readBoolean()) {
+            percept.setDelta(in.readSigned(), in.readChanges(in::readThing), in.readChanges(in::readPosition),
+                    in.readChanges(in::readPosition));
+        }
+        else {
+            percept.things.addAll(in.readList(in::readThing));
+            percept.goalZones = in.readList(in::readPosition);
+            percept.roleZones = in.readList(in::readPosition);
+        }
+        if (in.readBoolean()) percept.optAbsolutePosition = in.readPosition();
+        return percept;
+    }
+
+    private void writeInitialPercept(Output out, InitialPercept percept) {
+        out.writeSigned(percept.getTime());
+        out.writeString(percept.agentName);
+        out.writeString(percept.teamName);
+        out.writeSigned(percept.teamSize);
+        out.writeSigned(percept.steps);
+        out.writeList(percept.roles, role -> {
+            out.writeString(role.name());
+            out.writeSigned(role.vision());
+            out.writeList(role.actions(), out::writeString);
+            out.writeUnsigned(role.speed().length);
+            for (var speed : role.speed()) out.writeSigned(speed);
+            out.writeLong(Double.doubleToLongBits(role.clearChance()));
+            out.writeSigned(role.clearMaxDistance());
+        });
+    }
+
+    private InitialPercept readInitialPercept(Input in) {
+        var time = in.readSigned();
+        return new InitialPercept(time, in.readString(), in.readString(), (int) in.readSigned(),
+                (int) in.readSigned(), in.readList(() -> {
+                    var name = in.readString();
+                    var vision = (int) in.readSigned();
+                    var actions = new HashSet<>(in.readList(in::readString));
+                    var speed = new int[in.readLength()];
+                    for (var i = 0; i < speed.length; i++) speed[i] = (int) in.readSigned();
+                    return new Role(name, vision, actions, speed, Double.longBitsToDouble(in.readLong()),
+                            (int) in.readSigned());
+                }));
+    }
+
+    /**
+     * Replaces all 0 bytes: the data is split at each 0 byte into blocks (of at most 254 bytes),
+     * each of which is preceded by its length + 1.
+     */
+    private static byte[] stuff(byte[] data, int length) {
+        var result = new byte[length + length / 254 + 1];
+        var codeIndex = 0;
+        var code = 1;
+        var out = 1;
+        for (var i = 0; i < length; i++) {
+            if (data[i] != 0) {
+                result[out++] = data[i];
+                code++;
+            }
+            if (data[i] == 0 || code == 0xFF) {
+                result[codeIndex] = (byte) code;
+                codeIndex = out++;
+                code = 1;
+            }
+        }
+        result[codeIndex] = (byte) code;
+        return Arrays.copyOf(result, out);
+    }
+
+    /**
+     * Reverses {@link #stuff}.
+     */
+    private static byte[] unstuff(byte[] frame) {
+        var result = new byte[frame.length];
+        var length = 0;
+        var i = 0;
+        while (i < frame.length) {
+            var code = frame[i++] & 0xFF;
+            if (code == 0 || i + code - 1 > frame.length) throw new IllegalArgumentException("Invalid frame");
+            System.arraycopy(frame, i, result, length, code - 1);
+            length += code - 1;
+            i += code - 1;
+            if (code < 0xFF && i < frame.length) result[length++] = 0;
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Writes one message.
+     */
+    private class Output {
+
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+
+        void writeByte(int b) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            bytes[length++] = (byte) b;
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b? 1 : 0);
+        }
+
+        void writeUnsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            for (var i = 0; i < 8; i++) writeByte((int) (value >>> (8 * i)));
+        }
+
+        /**
+         * Writes a string and interns it (if there is still room in the table).
+         */
+        void writeString(String s) {
+            if (s == null) {
+                writeUnsigned(NULL_STRING);
+                return;
+            }
+            var index = sentStrings.get(s);
+            if (index != null) writeUnsigned(FIRST_INDEX + index);
+            else if (sentStrings.size() < MAX_STRINGS) {
+                sentStrings.put(s, sentStrings.size());
+                writeUnsigned(NEW_STRING);
+                writeUTF8(s);
+            }
+            else writePlainString(s);
+        }
+
+        /**
+         * Writes a string without interning it (for strings which are unlikely to occur again).
+         */
+        void writePlainString(String s) {
+            if (s == null) {
+                writeUnsigned(NULL_STRING);
+                return;
+            }
+            writeUnsigned(PLAIN_STRING);
+            writeUTF8(s);
+        }
+
+        private void writeUTF8(String s) {
+            var utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(utf8.length);
+            for (var b : utf8) writeByte(b);
+        }
+
+        void writePosition(Position position) {
+            writeSigned(position.x);
+            writeSigned(position.y);
+        }
+
+        void writeThing(Thing thing) {
+            writeSigned(thing.x);
+            writeSigned(thing.y);
+            writeString(thing.type);
+            writeString(thing.details);
+        }
+
+        <T> void writeList(Collection<T> elements, Consumer<T> writer) {
+            writeUnsigned(elements.size());
+            elements.forEach(writer);
+        }
+
+        <T> void writeChanges(StepPercept.Changes<T> changes, Consumer<T> writer) {
+            writeList(changes.added(), writer);
+            writeList(changes.removed(), writer);
+        }
+    }
+
+    /**
+     * Reads one message.
+     */
+    private class Input {
+
+        private final byte[] bytes;
+        private int position = 0;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        long readUnsigned() {
+            long value = 0;
+            for (var shift = 0; shift < 64; shift += 7) {
+                var b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Invalid varint");
+        }
+
+        long readSigned() {
+            var value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() {
+            long value = 0;
+            for (var i = 0; i < 8; i++) value |= (long) readByte() << (8 * i);
+            return value;
+        }
+
+        String readString() {
+            var code = readUnsigned();
+            if (code == NULL_STRING) return null;
+            if (code == NEW_STRING || code == PLAIN_STRING) {
+                var length = readLength();
+                var s = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+                if (code == NEW_STRING && receivedStrings.size() < MAX_STRINGS) receivedStrings.add(s);
+                return s;
+            }
+            if (code - FIRST_INDEX >= receivedStrings.size()) throw new IllegalArgumentException("Unknown string");
+            return receivedStrings.get((int) (code - FIRST_INDEX));
+        }
+
+        Position readPosition() {
+            return Position.of((int) readSigned(), (int) readSigned());
+        }
+
+        Thing readThing() {
+            return new Thing((int) readSigned(), (int) readSigned(), readString(), readString());
+        }
+
+        /**
+         * Reads the length of a string or the size of a list or array. Each element takes at least one byte,
+         * so the length cannot be greater than the number of bytes left.
+         */
+        int readLength() {
+            var length = readUnsigned();
+            if (length < 0 || length > bytes.length - position) throw new IllegalArgumentException("Invalid length");
+            return (int) length;
+        }
+
+        <T> List<T> readList(Supplier<T> reader) {
+            var size = readLength();
+            var result = new ArrayList<T>(size);
+            for (var i = 0; i < size; i++) result.add(reader.get());
+            return result;
+        }
+
+        <T> StepPercept.Changes<T> readChanges(Supplier<T> reader) {
+            return new StepPercept.Changes<>(readList(reader), readList(reader));
+        }
+    }
+}
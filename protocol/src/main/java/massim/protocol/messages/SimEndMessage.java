@@ -15,7 +15,11 @@ public class SimEndMessage extends Message {
     }
 
     public SimEndMessage(long score, int ranking) {
-        this.time = System.currentTimeMillis();
+        this(System.currentTimeMillis(), score, ranking);
+    }
+
+    public SimEndMessage(long time, long score, int ranking) {
+        this.time = time;
         this.score = score;
         this.ranking = ranking;
     }
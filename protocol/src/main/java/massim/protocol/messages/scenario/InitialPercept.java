@@ -22,7 +22,12 @@ public class InitialPercept extends SimStartMessage {
     }
 
     public InitialPercept(String agentName, String teamName, int teamSize, int steps, Collection<Role> roles) {
-        super(System.currentTimeMillis());
+        this(System.currentTimeMillis(), agentName, teamName, teamSize, steps, roles);
+    }
+
+    public InitialPercept(long time, String agentName, String teamName, int teamSize, int steps,
+                          Collection<Role> roles) {
+        super(time);
         this.agentName = agentName;
         this.teamName = teamName;
         this.teamSize = teamSize;
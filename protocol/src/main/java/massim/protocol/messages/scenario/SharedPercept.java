@@ -0,0 +1,65 @@
+package massim.protocol.messages.scenario;
+
+import massim.protocol.data.NormInfo;
+import massim.protocol.data.TaskInfo;
+import org.json.JSONArray;
+import org.json.JSONString;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The parts of a step percept that are the same for all agents (tasks and norms).
+ * Each part is serialized only once per step and then copied verbatim into the message of each agent.
+ */
+public class SharedPercept {
+
+    public final Set<TaskInfo> taskInfo;
+    public final Set<NormInfo> normsInfo;
+
+    private final Section tasks;
+    private final Section norms;
+
+    public SharedPercept(Set<TaskInfo> taskInfo, Set<NormInfo> normsInfo) {
+        this.taskInfo = Collections.unmodifiableSet(new LinkedHashSet<>(taskInfo));
+        this.normsInfo = Collections.unmodifiableSet(new LinkedHashSet<>(normsInfo));
+        this.tasks = new Section(this.taskInfo.stream().map(TaskInfo::toJSON).collect(Collectors.toList()));
+        this.norms = new Section(this.normsInfo.stream().map(NormInfo::toJSON).collect(Collectors.toList()));
+    }
+
+    JSONArray getTasks() {
+        return tasks;
+    }
+
+    JSONArray getNorms() {
+        return norms;
+    }
+
+    /**
+     * A JSON array that remembers its serialized form. org.json writes {@link JSONString}s as they are,
+     * so the array is only converted to text once, no matter how many messages contain it.
+     * Must not be modified after creation.
+     */
+    private static class Section extends JSONArray implements JSONString {
+
+        private String json;
+
+        private Section(Collection<?> elements) {
+            super(elements);
+        }
+
+        @Override
+        public synchronized String toJSONString() {
+            if (json == null) json = super.toString();
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return toJSONString();
+        }
+    }
+}
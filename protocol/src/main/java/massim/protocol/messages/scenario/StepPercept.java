@@ -9,6 +9,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class StepPercept extends RequestActionMessage {
@@ -30,21 +31,42 @@ public class StepPercept extends RequestActionMessage {
     public List<Position> roleZones = new ArrayList<>();
     public Position optAbsolutePosition;
 
+    private SharedPercept shared;
+
+    // delta encoding: the changes relative to the percept with ID deltaBase
+    private long deltaBase = -1;
+    private Changes<Thing> thingChanges;
+    private Changes<Position> goalZoneChanges;
+    private Changes<Position> roleZoneChanges;
+
+    /**
+     * The elements to add to and to remove from one of the collections of a delta base.
+     */
+    public record Changes<T>(List<T> added, List<T> removed) {}
+
     public StepPercept(JSONObject content) {
         super(content);
         parsePercept(content.getJSONObject("percept"));
     }
 
+    /**
+     * Creates an empty percept. Its fields have to be filled afterwards (e.g. when decoding a binary message).
+     */
+    public StepPercept(long time, long id, long deadline, int step) {
+        super(time, id, deadline, step);
+    }
+
     public StepPercept(int step, long score, Set<Thing> things,
-                       Set<TaskInfo> taskInfo, Set<NormInfo> normInfo, String action, List<String> lastActionParams, String result,
+                       SharedPercept shared, String action, List<String> lastActionParams, String result,
                        List<Position> attachedThings, JSONArray stepEvents, String role, int energy,
                        boolean deactivated, List<String> violations, List<Position> goalZones, List<Position> roleZones,
                        Position optAbsolutePosition) {
         super(System.currentTimeMillis(), -1, -1, step); // id and deadline are updated later
         this.score = score;
         this.things.addAll(things);
-        this.taskInfo.addAll(taskInfo);
-        this.normsInfo.addAll(normInfo);
+        this.shared = shared;
+        this.taskInfo = shared.taskInfo;
+        this.normsInfo = shared.normsInfo;
         this.lastAction = action;
         this.lastActionResult = result;
         this.lastActionParams.addAll(lastActionParams);
@@ -63,9 +85,10 @@ public class StepPercept extends RequestActionMessage {
     public JSONObject makePercept() {
         var percept = new JSONObject()
                 .put("score", score)
-                .put("things", new JSONArray(things.stream().map(Thing::toJSON).collect(Collectors.toList())))
-                .put("tasks", new JSONArray(taskInfo.stream().map(TaskInfo::toJSON).collect(Collectors.toList())))
-                .put("norms", new JSONArray(normsInfo.stream().map(NormInfo::toJSON).collect(Collectors.toList())))
+                .put("tasks", shared != null? shared.getTasks()
+                        : new JSONArray(taskInfo.stream().map(TaskInfo::toJSON).collect(Collectors.toList())))
+                .put("norms", shared != null? shared.getNorms()
+                        : new JSONArray(normsInfo.stream().map(NormInfo::toJSON).collect(Collectors.toList())))
                 .put("energy", energy)
                 .put("deactivated", deactivated)
                 .put("lastAction", lastAction)
@@ -74,9 +97,19 @@ public class StepPercept extends RequestActionMessage {
                 .put("events", stepEvents != null? stepEvents : new JSONArray())
                 .put("role", this.role)
                 .put("attached", new JSONArray(attachedThings.stream().map(Position::toJSON).collect(Collectors.toList())))
-                .put("violations", new JSONArray(violations))
-                .put("goalZones", new JSONArray(this.goalZones.stream().map(Position::toJSON).collect(Collectors.toList())))
-                .put("roleZones", new JSONArray(this.roleZones.stream().map(Position::toJSON).collect(Collectors.toList())));
+                .put("violations", new JSONArray(violations));
+        if (isDelta()) {
+            percept.put("delta", new JSONObject()
+                    .put("base", deltaBase)
+                    .put("things", changesToJSON(thingChanges, Thing::toJSON))
+                    .put("goalZones", changesToJSON(goalZoneChanges, Position::toJSON))
+                    .put("roleZones", changesToJSON(roleZoneChanges, Position::toJSON)));
+        }
+        else {
+            percept.put("things", new JSONArray(things.stream().map(Thing::toJSON).collect(Collectors.toList())))
+                    .put("goalZones", new JSONArray(this.goalZones.stream().map(Position::toJSON).collect(Collectors.toList())))
+                    .put("roleZones", new JSONArray(this.roleZones.stream().map(Position::toJSON).collect(Collectors.toList())));
+        }
         if (optAbsolutePosition != null)
             percept.put("absolutePosition", optAbsolutePosition.toJSON());
         return percept;
@@ -84,7 +117,8 @@ public class StepPercept extends RequestActionMessage {
 
     private void parsePercept(JSONObject percept) {
         this.score = percept.getLong("score");
-        JSONArray jsonThings = percept.getJSONArray("things");
+        var delta = percept.optJSONObject("delta");
+        JSONArray jsonThings = delta == null? percept.getJSONArray("things") : new JSONArray();
         JSONArray jsonTasks = percept.getJSONArray("tasks");
         JSONArray jsonNorms = percept.getJSONArray("norms");
         for (int i = 0; i < jsonThings.length(); i++) {
@@ -126,6 +160,129 @@ public class StepPercept extends RequestActionMessage {
         var optAbsPositionArr = percept.optJSONArray("absolutePosition");
         if (optAbsPositionArr != null)
             this.optAbsolutePosition = Position.fromJSON(optAbsPositionArr);
+
+        if (delta != null) {
+            setDelta(delta.getLong("base"),
+                    changesFromJSON(delta.getJSONObject("things"), o -> Thing.fromJson((JSONObject) o)),
+                    changesFromJSON(delta.getJSONObject("goalZones"), o -> Position.fromJSON((JSONArray) o)),
+                    changesFromJSON(delta.getJSONObject("roleZones"), o -> Position.fromJSON((JSONArray) o)));
+        }
+    }
+
+    /**
+     * Makes this percept contain only the changes (of things and zones) relative to an earlier percept,
+     * which the receiver already knows.
+     * @param baseId the ID of the earlier percept
+     * @param base the earlier percept
+     */
+    public void setDeltaBase(long baseId, StepPercept base) {
+        setDelta(baseId,
+                diff(base.things, things, StepPercept::thingKey),
+                diff(base.goalZones, goalZones, p -> p),
+                diff(base.roleZones, roleZones, p -> p));
+    }
+
+    /**
+     * Sets the changes of things and zones relative to an earlier percept (e.g. as received).
+     * @param baseId the ID of the earlier percept
+     */
+    public void setDelta(long baseId, Changes<Thing> things, Changes<Position> goalZones, Changes<Position> roleZones) {
+        this.deltaBase = baseId;
+        this.thingChanges = things;
+        this.goalZoneChanges = goalZones;
+        this.roleZoneChanges = roleZones;
+    }
+
+    /**
+     * @return true iff this percept only contains the changes relative to an earlier percept
+     * (i.e. a received percept still has to be completed with {@link #applyDelta})
+     */
+    public boolean isDelta() {
+        return deltaBase >= 0;
+    }
+
+    /**
+     * @return the ID of the percept this delta percept is relative to
+     */
+    public long getDeltaBase() {
+        return deltaBase;
+    }
+
+    public Changes<Thing> getThingChanges() {
+        return thingChanges;
+    }
+
+    public Changes<Position> getGoalZoneChanges() {
+        return goalZoneChanges;
+    }
+
+    public Changes<Position> getRoleZoneChanges() {
+        return roleZoneChanges;
+    }
+
+    /**
+     * Completes a received delta percept.
+     * @param base the complete percept with the ID given by {@link #getDeltaBase()}
+     */
+    public void applyDelta(StepPercept base) {
+        things = new HashSet<>(patch(base.things, thingChanges, StepPercept::thingKey));
+        goalZones = patch(base.goalZones, goalZoneChanges, p -> p);
+        roleZones = patch(base.roleZones, roleZoneChanges, p -> p);
+        setDelta(-1, null, null, null);
+    }
+
+    private static Object thingKey(Thing thing) {
+        return Arrays.asList(thing.x, thing.y, thing.type, thing.details);
+    }
+
+    /**
+     * Determines which elements have to be added to and removed from base to get current (as multisets).
+     */
+    private static <T> Changes<T> diff(Collection<T> base, Collection<T> current, Function<T, Object> key) {
+        var counts = new HashMap<Object, Integer>();
+        base.forEach(e -> counts.merge(key.apply(e), 1, Integer::sum));
+        var added = new ArrayList<T>();
+        for (var e : current) {
+            if (counts.getOrDefault(key.apply(e), 0) > 0) counts.merge(key.apply(e), -1, Integer::sum);
+            else added.add(e);
+        }
+        var removed = new ArrayList<T>();
+        for (var e : base) {
+            if (counts.getOrDefault(key.apply(e), 0) > 0) {
+                counts.merge(key.apply(e), -1, Integer::sum);
+                removed.add(e);
+            }
+        }
+        return new Changes<>(added, removed);
+    }
+
+    /**
+     * Applies the changes computed by {@link #diff} to a copy of base.
+     */
+    private static <T> List<T> patch(Collection<T> base, Changes<T> changes, Function<T, Object> key) {
+        var removed = new HashMap<Object, Integer>();
+        changes.removed().forEach(e -> removed.merge(key.apply(e), 1, Integer::sum));
+        var result = new ArrayList<T>();
+        for (var e : base) {
+            if (removed.getOrDefault(key.apply(e), 0) > 0) removed.merge(key.apply(e), -1, Integer::sum);
+            else result.add(e);
+        }
+        result.addAll(changes.added());
+        return result;
+    }
+
+    private static <T> JSONObject changesToJSON(Changes<T> changes, Function<T, Object> toJSON) {
+        return new JSONObject()
+                .put("added", new JSONArray(changes.added().stream().map(toJSON).collect(Collectors.toList())))
+                .put("removed", new JSONArray(changes.removed().stream().map(toJSON).collect(Collectors.toList())));
+    }
+
+    private static <T> Changes<T> changesFromJSON(JSONObject json, Function<Object, T> fromJSON) {
+        var added = new ArrayList<T>();
+        json.getJSONArray("added").forEach(o -> added.add(fromJSON.apply(o)));
+        var removed = new ArrayList<T>();
+        json.getJSONArray("removed").forEach(o -> removed.add(fromJSON.apply(o)));
+        return new Changes<>(added, removed);
     }
 
     private static List<Position> positionArrayToList(JSONArray positions) {
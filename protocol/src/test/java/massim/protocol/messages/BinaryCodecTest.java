@@ -0,0 +1,115 @@
+package massim.protocol.messages;
+
+import massim.protocol.data.NormInfo;
+import massim.protocol.data.Position;
+import massim.protocol.data.Subject;
+import massim.protocol.data.TaskInfo;
+import massim.protocol.data.Thing;
+import massim.protocol.messages.scenario.SharedPercept;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.*;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void stepPercepts() {
+        var server = new BinaryCodec(BinaryCodec.Side.SERVER);
+        var agent = new BinaryCodec(BinaryCodec.Side.AGENT);
+        var base = percept(1, Set.of(new Thing(0, 0, "entity", "A"), new Thing(0, 2, "block", "b1"),
+                new Thing(2, 0, "obstacle", "")), List.of(Position.of(2, 0)));
+        base.updateIdAndDeadline(1, base.getTime() + 4000);
+
+        var frame = server.encode(base);
+        for (var b : frame) assert b != 0;
+        var received = (StepPercept) agent.decode(frame);
+        assert received.getId() == 1 && received.getDeadline() == base.getTime() + 4000;
+        assert received.getStep() == base.getStep() && received.energy == base.energy;
+        assert Objects.equals(received.role, base.role) && Objects.equals(received.lastAction, base.lastAction);
+        assert received.lastActionParams.equals(base.lastActionParams);
+        assert received.taskInfo.size() == base.taskInfo.size() && received.normsInfo.size() == base.normsInfo.size();
+        assert sortedStrings(received.things).equals(sortedStrings(base.things));
+        assert sortedStrings(received.goalZones).equals(sortedStrings(base.goalZones));
+        assert sortedStrings(received.roleZones).equals(sortedStrings(base.roleZones));
+        assert server.encode(base).length < frame.length; // all strings are known by now
+        assert agent.decode(server.encode(base)) != null;
+
+        // the agent moved east
+        var current = percept(2, Set.of(new Thing(0, 0, "entity", "A"), new Thing(-1, 2, "block", "b1"),
+                new Thing(1, 0, "obstacle", "")), List.of(Position.of(1, 0)));
+        current.updateIdAndDeadline(2, -1);
+        current.setDeltaBase(1, base);
+        var delta = (StepPercept) agent.decode(server.encode(current));
+        assert delta.isDelta() && delta.getDeltaBase() == 1;
+        delta.applyDelta(received);
+        assert sortedStrings(delta.things).equals(sortedStrings(current.things));
+        assert sortedStrings(delta.goalZones).equals(sortedStrings(current.goalZones));
+    }
+
+    @Test
+    public void actions() {
+        var server = new BinaryCodec(BinaryCodec.Side.SERVER);
+        var agent = new BinaryCodec(BinaryCodec.Side.AGENT);
+        var action = (ActionMessage) server.decode(agent.encode(new ActionMessage("move", 2, List.of("e"))));
+        assert action.getActionType().equals("move") && action.getId() == 2 && action.getParams().equals(List.of("e"));
+    }
+
+    @Test
+    public void rejectsMessagesOfTheWrongSide() {
+        var agent = new BinaryCodec(BinaryCodec.Side.AGENT);
+        var server = new BinaryCodec(BinaryCodec.Side.SERVER);
+        assert rejected(server, agent.encode(new ByeMessage(1)));
+        assert rejected(agent, server.encode(new ActionMessage("skip", 1, List.of())));
+    }
+
+    @Test
+    public void rejectsInvalidLengths() {
+        var agent = new BinaryCodec(BinaryCodec.Side.AGENT);
+        // sim-start with one role whose speed array claims 2^30 elements
+        assert rejected(agent, stuff(3, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0x80, 0x80, 0x80, 0x80, 0x04));
+        // action with a string length above Integer.MAX_VALUE
+        var server = new BinaryCodec(BinaryCodec.Side.SERVER);
+        assert rejected(server, stuff(1, 2, 0x80, 0x80, 0x80, 0x80, 0x10, 'a'));
+    }
+
+    private static boolean rejected(BinaryCodec codec, byte[] frame) {
+        try {
+            codec.decode(frame);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the bytes with all 0 bytes stuffed (for less than 254 bytes)
+     */
+    private static byte[] stuff(int... data) {
+        var result = new byte[data.length + 1];
+        var codeIndex = 0;
+        var out = 1;
+        for (var b : data) {
+            if (b == 0) {
+                result[codeIndex] = (byte) (out - codeIndex);
+                codeIndex = out++;
+            }
+            else result[out++] = (byte) b;
+        }
+        result[codeIndex] = (byte) (out - codeIndex);
+        return result;
+    }
+
+    private static StepPercept percept(int step, Set<Thing> things, List<Position> goalZones) {
+        var task = new TaskInfo("task0", 100, 10, Set.of(new Thing(0, 1, "b1", "")));
+        var norm = new NormInfo("n1", 1, 50, Set.of(new Subject(Subject.Type.BLOCK, "b1", 2, "")), 5);
+        return new StepPercept(step, 0, things, new SharedPercept(Set.of(task), Set.of(norm)), "move",
+                List.of("e"), "success", new ArrayList<>(), new JSONArray(), "default", 100, false,
+                new ArrayList<>(), goalZones, List.of(Position.of(0, -3)), null);
+    }
+
+    private static List<String> sortedStrings(Collection<?> elements) {
+        return elements.stream().map(String::valueOf).sorted().toList();
+    }
+}
@@ -0,0 +1,37 @@
+package massim.protocol.messages.scenario;
+
+import massim.protocol.data.NormInfo;
+import massim.protocol.data.Subject;
+import massim.protocol.data.TaskInfo;
+import massim.protocol.data.Thing;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class SharedPerceptTest {
+
+    @Test
+    public void sections() {
+        var task = new TaskInfo("sharedTask", 10, 1, Set.of(new Thing(0, 1, "b1", "")));
+        var norm = new NormInfo("n1", 1, 50, Set.of(new Subject(Subject.Type.ROLE, "worker", 1, "")), 5);
+        var shared = new SharedPercept(Set.of(task), Set.of(norm));
+        var json1 = percept(shared).toJson().getJSONObject("content").getJSONObject("percept");
+        var json2 = percept(shared).toJson().getJSONObject("content").getJSONObject("percept");
+        assert json1.get("tasks") == json2.get("tasks");
+        assert json1.get("norms") == json2.get("norms");
+        assert shared.getTasks().toString() == shared.getTasks().toString(); // serialized only once
+
+        var parsed = new StepPercept(new JSONObject(percept(shared).toJson().toString()).getJSONObject("content"));
+        assert parsed.taskInfo.size() == 1 && parsed.taskInfo.iterator().next().name.equals("sharedTask");
+        assert parsed.normsInfo.size() == 1 && parsed.normsInfo.iterator().next().name.equals("n1");
+    }
+
+    private static StepPercept percept(SharedPercept shared) {
+        return new StepPercept(1, 0, Set.of(), shared, "skip", List.of(), "success", new ArrayList<>(),
+                new JSONArray(), "default", 100, false, new ArrayList<>(), List.of(), List.of(), null);
+    }
+}
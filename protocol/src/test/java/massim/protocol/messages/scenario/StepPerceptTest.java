@@ -0,0 +1,46 @@
+package massim.protocol.messages.scenario;
+
+import massim.protocol.data.Position;
+import massim.protocol.data.Thing;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.*;
+
+public class StepPerceptTest {
+
+    @Test
+    public void deltaPercepts() {
+        var base = percept(1, Set.of(new Thing(0, 0, "entity", "A"), new Thing(0, 2, "block", "b1"),
+                new Thing(3, 3, "obstacle", "")), List.of(Position.of(1, 0), Position.of(2, 0)));
+        base.updateIdAndDeadline(1, -1);
+        base = new StepPercept(new JSONObject(base.toJson().toString()).getJSONObject("content"));
+
+        // the agent moved east and a new obstacle appeared
+        var current = percept(2, Set.of(new Thing(0, 0, "entity", "A"), new Thing(-1, 2, "block", "b1"),
+                new Thing(2, 3, "obstacle", ""), new Thing(3, 1, "obstacle", "")),
+                List.of(Position.of(0, 0), Position.of(1, 0)));
+        current.updateIdAndDeadline(2, -1);
+        current.setDeltaBase(1, base);
+        var delta = new StepPercept(new JSONObject(current.toJson().toString()).getJSONObject("content"));
+        assert delta.isDelta();
+        assert delta.getDeltaBase() == 1;
+        delta.applyDelta(base);
+
+        assert !delta.isDelta();
+        assert sortedStrings(delta.things).equals(sortedStrings(current.things));
+        assert sortedStrings(delta.goalZones).equals(sortedStrings(current.goalZones));
+        assert sortedStrings(delta.roleZones).equals(sortedStrings(current.roleZones));
+    }
+
+    private static StepPercept percept(int step, Set<Thing> things, List<Position> goalZones) {
+        return new StepPercept(step, 0, things, new SharedPercept(Set.of(), Set.of()), "move", List.of("e"),
+                "success", new ArrayList<>(), new JSONArray(), "default", 100, false, new ArrayList<>(),
+                goalZones, List.of(Position.of(0, -3)), null);
+    }
+
+    private static List<String> sortedStrings(Collection<?> elements) {
+        return elements.stream().map(String::valueOf).sorted().toList();
+    }
+}
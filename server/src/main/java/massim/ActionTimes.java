@@ -0,0 +1,108 @@
+package massim;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long the server had to wait for each agent's action during one step.
+ */
+class ActionTimes {
+
+    /**
+     * Upper bounds (exclusive, in ms) of the histogram buckets. The last bucket holds everything above.
+     */
+    private static final long[] BUCKET_LIMITS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    private final int step;
+    private final long start = System.nanoTime();
+    private final Map<String, Long> waitTimes = new ConcurrentHashMap<>();
+    private final Set<String> timedOut = ConcurrentHashMap.newKeySet();
+    private volatile long barrierTime = -1;
+
+    /**
+     * @param step the step for which actions are requested
+     */
+    ActionTimes(int step) {
+        this.step = step;
+    }
+
+    /**
+     * Records that the action of the given agent is now available.
+     * @param agentName the name of the agent
+     * @param timeout whether the agent did not answer in time
+     */
+    void record(String agentName, boolean timeout) {
+        waitTimes.put(agentName, System.nanoTime() - start);
+        if (timeout) timedOut.add(agentName);
+    }
+
+    /**
+     * Marks the point at which the step could be continued.
+     */
+    void finish() {
+        barrierTime = System.nanoTime() - start;
+    }
+
+    /**
+     * @return the time (in ms) until the action of the last agent was available
+     */
+    long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTimes.values().stream().max(Long::compare).orElse(0L));
+    }
+
+    /**
+     * @return the time (in ms) the step was blocked in total or -1 if the step is not finished yet
+     */
+    long getBarrierMillis() {
+        return barrierTime < 0? -1 : TimeUnit.NANOSECONDS.toMillis(barrierTime);
+    }
+
+    /**
+     * @param n the maximum number of agents to return
+     * @return the names of the (at most n) agents that took longest to answer, slowest first
+     */
+    List<String> getSlowest(int n) {
+        return waitTimes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(n)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * @return the names of all agents that did not answer in time
+     */
+    Set<String> getTimedOut() {
+        return new TreeSet<>(timedOut);
+    }
+
+    /**
+     * @return number of answers per bucket (see {@link #BUCKET_LIMITS}), timeouts not included
+     */
+    int[] getHistogram() {
+        var histogram = new int[BUCKET_LIMITS.length + 1];
+        waitTimes.forEach((agent, nanos) -> {
+            if (timedOut.contains(agent)) return;
+            var millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            var bucket = 0;
+            while (bucket < BUCKET_LIMITS.length && millis >= BUCKET_LIMITS[bucket]) bucket++;
+            histogram[bucket]++;
+        });
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        var histogram = getHistogram();
+        var buckets = new StringJoiner(" ");
+        for (var i = 0; i < histogram.length; i++) {
+            if (histogram[i] == 0) continue;
+            var label = i < BUCKET_LIMITS.length? "<" + BUCKET_LIMITS[i] : ">=" + BUCKET_LIMITS[i - 1];
+            buckets.add(label + "ms:" + histogram[i]);
+        }
+        if (!timedOut.isEmpty()) buckets.add("timeout:" + timedOut.size());
+        return "Step " + step + ": waited " + getBarrierMillis() + "ms, last action after " + getMaxWaitMillis()
+                + "ms from " + getSlowest(3) + " [" + buckets + "]";
+    }
+}
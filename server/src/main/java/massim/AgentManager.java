@@ -3,17 +3,15 @@ package massim;
 import massim.config.TeamConfig;
 import massim.protocol.messages.*;
 import massim.protocol.messages.scenario.Actions;
+import massim.protocol.messages.scenario.StepPercept;
 import massim.util.Log;
-import org.json.JSONException;
+import massim.util.Threads;
 import org.json.JSONObject;
 
-import java.io.*;
-import java.net.Socket;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -23,10 +21,35 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 class AgentManager {
 
+    /**
+     * How long a step waits for the agents' actions.
+     */
+    enum StepMode {
+        /**
+         * Continue as soon as all agents have answered (or timed out).
+         */
+        EARLY,
+        /**
+         * Always wait for the full agent timeout, even if all agents have answered already.
+         */
+        DEADLINE
+    }
+
+    /**
+     * The protocol extensions agents may request during authentication.
+     */
+    static final Set<String> SUPPORTED_EXTENSIONS =
+            Set.of(AuthRequestMessage.EXTENSION_DELTA_PERCEPTS, AuthRequestMessage.EXTENSION_BINARY);
+
+    /**
+     * How many unanswered step percepts are kept per agent as possible bases for delta percepts.
+     */
+    private static final int MAX_DELTA_BASES = 16;
+
     private Map<String, AgentProxy> agents = new HashMap<>();
 
     private long agentTimeout;
-    private boolean disconnecting = false;
+    private StepMode stepMode;
     private int maxPacketLength;
 
     /**
@@ -34,36 +57,57 @@ class AgentManager {
      */
     private int sendBufferSize = 4;
 
+    /**
+     * Number of threads serving all agent sockets.
+     */
+    private static final int IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final Transport transport;
+
+    /**
+     * Shared timer for all action deadlines. Completes pending action requests after {@link #agentTimeout}.
+     */
+    private final ScheduledThreadPoolExecutor timeouts =
+            new ScheduledThreadPoolExecutor(1, Threads.daemonFactory("action-timeouts"));
+
     /**
      * Creates a new agent manager responsible for sending and receiving messages.
      * @param teams a list of all teams to configure the manager for
      * @param agentTimeout the timeout to use for request-action messages (to wait for actions) in milliseconds
      * @param maxPacketLength the maximum size of packets to <b>process</b> (they are received anyway, just not parsed
      *                        in case they are too big)
+     * @param stepMode whether to continue as soon as all actions have arrived or to wait for the agent timeout
+     * @throws IOException if the network I/O threads cannot be set up
      */
-    AgentManager(List<TeamConfig> teams, long agentTimeout, int maxPacketLength) {
+    AgentManager(List<TeamConfig> teams, long agentTimeout, int maxPacketLength, StepMode stepMode)
+            throws IOException {
         teams.forEach(team -> team.getAgentNames().forEach((name) -> {
             agents.put(name, new AgentProxy(name, team.getName(), team.getPassword(name)));
         }));
         this.agentTimeout = agentTimeout;
         this.maxPacketLength = maxPacketLength;
+        this.stepMode = stepMode;
+        this.transport = new Transport(maxPacketLength, IO_THREADS);
+        this.timeouts.setRemoveOnCancelPolicy(true);
     }
 
     /**
      * Stops all related threads and closes all sockets involved.
      */
     void stop(){
-        disconnecting = true;
         agents.values().forEach(AgentProxy::close);
+        timeouts.shutdownNow();
+        transport.stop();
     }
 
     /**
      * Sets a new socket for the given agent that was just authenticated (again or for the first time).
      * @param s the new socket opened for the agent
      * @param agentName the name of the agent
+     * @param extensions the protocol extensions to use for the connection
      */
-    void handleNewConnection(Socket s, String agentName){
-        if (agents.containsKey(agentName)) agents.get(agentName).handleNewConnection(s);
+    void handleNewConnection(SocketChannel s, String agentName, Set<String> extensions){
+        if (agents.containsKey(agentName)) agents.get(agentName).handleNewConnection(s, extensions);
     }
 
     /**
@@ -90,27 +134,33 @@ class AgentManager {
 
     /**
      * Uses the percepts to send a request-action message and waits for the action answers.
-     * {@link #agentTimeout} is used to limit the waiting time per agent.
+     * No thread is started per agent: each answer completes its future directly from the agent's receive thread
+     * and {@link #timeouts} completes the remaining futures once {@link #agentTimeout} has passed.
+     * In {@link StepMode#EARLY}, the method returns the moment the last action has arrived.
+     * The time waited for each agent is logged after each step.
      * @param percepts mapping from agent names to percepts of the current simulation state
      * @return mapping from agent names to actions received in response
      */
     Map<String, ActionMessage> requestActions(Map<String, RequestActionMessage> percepts) {
-        // each thread needs to countdown the latch when it finishes
+        var step = percepts.values().stream().mapToInt(RequestActionMessage::getStep).findAny().orElse(-1);
+        var times = new ActionTimes(step);
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(agentTimeout);
+        // each completed action (received or timed out) counts the latch down
         CountDownLatch latch = new CountDownLatch(percepts.keySet().size());
         Map<String, ActionMessage> resultMap = new ConcurrentHashMap<>();
-        percepts.forEach((agName, percept) -> {
-            // start a new thread to get each action
-            new Thread(() -> {
-                ActionMessage action = agents.get(agName).requestAction(percept);
-                resultMap.put(agName, action);
-                latch.countDown();
-            }).start();
-        });
+        percepts.forEach((agName, percept) -> agents.get(agName).requestAction(percept, times).thenAccept(action -> {
+            resultMap.put(agName, action);
+            latch.countDown();
+        }));
         try {
             latch.await();
+            if (stepMode == StepMode.DEADLINE)
+                TimeUnit.NANOSECONDS.sleep(deadline - System.nanoTime());
         } catch (InterruptedException e) {
             Log.log(Log.Level.ERROR, "Latch interrupted. Actions probably incomplete.");
         }
+        times.finish();
+        Log.log(Log.Level.NORMAL, times::toString);
         return resultMap;
     }
 
@@ -138,14 +188,12 @@ class AgentManager {
         private String password;
 
         // networking things
-        private Socket socket;
-        private Thread sendThread;
-        private Thread receiveThread;
+        private volatile Link link; // the current connection (null if the agent never connected)
 
         // concurrency magic
         private AtomicLong messageCounter = new AtomicLong();
-        private LinkedBlockingDeque<JSONObject> sendQueue = new LinkedBlockingDeque<>();
-        private Map<Long, CompletableFuture<JSONObject>> futureActions = new ConcurrentHashMap<>();
+        private LinkedBlockingDeque<Message> sendQueue = new LinkedBlockingDeque<>();
+        private Map<Long, PendingAction> futureActions = new ConcurrentHashMap<>();
 
         private SimStartMessage lastSimStartMessage;
 
@@ -172,29 +220,39 @@ class AgentManager {
 
         /**
          * Creates a request-action message and sends it to the agent.
-         * Should be called within a new thread, as it blocks up to {@link #agentTimeout} milliseconds.
+         * Does not block: the returned future is completed by the receive thread when the action arrives
+         * or by the shared timer after {@link #agentTimeout} milliseconds.
          * @param percept the step percept to forward
-         * @return the action that was received by the agent (or {@link Actions#NO_ACTION})
+         * @param times records when the action became available
+         * @return a future for the action that was received by the agent (or {@link Actions#NO_ACTION})
          */
-        ActionMessage requestAction(RequestActionMessage percept) {
+        CompletableFuture<ActionMessage> requestAction(RequestActionMessage percept, ActionTimes times) {
             long id = messageCounter.getAndIncrement();
             percept.updateIdAndDeadline(id, System.currentTimeMillis() + agentTimeout);
-            CompletableFuture<JSONObject> futureAction = new CompletableFuture<>();
-            futureActions.put(id, futureAction);
+            CompletableFuture<ActionMessage> futureAction = new CompletableFuture<>();
+            futureActions.put(id, new PendingAction(futureAction, times));
+            ScheduledFuture<?> deadline = timeouts.schedule(() -> {
+                if (completeAction(id, new ActionMessage(Actions.NO_ACTION, id, new ArrayList<>()), true))
+                    Log.log(Log.Level.NORMAL, () -> "No valid action available in time for agent " + name + ".");
+            }, agentTimeout, TimeUnit.MILLISECONDS);
+            futureAction.whenComplete((action, e) -> deadline.cancel(false));
             sendMessage(percept);
-            try {
-                // wait for action to be received
-                JSONObject json = futureAction.get(agentTimeout, TimeUnit.MILLISECONDS);
-                Message msg = Message.buildFromJson(json);
-                if(msg instanceof ActionMessage){
-                    return (ActionMessage) msg;
-                }
-            } catch (InterruptedException | ExecutionException e) {
-                Log.log(Log.Level.ERROR, "Interrupted while waiting for action.");
-            } catch (TimeoutException e) {
-                Log.log(Log.Level.NORMAL, "No valid action available in time for agent " + name + ".");
-            }
-            return new ActionMessage(Actions.NO_ACTION, id, new ArrayList<>());
+            return futureAction;
+        }
+
+        /**
+         * Completes a pending action request. Only the first call for each ID has any effect.
+         * @param id the ID of the action request
+         * @param action the action to complete the request with
+         * @param timeout whether the request is completed because its deadline passed
+         * @return true iff the request was still pending
+         */
+        private boolean completeAction(long id, ActionMessage action, boolean timeout) {
+            var pending = futureActions.remove(id);
+            if (pending == null) return false;
+            pending.times().record(name, timeout);
+            pending.future().complete(action);
+            return true;
         }
 
         /**
@@ -209,68 +267,41 @@ class AgentManager {
         /**
          * Sets a new endpoint for sending and receiving messages. If a socket is already present, it is replaced and closed.
          * @param newSocket the new socket to use for this agent
+         * @param extensions the protocol extensions to use
          */
-        private void handleNewConnection(Socket newSocket){
-            // potentially close old socket
-            if (sendThread != null) sendThread.interrupt();
-            if (receiveThread != null) receiveThread.interrupt();
-            if (socket != null) try { socket.close(); } catch (IOException ignored) {}
-            // set new socket and open new threads
-            socket = newSocket;
+        private synchronized void handleNewConnection(SocketChannel newSocket, Set<String> extensions){
+            // potentially close old socket (it may still call its endpoint until the close is processed)
+            var oldLink = link;
+            if (oldLink != null && oldLink.connection != null) oldLink.connection.close();
             sendQueue.clear();
             // resend sim start message if available
-            if(lastSimStartMessage != null) sendQueue.addFirst(lastSimStartMessage.toJson());
-            sendThread = new Thread(this::send);
-            sendThread.start();
-            receiveThread = new Thread(this::receive);
-            receiveThread.start();
+            if(lastSimStartMessage != null) sendQueue.addFirst(lastSimStartMessage);
+            var newLink = new Link(extensions);
+            link = newLink;
+            try {
+                newLink.connection = transport.register(newSocket, newLink);
+                newLink.connection.requestWrite();
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, name + ": Cannot use new connection.");
+                link = null;
+            }
         }
 
         /**
-         * Reads JSON objects (0-terminated) from the socket. If any "packet" is bigger than
-         * {@link #maxPacketLength}, the read bytes are immediately discarded until the next 0 byte.
+         * Takes the next message to send over the given link from {@link #sendQueue}.
+         * @param from the link asking for the message
+         * @return the next message or null if the queue is empty or the link has been replaced
          */
-        private void receive() {
-            InputStream in;
-            try {
-                in = new BufferedInputStream(socket.getInputStream());
-                var buffer = new ByteArrayOutputStream(maxPacketLength);
-                var readBytes = 0;
-                var skipping = false;
-                while (!disconnecting){
-                    var b = in.read();
-                    if (!skipping && b != 0) buffer.write(b);
-                    if(b == -1) break; // stream ended
-                    if (b == 0){
-                        if (skipping){
-                            skipping = false; // new packet next up
-                        }
-                        else {
-                            // json object complete
-                            JSONObject json = new JSONObject(new String(buffer.toByteArray()));
-                            handleReceivedMessage(json);
-                            buffer = new ByteArrayOutputStream();
-                            readBytes = 0;
-                        }
-                    }
-                    if (readBytes++ >= maxPacketLength){
-                        buffer = new ByteArrayOutputStream();
-                        readBytes = 0;
-                        skipping = true;
-                    }
-                }
-            } catch (IOException | JSONException e) {
-                Log.log(Log.Level.ERROR, "Error receiving json object. Stop receiving.");
-            }
+        private synchronized Message pollMessage(Link from) {
+            return link == from? sendQueue.poll() : null;
         }
 
         /**
-         * Handles one received document (from the remote agent).
-         * @param json the json object that needs to be processed
+         * Handles one received message (from the remote agent).
+         * @param message the message that needs to be processed
+         * @param from the link the message was received on
          */
-        private void handleReceivedMessage(JSONObject json) {
-
-            Message message = Message.buildFromJson(json);
+        private void handleReceivedMessage(Message message, Link from) {
             if(message == null) {
                 Log.log(Log.Level.ERROR, "Received invalid message.");
                 return;
@@ -278,10 +309,12 @@ class AgentManager {
             if(message instanceof ActionMessage){
                 ActionMessage action = (ActionMessage) message;
                 long actionID = action.getId();
-                if(actionID != -1 && futureActions.containsKey(actionID)){
-                    futureActions.get(actionID).complete(json);
+                from.acknowledgePercept(actionID);
+                if(actionID == -1 || !completeAction(actionID, action, false)){
+                    if(actionID >= 0 && actionID < messageCounter.get())
+                        Log.log(Log.Level.NORMAL, "Action " + actionID + " from " + name + " arrived too late.");
+                    else Log.log(Log.Level.ERROR, "Invalid action id " + actionID + " from " + name);
                 }
-                else Log.log(Log.Level.ERROR, "Invalid action id " + actionID + " from " + name);
             }
             else{
                 Log.log(Log.Level.NORMAL, "Received unknown message type from " + name);
@@ -289,59 +322,132 @@ class AgentManager {
         }
 
         /**
-         * Sends all messages from {@link #sendQueue}, blocks if it is empty.
-         */
-        private void send() {
-            while (true) {
-                if (disconnecting && sendQueue.isEmpty()) { // we can stop when everything is sent (e.g. the bye message)
-                    break;
-                }
-                try {
-                    var osw = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
-                    var msg = sendQueue.take();
-                    osw.write(msg.toString());
-                    osw.write(0);
-                    osw.flush();
-                } catch (IOException | InterruptedException e){
-                    Log.log(Log.Level.DEBUG, name + ": Error writing to socket. Stop sending now.");
-                    break;
-                }
-            }
-        }
-
-        /**
-         * Closes socket and stops threads (if they exist).
+         * Sends the bye message and closes the socket (if it exists).
          */
         private void close() {
             sendMessage(new ByeMessage(System.currentTimeMillis()));
+            var link = this.link;
+            var connection = link != null? link.connection : null;
+            if (connection == null) return;
             try {
-                if(sendThread != null)
-                    sendThread.join(5000); // give bye-message some time to be sent (but not too much)
+                connection.closeAfterFlush().get(5, TimeUnit.SECONDS); // give bye-message some time to be sent (but not too much)
             } catch (InterruptedException e) {
                 Log.log(Log.Level.ERROR, "Interrupted while waiting for disconnection.");
+            } catch (ExecutionException | TimeoutException e) {
+                Log.log(Log.Level.DEBUG, name + ": Bye message could not be sent in time.");
             }
-            if (sendThread != null) sendThread.interrupt();
-            if (receiveThread != null) receiveThread.interrupt();
-            if (socket != null) {
-                try {
-                    socket.close();
-                } catch (IOException ignored) {}
-            }
+            connection.close();
         }
 
         /**
          * Puts the given message into the send queue as soon as possible.
-         * @param message the message document to send
+         * @param message the message to send
          */
         private void sendMessage(Message message){
             while (sendQueue.size() > sendBufferSize)
                 sendQueue.poll();
 
             try {
-                sendQueue.put(message.toJson());
+                sendQueue.put(message);
             } catch (InterruptedException e) {
                 Log.log(Log.Level.ERROR, "Interrupted while trying to put message into queue.");
             }
+            var link = this.link;
+            var connection = link != null? link.connection : null;
+            if (connection != null) connection.requestWrite();
+        }
+
+        /**
+         * One connection of the agent, together with the state that is only valid for this connection:
+         * the string tables of binary messages and the percepts available as delta bases.
+         * Once the agent has reconnected, the link ignores everything still received on its connection
+         * and sends nothing more, since the old socket might only be closed a little later.
+         */
+        private class Link implements Transport.Endpoint {
+
+            private volatile Transport.Connection connection;
+            private final BinaryCodec codec; // null if the connection uses JSON
+
+            // delta percepts (guarded by this)
+            private final boolean deltaPercepts;
+            private final NavigableMap<Long, StepPercept> sentPercepts = new TreeMap<>();
+            private long ackedId = -1;
+            private StepPercept ackedPercept;
+
+            /**
+             * @param extensions the protocol extensions to use for the connection
+             */
+            private Link(Set<String> extensions) {
+                this.deltaPercepts = extensions.contains(AuthRequestMessage.EXTENSION_DELTA_PERCEPTS);
+                // a binary connection starts with empty string tables
+                this.codec = extensions.contains(AuthRequestMessage.EXTENSION_BINARY)? new BinaryCodec(BinaryCodec.Side.SERVER) : null;
+            }
+
+            /**
+             * Parses one received message (0-terminated in the stream), either a JSON object or a binary message.
+             * Packets bigger than {@link #maxPacketLength} have already been discarded by the {@link Transport}.
+             * @param frame the received bytes
+             */
+            @Override
+            public void handleFrame(byte[] frame) {
+                if (link != this) {
+                    Log.log(Log.Level.DEBUG, name + ": Message on replaced connection discarded.");
+                    return;
+                }
+                try {
+                    handleReceivedMessage(codec != null? codec.decode(frame)
+                            : Message.buildFromJson(new JSONObject(new String(frame, StandardCharsets.UTF_8))), this);
+                } catch (RuntimeException e) {
+                    Log.log(Log.Level.ERROR, "Error receiving message from " + name + ". Message discarded.");
+                }
+            }
+
+            /**
+             * Serializes the next message from {@link #sendQueue}. This happens only now (instead of when the message
+             * is queued), as binary and delta messages depend on what was sent before on this connection
+             * and queued messages might be dropped.
+             * @return the next message or null if there is nothing to send on this connection
+             */
+            @Override
+            public byte[] nextFrame() {
+                var msg = pollMessage(this);
+                if (msg == null) return null;
+                if (msg instanceof StepPercept percept) prepareDelta(percept);
+                return codec != null? codec.encode(msg) : msg.toJson().toString().getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public void handleClosed() {
+                Log.log(Log.Level.DEBUG, name + ": Connection closed.");
+            }
+
+            /**
+             * Makes the percept relative to the last percept the agent has answered (if delta percepts are enabled).
+             * @param percept the percept to send
+             */
+            private synchronized void prepareDelta(StepPercept percept) {
+                if (!deltaPercepts) return;
+                if (ackedPercept != null) percept.setDeltaBase(ackedId, ackedPercept);
+                sentPercepts.put(percept.getId(), percept);
+                if (sentPercepts.size() > MAX_DELTA_BASES) sentPercepts.pollFirstEntry();
+            }
+
+            /**
+             * Remembers that the agent has received the percept with the given ID, so that it can serve as a delta base.
+             * @param id the ID of the percept that was answered
+             */
+            private synchronized void acknowledgePercept(long id) {
+                var percept = sentPercepts.get(id);
+                if (percept == null || id <= ackedId) return;
+                ackedId = id;
+                ackedPercept = percept;
+                sentPercepts.headMap(id, true).clear();
+            }
         }
     }
+
+    /**
+     * An action request that has not been answered yet.
+     */
+    private record PendingAction(CompletableFuture<ActionMessage> future, ActionTimes times) {}
 }
@@ -0,0 +1,230 @@
+package massim;
+
+import massim.config.ServerConfig;
+import massim.config.TeamConfig;
+import massim.util.IOUtil;
+import massim.util.Log;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Distributes the matches of a tournament to worker servers (started with the --worker option) and
+ * merges their results.
+ * Each worker runs one match at a time with its own agents, so the same team may play on several workers at once.
+ * A worker only gets matches of teams it has configured. If a worker fails, its current match is given to another one.
+ *
+ * Coordinator and workers exchange JSON objects, each terminated by a 0 byte (like agents and server):
+ * <ol>
+ *     <li>worker: {"type": "worker-ready", "teams": [...]}</li>
+ *     <li>coordinator: {"type": "match", "teams": [...]}</li>
+ *     <li>worker: {"type": "match-result", "name": "result_...", "result": {...}}
+ *         (or {"type": "match-failed", "error": "..."})</li>
+ *     <li>(2. and 3. repeat until) coordinator: {"type": "done"}</li>
+ * </ol>
+ */
+public class Coordinator {
+
+    static final String READY = "worker-ready";
+    static final String MATCH = "match";
+    static final String RESULT = "match-result";
+    static final String FAILED = "match-failed";
+    static final String DONE = "done";
+
+    /**
+     * How often (and how many ms apart) to try connecting to a worker that is not reachable yet.
+     */
+    private static final int CONNECT_ATTEMPTS = 60;
+    private static final int CONNECT_INTERVAL = 1000;
+
+    private final ServerConfig config;
+    private final Standings standings = new Standings();
+
+    /**
+     * The matches that have not been assigned yet and the number of matches currently running on any worker.
+     * (Guarded by the list.)
+     */
+    private final List<Set<TeamConfig>> pending = new ArrayList<>();
+    private int runningMatches = 0;
+
+    /**
+     * @param config the configuration holding the workers' addresses and the result path
+     */
+    public Coordinator(ServerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Runs all matches on the configured workers and writes each match's result file as well as the standings
+     * to the result path. Blocks until all matches are played or no worker is left.
+     * @param matches the matches to run
+     * @return the standings of all played matches
+     */
+    public Standings run(List<Set<TeamConfig>> matches) {
+        synchronized (pending) {
+            pending.addAll(matches);
+        }
+        var threads = new ArrayList<Thread>();
+        for (var address : config.workers) {
+            var thread = new Thread(() -> serveWorker(address), "worker-" + address);
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.log(Log.Level.ERROR, "Interrupted while waiting for workers.");
+            }
+        }
+        synchronized (pending) {
+            for (var match : pending) Log.log(Log.Level.ERROR, "Match " + names(match) + " could not be played.");
+        }
+
+        var name = "standings_" + new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
+        synchronized (standings) {
+            IOUtil.writeJSONToFile(standings.toJSON(), new File(config.resultPath + File.separator + name + ".json"));
+            for (var entry : standings.getRanking())
+                Log.log(Log.Level.NORMAL, "Standings: " + entry.getTeam() + " " + entry.getPoints() + " points, "
+                        + entry.getScore() + " score");
+        }
+        return standings;
+    }
+
+    /**
+     * Sends matches to one worker until there are no more matches for it.
+     * @param address host:port of the worker
+     */
+    private void serveWorker(String address) {
+        Set<TeamConfig> match = null;
+        try (var socket = connect(address)) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = new BufferedOutputStream(socket.getOutputStream());
+            var hello = receive(in);
+            if (hello == null || !READY.equals(hello.optString("type")))
+                throw new IOException("Unexpected message " + hello);
+            var workerTeams = new HashSet<String>();
+            hello.getJSONArray("teams").forEach(team -> workerTeams.add(team.toString()));
+            Log.log(Log.Level.NORMAL, "Worker " + address + " ready with teams " + workerTeams);
+
+            while ((match = takeMatch(workerTeams)) != null) {
+                Log.log(Log.Level.NORMAL, "Match " + names(match) + " assigned to worker " + address);
+                send(out, new JSONObject().put("type", MATCH).put("teams", new JSONArray(names(match))));
+                var answer = receive(in);
+                if (answer == null) throw new IOException("Connection lost");
+                if (RESULT.equals(answer.optString("type"))) {
+                    addResult(answer.getString("name"), answer.getJSONObject("result"));
+                    Log.log(Log.Level.NORMAL, "Match " + names(match) + " finished on worker " + address);
+                }
+                else Log.log(Log.Level.ERROR, "Match " + names(match) + " failed on worker " + address + ": "
+                        + answer.optString("error"));
+                finishMatch(null);
+                match = null;
+            }
+            send(out, new JSONObject().put("type", DONE));
+        } catch (IOException | JSONException e) {
+            Log.log(Log.Level.ERROR, "Worker " + address + " failed: " + e.getMessage());
+        } finally {
+            if (match != null) finishMatch(match);
+        }
+    }
+
+    /**
+     * @param unfinished the match to give to another worker or null
+     */
+    private void finishMatch(Set<TeamConfig> unfinished) {
+        synchronized (pending) {
+            if (unfinished != null) pending.add(0, unfinished);
+            runningMatches--;
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the next match the worker can play. Another worker might fail and return its match,
+     * so a worker only gives up when no match is running anywhere.
+     * @return the next match or null if there are no more matches for the worker
+     */
+    private Set<TeamConfig> takeMatch(Set<String> workerTeams) {
+        synchronized (pending) {
+            while (true) {
+                for (var it = pending.iterator(); it.hasNext();) {
+                    var match = it.next();
+                    if (workerTeams.containsAll(names(match))) {
+                        it.remove();
+                        runningMatches++;
+                        return match;
+                    }
+                }
+                if (runningMatches == 0) return null;
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void addResult(String name, JSONObject result) {
+        IOUtil.writeJSONToFile(result, new File(config.resultPath + File.separator + name + ".json"));
+        synchronized (standings) {
+            standings.add(name, result);
+        }
+    }
+
+    private static Socket connect(String address) throws IOException {
+        var separator = address.lastIndexOf(':');
+        var host = address.substring(0, separator);
+        var port = Integer.parseInt(address.substring(separator + 1));
+        for (var attempt = 1; ; attempt++) {
+            try {
+                var socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port));
+                return socket;
+            } catch (IOException e) {
+                if (attempt >= CONNECT_ATTEMPTS) throw e;
+                try {
+                    Thread.sleep(CONNECT_INTERVAL);
+                } catch (InterruptedException ex) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static List<String> names(Set<TeamConfig> teams) {
+        return teams.stream().map(TeamConfig::getName).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Writes a JSON object followed by a 0 byte.
+     */
+    static void send(OutputStream out, JSONObject message) throws IOException {
+        out.write(message.toString().getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        out.flush();
+    }
+
+    /**
+     * Reads the next JSON object (terminated by a 0 byte).
+     * @return the object or null if the stream ended
+     */
+    static JSONObject receive(InputStream in) throws IOException {
+        var buffer = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != 0) {
+            if (b == -1) return null;
+            buffer.write(b);
+        }
+        return new JSONObject(buffer.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -3,9 +3,13 @@ package massim;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -17,6 +21,7 @@ import massim.protocol.messages.Message;
 import massim.protocol.messages.StatusRequestMessage;
 import massim.protocol.messages.StatusResponseMessage;
 import massim.util.Log;
+import massim.util.Threads;
 
 /**
  * This is where all initial network requests go in.
@@ -25,7 +30,7 @@ import massim.util.Log;
 class FrontDesk {
 
     private boolean stopped = false;
-    private final ServerSocket serverSocket;
+    private final ServerSocketChannel serverSocket;
     private final Thread thread;
     private final AgentManager agentManager;
 
@@ -39,15 +44,14 @@ class FrontDesk {
     FrontDesk(AgentManager agentMng, ServerConfig config) throws IOException {
         setTeamSizes(config.teamSizes.toArray(new Integer[0]));
         agentManager = agentMng;
-        serverSocket = new ServerSocket(config.port, config.backlog, null);
-        thread = new Thread(() -> {
+        serverSocket = ServerSocketChannel.open().bind(new InetSocketAddress(config.port), config.backlog);
+        thread = Threads.newThread("front-desk", () -> {
             while (!stopped) {
                 try {
                     Log.log(Log.Level.DEBUG, "Waiting for connection...");
-                    Socket s = serverSocket.accept();
+                    SocketChannel s = serverSocket.accept();
                     Log.log(Log.Level.DEBUG,"Got a connection.");
-                    Thread t = new Thread(() -> handleSocket(s));
-                    t.start();
+                    Threads.newThread("auth", () -> handleSocket(s)).start();
                 } catch (IOException e) {
                     Log.log(Log.Level.DEBUG,"Stop listening");
                 }
@@ -78,9 +82,10 @@ class FrontDesk {
      * Creates and sends an auth-response message on the given socket.
      * @param s the socket to send on
      * @param result whether the authentication was successful
+     * @param extensions the protocol extensions enabled for the connection
      */
-    private void sendAuthResponse(Socket s, String result) {
-        sendMessage(s, new AuthResponseMessage(System.currentTimeMillis(), result));
+    private void sendAuthResponse(Socket s, String result, Set<String> extensions) {
+        sendMessage(s, new AuthResponseMessage(System.currentTimeMillis(), result, extensions));
     }
 
     private void sendStatusResponse(Socket s) {
@@ -100,9 +105,11 @@ class FrontDesk {
 
     /**
      * Tries to perform agent authentication on the new socket.
-     * @param s the socket to use
+     * After successful authentication, the socket is handed over to the {@link AgentManager}.
+     * @param channel the socket to use
      */
-    private void handleSocket(Socket s) {
+    private void handleSocket(SocketChannel channel) {
+        Socket s = channel.socket();
         try {
             InputStream is = s.getInputStream();
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
@@ -131,11 +138,15 @@ class FrontDesk {
                     // check credentials and act accordingly
                     if (agentManager.auth(auth.getUsername(), auth.getPassword())) {
                         Log.log(Log.Level.NORMAL, auth.getUsername() + " authentication successful");
-                        sendAuthResponse(s, AuthResponseMessage.OK);
-                        agentManager.handleNewConnection(s, auth.getUsername());
+                        var extensions = new HashSet<>(auth.getExtensions());
+                        extensions.retainAll(AgentManager.SUPPORTED_EXTENSIONS);
+                        if (!extensions.isEmpty())
+                            Log.log(Log.Level.NORMAL, auth.getUsername() + " uses protocol extensions " + extensions);
+                        sendAuthResponse(s, AuthResponseMessage.OK, extensions);
+                        agentManager.handleNewConnection(channel, auth.getUsername(), extensions);
                     } else {
                         Log.log(Log.Level.ERROR, "Got invalid authentication from: " + s.getInetAddress().getHostAddress());
-                        sendAuthResponse(s, AuthResponseMessage.FAIL);
+                        sendAuthResponse(s, AuthResponseMessage.FAIL, Set.of());
                         try {
                             s.close();
                         } catch (IOException ignored) {}
@@ -0,0 +1,133 @@
+package massim;
+
+import massim.config.TeamConfig;
+import massim.game.Simulation;
+import massim.game.SimulationContext;
+import massim.protocol.messages.ActionMessage;
+import massim.protocol.messages.RequestActionMessage;
+import massim.protocol.messages.SimStartMessage;
+import massim.protocol.messages.scenario.Actions;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Runs a single simulation inside the JVM without a server, sockets or agent timeouts.
+ * Each agent is controlled by an action provider, which receives the agent's step percept object
+ * (no JSON round-trip) and returns the agent's next action.
+ * Providers are called one after another in order of the agents' names, so runs with the same
+ * random seed and deterministic providers produce the same results.
+ * Runners do not share any state, so several runners can be used in different threads at the same time.
+ *
+ * <pre>{@code
+ * var runner = new HeadlessRunner(simConfig, teams).setDefaultProvider(percept -> skip);
+ * runner.setProvider("A1", myAgent::act);
+ * JSONObject result = runner.run();
+ * }</pre>
+ */
+public class HeadlessRunner {
+
+    private final Simulation simulation;
+    private final int steps;
+    private final Map<String, SimStartMessage> initialPercepts;
+    private final Map<String, Function<StepPercept, ActionMessage>> providers = new HashMap<>();
+    private Function<StepPercept, ActionMessage> defaultProvider = null;
+    private int step = 0;
+
+    /**
+     * Creates and initializes the simulation. The random generator is seeded with the
+     * sim config's "randomSeed" (or the current time), as it would be by the server.
+     * The teams are set up in order of their names, so that the seed alone determines the initial world.
+     * @param simConfig the configuration of the simulation (one of the server config's "match" entries)
+     * @param teams the participating teams
+     */
+    public HeadlessRunner(JSONObject simConfig, Set<TeamConfig> teams) {
+        this.simulation = new Simulation(SimulationContext.fromConfig(simConfig));
+        this.steps = simConfig.getInt("steps");
+        var orderedTeams = new TreeMap<String, TeamConfig>();
+        teams.forEach(team -> orderedTeams.put(team.getName(), team));
+        this.initialPercepts = simulation.init(steps, simConfig, new LinkedHashSet<>(orderedTeams.values()));
+    }
+
+    /**
+     * Sets the action provider of one agent.
+     * @param agentName the name of the agent
+     * @param provider maps the agent's step percept to its action (null results count as no action)
+     * @return this runner
+     */
+    public HeadlessRunner setProvider(String agentName, Function<StepPercept, ActionMessage> provider) {
+        providers.put(agentName, provider);
+        return this;
+    }
+
+    /**
+     * Sets the action provider for all agents without an individual provider.
+     * Agents without any provider always perform {@link Actions#NO_ACTION}.
+     * @return this runner
+     */
+    public HeadlessRunner setDefaultProvider(Function<StepPercept, ActionMessage> provider) {
+        this.defaultProvider = provider;
+        return this;
+    }
+
+    /**
+     * @return the sim-start percepts of all agents
+     */
+    public Map<String, SimStartMessage> getInitialPercepts() {
+        return initialPercepts;
+    }
+
+    /**
+     * @return the underlying simulation (e.g. to take snapshots between steps)
+     */
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * @return the number of steps executed so far
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return true if all steps have been executed
+     */
+    public boolean isFinished() {
+        return step >= steps;
+    }
+
+    /**
+     * Executes the next step: creates the percepts, asks all providers for actions and executes the actions.
+     * @return false if the simulation had already been finished
+     */
+    public boolean step() {
+        if (isFinished()) return false;
+        var percepts = simulation.preStep(step);
+        var actions = new HashMap<String, ActionMessage>();
+        for (var agent : new TreeSet<>(percepts.keySet()))
+            actions.put(agent, requestAction(agent, percepts.get(agent)));
+        simulation.step(step, actions);
+        step++;
+        return true;
+    }
+
+    /**
+     * Executes all remaining steps.
+     * @return the result of the simulation
+     */
+    public JSONObject run() {
+        while (step()) {}
+        simulation.finish();
+        return simulation.getResult();
+    }
+
+    private ActionMessage requestAction(String agent, RequestActionMessage percept) {
+        var provider = providers.getOrDefault(agent, defaultProvider);
+        var action = provider != null? provider.apply((StepPercept) percept) : null;
+        return action != null? action : new ActionMessage(Actions.NO_ACTION, percept.getId(), new ArrayList<>());
+    }
+}
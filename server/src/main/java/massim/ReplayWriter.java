@@ -1,62 +1,207 @@
 package massim;
 
+import massim.config.ServerConfig;
+import massim.monitor.ReplayFile;
 import massim.util.Log;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes replays either as a single compressed file per simulation (see {@link ReplayFile})
+ * or as a directory with groups of {@link #GROUP_SIZE} steps per file (plus one file for the static data).
+ * Snapshots are handed over to a dedicated writer thread, which serializes each step once and appends it to
+ * the current file. If the writer falls behind, {@link #updateState(String, String, JSONObject)} blocks
+ * until the queue has space again.
+ */
 public class ReplayWriter {
 
     private static final int GROUP_SIZE = 5;
+    private static final int QUEUE_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String replayPath;
+    private final boolean singleFile;
+
+    private final BlockingQueue<Snapshot> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread writerThread;
 
-    private String replayPath;
+    // only used by the writer thread
+    private ReplayFile.Writer replayFile;
+    private Path replayFilePath;
+    private Writer groupWriter;
+    private Path groupFile;
+    private int lastStep;
 
-    private int lastGroup = -1;
-    private JSONObject cache = new JSONObject();
+    private record Snapshot(String simId, String startTime, JSONObject world) {}
 
-    public ReplayWriter(String replayPath) {
+    private static final Snapshot END = new Snapshot(null, null, null);
+
+    /**
+     * @param replayPath the directory to write replays to
+     * @param format one of {@link ServerConfig#REPLAY_FORMAT_FILE} and {@link ServerConfig#REPLAY_FORMAT_DIRECTORY}
+     */
+    public ReplayWriter(String replayPath, String format) {
         this.replayPath = replayPath;
+        this.singleFile = !ServerConfig.REPLAY_FORMAT_DIRECTORY.equals(format);
+        this.writerThread = new Thread(this::run, "replay-writer");
+        this.writerThread.start();
     }
 
+    /**
+     * Queues a snapshot for writing. The snapshot must not be changed afterwards.
+     */
     public void updateState(String simId, String startTime, JSONObject world) {
-        if (!isStatic(world)) {
-            int step = world.optInt("step");
-            int group = step / GROUP_SIZE;
-            String stepStr = String.valueOf(step);
+        if (world == null) {
+            Log.log(Log.Level.ERROR, "No JSON object to write.");
+            return;
+        }
+        try {
+            queue.put(new Snapshot(simId, startTime, world));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            if (lastGroup != group || cache.has(stepStr)) cache = new JSONObject();
-            cache.put(stepStr, world);
-            write(startTime, simId, String.valueOf(group * GROUP_SIZE), cache);
+    /**
+     * Writes all queued snapshots and stops the writer thread.
+     */
+    public void close() {
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            lastGroup = group;
-        } else {
-            write(startTime, simId, "static", world);
+    private void run() {
+        while (true) {
+            Snapshot snapshot;
+            try {
+                snapshot = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (snapshot == END) break;
+            try {
+                write(snapshot);
+            } catch (IOException e) {
+                Log.log(Log.Level.ERROR, "Could not write replay: " + e.getMessage());
+                discardGroup();
+                discardReplayFile();
+            }
+        }
+        try {
+            closeGroup();
+            closeReplayFile();
+        } catch (IOException e) {
+            Log.log(Log.Level.ERROR, "Could not write replay: " + e.getMessage());
         }
     }
 
-    private boolean isStatic(JSONObject world) {
-        return world.has("grid");
+    private void write(Snapshot snapshot) throws IOException {
+        if (singleFile) writeToReplayFile(snapshot);
+        else writeToDirectory(snapshot);
     }
 
-    private void write(String startTime, String simId, String name, JSONObject json) {
-        if(json == null) {
-            Log.log(Log.Level.ERROR, "No JSON object to write.");
-            return;
+    private void writeToReplayFile(Snapshot snapshot) throws IOException {
+        var file = Paths.get(this.replayPath, snapshot.startTime + "-" + snapshot.simId + ReplayFile.EXTENSION);
+        if (!file.equals(replayFilePath)) {
+            closeReplayFile();
+            Files.createDirectories(file.getParent());
+            replayFile = new ReplayFile.Writer(file);
+            replayFilePath = file;
         }
-        String prefix = startTime + "-" + simId;
-        File file = Paths.get(this.replayPath, prefix, name + ".json").toFile();
-        File dir = file.getParentFile();
-        if (!dir.exists()) dir.mkdirs();
+        if (isStatic(snapshot.world)) replayFile.writeStatic(snapshot.world);
+        else replayFile.writeStep(snapshot.world.optInt("step"), snapshot.world);
+    }
 
+    /**
+     * Completes the current replay file (if any) by writing its index.
+     */
+    private void closeReplayFile() throws IOException {
+        if (replayFile == null) return;
+        var file = replayFile;
+        replayFile = null;
+        replayFilePath = null;
+        file.close();
+    }
+
+    private void discardReplayFile() {
         try {
-            FileWriter writer = new FileWriter(file);
-            json.write(writer);
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+            closeReplayFile();
+        } catch (IOException ignored) {}
+        replayFile = null;
+        replayFilePath = null;
+    }
+
+    private void writeToDirectory(Snapshot snapshot) throws IOException {
+        var dir = Paths.get(this.replayPath, snapshot.startTime + "-" + snapshot.simId);
+        if (isStatic(snapshot.world)) {
+            try (var writer = open(dir.resolve("static.json"))) {
+                snapshot.world.write(writer);
+            }
+            return;
+        }
+
+        int step = snapshot.world.optInt("step");
+        var file = dir.resolve((step / GROUP_SIZE) * GROUP_SIZE + ".json");
+        if (!file.equals(groupFile) || step <= lastStep) {
+            closeGroup();
+            groupWriter = open(file);
+            groupFile = file;
+            groupWriter.write('{');
         }
+        else groupWriter.write(',');
+        groupWriter.write(JSONObject.quote(String.valueOf(step)));
+        groupWriter.write(':');
+        snapshot.world.write(groupWriter);
+        lastStep = step;
+
+        if (step % GROUP_SIZE == GROUP_SIZE - 1) closeGroup();
+    }
+
+    /**
+     * Completes the current group file (if any).
+     */
+    private void closeGroup() throws IOException {
+        if (groupWriter == null) return;
+        var writer = groupWriter;
+        groupWriter = null;
+        groupFile = null;
+        writer.write('}');
+        writer.close();
+    }
+
+    private void discardGroup() {
+        if (groupWriter == null) return;
+        try {
+            groupWriter.close();
+        } catch (IOException ignored) {}
+        groupWriter = null;
+        groupFile = null;
+    }
+
+    private static Writer open(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        var channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private boolean isStatic(JSONObject world) {
+        return world.has("grid");
     }
 }
@@ -4,21 +4,23 @@ import massim.config.ServerConfig;
 import massim.config.TeamConfig;
 import massim.monitor.Monitor;
 import massim.game.Simulation;
+import massim.game.SimulationContext;
 import massim.protocol.messages.Message;
 import massim.util.IOUtil;
 import massim.util.InputManager;
 import massim.util.Log;
 import massim.util.RNG;
+import massim.util.Threads;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.net.ServerSocket;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -36,18 +38,39 @@ public class Server {
     private FrontDesk frontDesk;
     private AgentManager agentManager;
     private Monitor monitor;
-    private ReplayWriter replayWriter;
+
+    /**
+     * Builds the step percepts of all simulations in parallel (or null to build them sequentially).
+     */
+    private ForkJoinPool perceptPool;
+
+    /**
+     * For drawing the teams of random matches (each simulation has its own generator).
+     */
+    private RNG rng;
 
     /**
      * whether server should stop after the next match (random mode)
      */
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
+
+    /**
+     * The teams of all matches that are currently running.
+     */
+    private final List<Set<TeamConfig>> runningMatches = new ArrayList<>();
+
+    /**
+     * The simulation that the monitor, status requests and console inputs refer to (guarded by runningMatches).
+     * If matches run in parallel, the first simulation to start while no other simulation is observed is chosen.
+     */
+    private Simulation observedSimulation = null;
 
     public static void main(String[] args){
 
         Server server = new Server();
 
         int monitorPort = 0;
+        int workerPort = 0;
 
         // parse command line arguments
         for (int i = 0; i < args.length; i++) {
@@ -82,6 +105,13 @@ public class Server {
                         monitorPort = 8000;
                     }
                     break;
+                case "--worker", "-w":
+                    try {
+                        workerPort = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        Log.log(Log.Level.ERROR, "Worker mode requires a port.");
+                    }
+                    break;
 
                 default:
                     Log.log(Log.Level.ERROR, "Unknown option: " + args[i]);
@@ -125,10 +155,7 @@ public class Server {
             }
         }
         server.config.monitorPort = monitorPort;
-
-        if (server.config.replayPath != null) {
-            server.replayWriter = new ReplayWriter(server.config.replayPath);
-        }
+        server.config.workerPort = workerPort;
 
         server.go();
         server.close();
@@ -149,7 +176,9 @@ public class Server {
         Log.log(Log.Level.NORMAL, "All simulations run - server ending now.");
         if (frontDesk != null) frontDesk.close();
         if (agentManager != null) agentManager.stop();
+        if (perceptPool != null) perceptPool.shutdown();
         inputManager.stop();
+        Log.flush();
     }
 
     /**
@@ -172,9 +201,30 @@ public class Server {
         }
         inputManager.start();
 
+        if (config.virtualThreads) {
+            if (Threads.enableVirtualThreads())
+                Log.log(Log.Level.NORMAL, "Using virtual threads for networking.");
+            else
+                Log.log(Log.Level.ERROR, "Virtual threads require Java 21+. Using platform threads instead.");
+        }
+        var perceptThreads = config.perceptThreads > 0? config.perceptThreads : Runtime.getRuntime().availableProcessors();
+        if (perceptThreads > 1) perceptPool = new ForkJoinPool(perceptThreads);
+
+        // a coordinator only distributes the matches to its workers, so it does not need any connections to agents
+        if (!config.workers.isEmpty()) {
+            waitForLaunch();
+            var matches = plannedMatches();
+            if (matches == null)
+                Log.log(Log.Level.ERROR, "Tournament mode " + config.tournamentMode + " cannot be distributed.");
+            else new Coordinator(config).run(matches);
+            return;
+        }
+
         // setup backend
-        agentManager = new AgentManager(config.teams, config.agentTimeout, config.maxPacketLength);
+        var stepMode = config.stepMode.equals(ServerConfig.STEP_MODE_DEADLINE)?
+                AgentManager.StepMode.DEADLINE : AgentManager.StepMode.EARLY;
         try {
+            agentManager = new AgentManager(config.teams, config.agentTimeout, config.maxPacketLength, stepMode);
             frontDesk = new FrontDesk(agentManager, config);
             frontDesk.open();
         } catch (IOException e) {
@@ -189,7 +239,29 @@ public class Server {
             Log.log(Log.Level.ERROR, "Monitor not started: " + e.getLocalizedMessage());
         } catch (InterruptedException ignored) {}
 
-        // delay tournament start according to launch type
+        // workers wait for matches from the coordinator (which takes care of the launch time)
+        if (config.workerPort > 0) {
+            runWorker(config.workerPort);
+            return;
+        }
+
+        waitForLaunch();
+        var matches = plannedMatches();
+        if (matches != null) runMatches(matches);
+        else if (config.tournamentMode.equals(ServerConfig.MODE_RANDOM)) {
+            // the draws use the seed of the first simulation (if configured), so that they can be reproduced
+            var seed = config.simConfigs.isEmpty()? System.nanoTime()
+                    : config.simConfigs.get(0).optLong("randomSeed", System.nanoTime());
+            Log.log(Log.Level.NORMAL, "Configuring random seed for drawing matches: " + seed);
+            rng = new RNG(~seed); // inverted, so that the draws do not repeat the numbers of the simulation
+            runMatches(null);
+        }
+    }
+
+    /**
+     * Delays the tournament start according to launch type.
+     */
+    private void waitForLaunch() {
         if (config.launch.equals("key")){
             Log.log(Log.Level.NORMAL,"Please press ENTER to start the tournament.");
             synchronized (inputManager) {
@@ -222,8 +294,13 @@ public class Server {
                 Log.log(Log.Level.ERROR, "Could not determine or wait for start time. Starting tournament now.");
             }
         }
+    }
 
-        // run matches according to tournament mode
+    /**
+     * Determines the matches to run according to the tournament mode.
+     * @return all matches in order or null if the mode has no fixed list of matches (random or invalid mode)
+     */
+    private List<Set<TeamConfig>> plannedMatches() {
         switch(config.tournamentMode){
             case ServerConfig.MODE_ROUND_ROBIN:
                 // run a match for each team combination
@@ -231,13 +308,13 @@ public class Server {
                     Log.log(Log.Level.ERROR, "Not enough teams configured. Stopping MASSim now.");
                     System.exit(0);
                 }
+                var matches = new ArrayList<Set<TeamConfig>>();
                 int[] indices = IntStream.rangeClosed(0, config.teamsPerMatch - 1).toArray();
                 boolean nextMatch = true;
                 while (nextMatch){
                     Set<TeamConfig> matchTeams = new HashSet<>();
                     for (int index : indices) matchTeams.add(config.teams.get(index));
-
-                    runMatch(matchTeams);
+                    matches.add(matchTeams);
 
                     // determine the next team constellation
                     for (int i = indices.length - 1; i >= 0; i--) {
@@ -251,20 +328,96 @@ public class Server {
                         if (i == 0) nextMatch = false; // no team constellation left
                     }
                 }
-                break;
+                return matches;
             case ServerConfig.MODE_MANUAL:
-                if(config.manualModeTeams != null) config.manualModeTeams.forEach(this::runMatch);
-                break;
+                return config.manualModeTeams != null? new ArrayList<>(config.manualModeTeams) : new ArrayList<>();
             case ServerConfig.MODE_RANDOM:
-                while(!stopped){
-                    List<TeamConfig> teams = new Vector<>(config.teams);
-                    RNG.shuffle(teams);
-                    runMatch(new HashSet<>(teams.subList(0, config.teamsPerMatch)));
-                }
-                break;
+                return null;
             default:
                 Log.log(Log.Level.ERROR, "Invalid tournament mode: " + config.tournamentMode);
+                return null;
+        }
+    }
+
+    /**
+     * Runs up to {@link ServerConfig#parallelMatches} matches at the same time, each in its own thread.
+     * A match only starts if none of its teams is currently playing in another match.
+     * All matches share the agent connections, as each agent only takes part in one match at a time.
+     * @param pending the matches to run (started in order as far as possible),
+     *                or null to run random matches until the server is stopped
+     */
+    private void runMatches(List<Set<TeamConfig>> pending) {
+        var threads = new ArrayList<Thread>();
+        synchronized (runningMatches) {
+            while (pending == null? !stopped : !pending.isEmpty()) {
+                var busyTeams = new HashSet<TeamConfig>();
+                runningMatches.forEach(busyTeams::addAll);
+                var matchTeams = runningMatches.size() < config.parallelMatches? nextMatch(pending, busyTeams) : null;
+                if (matchTeams == null) {
+                    try {
+                        runningMatches.wait();
+                    } catch (InterruptedException e) {
+                        Log.log(Log.Level.ERROR, "Interrupted while waiting for a match to end.");
+                        break;
+                    }
+                    continue;
+                }
+                runningMatches.add(matchTeams);
+                var thread = new Thread(() -> {
+                    try {
+                        writeResult(runMatch(matchTeams), matchTeams);
+                    } catch (RuntimeException e) {
+                        Log.log(Log.Level.CRITICAL, "Match " + teamNames(matchTeams) + " failed: " + e);
+                        e.printStackTrace();
+                    } finally {
+                        synchronized (runningMatches) {
+                            runningMatches.remove(matchTeams);
+                            runningMatches.notifyAll();
+                        }
+                    }
+                }, "match-" + teamNames(matchTeams));
+                threads.add(thread);
+                thread.start();
+            }
+        }
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.log(Log.Level.ERROR, "Interrupted while waiting for a match to end.");
+            }
+        }
+    }
+
+    /**
+     * Takes the next match that can start now.
+     * @param pending the remaining matches or null to create a random match
+     * @param busyTeams the teams currently playing in other matches
+     * @return the teams of the next match or null if no match can start now
+     */
+    private Set<TeamConfig> nextMatch(List<Set<TeamConfig>> pending, Set<TeamConfig> busyTeams) {
+        if (pending == null) {
+            List<TeamConfig> teams = new Vector<>(config.teams);
+            teams.removeAll(busyTeams);
+            if (teams.size() < config.teamsPerMatch) return null;
+            rng.shuffle(teams);
+            return new HashSet<>(teams.subList(0, config.teamsPerMatch));
         }
+        for (var it = pending.iterator(); it.hasNext();) {
+            var matchTeams = it.next();
+            if (Collections.disjoint(matchTeams, busyTeams)) {
+                it.remove();
+                return matchTeams;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the names of the given teams (sorted and joined with underscores)
+     */
+    private static String teamNames(Set<TeamConfig> teams) {
+        return teams.stream().map(TeamConfig::getName).sorted().collect(Collectors.joining("_"));
     }
 
     /**
@@ -276,69 +429,161 @@ public class Server {
 
 
     /**
-     * Stops running matches after the current one finishes (random tournament mode)
+     * Stops running matches after the current ones finish (random tournament mode)
      */
     public void stop(){
-        stopped = true;
+        synchronized (runningMatches) {
+            stopped = true;
+            runningMatches.notifyAll();
+        }
+    }
+
+    /**
+     * Receives matches from a {@link Coordinator} and runs them one after another, until the coordinator is done.
+     * @param port the port to listen on for the coordinator
+     */
+    private void runWorker(int port) {
+        Map<String, TeamConfig> teams = config.teams.stream().collect(Collectors.toMap(TeamConfig::getName, t -> t));
+        try (var serverSocket = new ServerSocket(port)) {
+            Log.log(Log.Level.NORMAL, "Waiting for a coordinator on port " + port);
+            var done = false;
+            while (!done) {
+                try (var socket = serverSocket.accept()) {
+                    Log.log(Log.Level.NORMAL, "Coordinator connected from " + socket.getInetAddress().getHostAddress());
+                    var in = new BufferedInputStream(socket.getInputStream());
+                    var out = new BufferedOutputStream(socket.getOutputStream());
+                    Coordinator.send(out, new JSONObject()
+                            .put("type", Coordinator.READY)
+                            .put("teams", new JSONArray(teams.keySet())));
+                    JSONObject message;
+                    while ((message = Coordinator.receive(in)) != null) {
+                        if (Coordinator.DONE.equals(message.optString("type"))) {
+                            done = true;
+                            break;
+                        }
+                        var matchTeams = new HashSet<TeamConfig>();
+                        for (var name : message.getJSONArray("teams")) matchTeams.add(teams.get(name.toString()));
+                        JSONObject answer;
+                        try {
+                            var result = runMatch(matchTeams);
+                            answer = new JSONObject()
+                                    .put("type", Coordinator.RESULT)
+                                    .put("name", writeResult(result, matchTeams))
+                                    .put("result", result);
+                        } catch (RuntimeException e) {
+                            Log.log(Log.Level.CRITICAL, "Match " + teamNames(matchTeams) + " failed: " + e);
+                            e.printStackTrace();
+                            answer = new JSONObject().put("type", Coordinator.FAILED).put("error", e.toString());
+                        }
+                        Coordinator.send(out, answer);
+                    }
+                } catch (IOException | JSONException e) {
+                    Log.log(Log.Level.ERROR, "Lost connection to coordinator: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            Log.log(Log.Level.CRITICAL, "Cannot open worker socket on port " + port);
+        }
     }
 
     /**
      * Runs a match for the given teams. Sim configuration is taken from the server config.
      * @param matchTeams a set of all teams to participate in the simulation
+     * @return the results of all simulations of the match
      */
-    private void runMatch(Set<TeamConfig> matchTeams) {
-
-        frontDesk.setTeams(matchTeams.stream().map(TeamConfig::getName).toArray(String[]::new));
+    private JSONObject runMatch(Set<TeamConfig> matchTeams) {
 
         var startTime = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss").format(new Date());
         var result = new JSONObject();
+        var replayWriter = config.replayPath != null? new ReplayWriter(config.replayPath, config.replayFormat) : null;
 
-        for (var simIndex = 0; simIndex < config.simConfigs.size(); simIndex++){
-            frontDesk.setCurrentSimulation(simIndex);
-            var simConfig = config.simConfigs.get(simIndex);
-
-            // initialize random
-            long randomSeed = simConfig.optLong("randomSeed", System.currentTimeMillis());
-            Log.log(Log.Level.NORMAL, "Configuring random seed: " + randomSeed);
-            RNG.initialize(randomSeed);
-            // create and run simulation instance with the given teams
-            Simulation sim = new Simulation();
-
-            int steps = simConfig.getInt("steps");
-
-            // handle initial state
-            var initialPercepts = sim.init(steps, simConfig, matchTeams);
-            handleSimState(sim.getName(), startTime, sim.getStaticData());
-            handleSimState(sim.getName(), startTime, sim.getSnapshot());
-            agentManager.handleInitialPercepts(initialPercepts);
-
-            // handle steps
-            for (int i = 0; i < steps; i++){
-                Log.log(Log.Level.NORMAL, "Simulation at step " + i);
-                handleInputs(sim);
-                var percepts = sim.preStep(i);
-                var actions = agentManager.requestActions(percepts);
-                sim.step(i, actions); // execute step with agent actions
-                handleSimState(sim.getName(), startTime, sim.getSnapshot());
-                if (monitor != null) monitor.updateStatus(sim.getStatusSnapshot());
-            }
-
-            // handle final state
-            var finalPercepts = sim.finish();
-            agentManager.handleFinalPercepts(finalPercepts);
-            result.put(sim.getName(), sim.getResult());
+        try {
+            for (var simIndex = 0; simIndex < config.simConfigs.size(); simIndex++){
+                var simConfig = config.simConfigs.get(simIndex);
+
+                // create and run simulation instance with the given teams
+                var context = SimulationContext.fromConfig(simConfig);
+                context.setPerceptPool(perceptPool);
+                Log.log(Log.Level.NORMAL, "Configuring random seed: " + context.getSeed());
+                Simulation sim = new Simulation(context);
+                boolean observed = observe(sim);
+                if (observed) {
+                    frontDesk.setTeams(matchTeams.stream().map(TeamConfig::getName).toArray(String[]::new));
+                    frontDesk.setCurrentSimulation(simIndex);
+                }
 
-            // pause between simulations
-            if (config.waitBetweenSimulations > 0) {
-                Log.log(Log.Level.NORMAL, "Waiting " + config.waitBetweenSimulations + "ms before starting the next round.");
                 try {
-                    TimeUnit.MILLISECONDS.sleep(config.waitBetweenSimulations);
-                } catch (InterruptedException ignored) {}
+                    int steps = simConfig.getInt("steps");
+
+                    // handle initial state
+                    var initialPercepts = sim.init(steps, simConfig, matchTeams);
+                    handleSimState(observed, replayWriter, sim.getName(), startTime, sim.getStaticData());
+                    handleSimState(observed, replayWriter, sim.getName(), startTime, sim.getSnapshot());
+                    agentManager.handleInitialPercepts(initialPercepts);
+
+                    // handle steps
+                    for (int i = 0; i < steps; i++){
+                        var step = i;
+                        Log.log(Log.Level.NORMAL, () -> "Simulation " + sim.getName() + " at step " + step);
+                        if (observed) handleInputs(sim);
+                        var percepts = sim.preStep(i);
+                        var actions = agentManager.requestActions(percepts);
+                        sim.step(i, actions); // execute step with agent actions
+                        handleSimState(observed, replayWriter, sim.getName(), startTime, sim.getSnapshot());
+                        if (observed && monitor != null) monitor.updateStatus(sim.getStatusSnapshot());
+                    }
+
+                    // handle final state
+                    var finalPercepts = sim.finish();
+                    agentManager.handleFinalPercepts(finalPercepts);
+                    result.put(sim.getName(), sim.getResult());
+                } finally {
+                    // the monitor has to be free for the next simulation, even if this one failed
+                    if (observed) stopObserving(sim);
+                }
+
+                // pause between simulations
+                if (config.waitBetweenSimulations > 0) {
+                    Log.log(Log.Level.NORMAL, "Waiting " + config.waitBetweenSimulations + "ms before starting the next round.");
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(config.waitBetweenSimulations);
+                    } catch (InterruptedException ignored) {}
+                }
             }
+        } finally {
+            // the replay writer's thread keeps running (and the index is missing) until it is closed
+            if (replayWriter != null) replayWriter.close();
         }
+        return result;
+    }
+
+    /**
+     * Writes a match result to a file in the result path.
+     * @return the name of the file (without extension)
+     */
+    private String writeResult(JSONObject result, Set<TeamConfig> matchTeams) {
+        // parallel matches may end at the same time and workers' results are collected in one place
+        var distinct = config.parallelMatches > 1 || config.workerPort > 0;
+        var resultName = "result_" + timestamp() + (distinct? "_" + teamNames(matchTeams) : "");
+        IOUtil.writeJSONToFile(result, new File(config.resultPath + File.separator + resultName + ".json"));
+        return resultName;
+    }
+
+    /**
+     * Makes the given simulation the observed one if no other simulation is observed at the moment.
+     * @return whether the simulation is observed
+     */
+    private boolean observe(Simulation sim) {
+        synchronized (runningMatches) {
+            if (observedSimulation == null) observedSimulation = sim;
+            return observedSimulation == sim;
+        }
+    }
 
-        // write match result to file
-        IOUtil.writeJSONToFile(result, new File(config.resultPath + File.separator + "result_" + timestamp() + ".json"));
+    private void stopObserving(Simulation sim) {
+        synchronized (runningMatches) {
+            if (observedSimulation == sim) observedSimulation = null;
+        }
     }
 
     /**
@@ -382,12 +627,15 @@ public class Server {
 
     /**
      * Handles snapshots of the world state, i.e. notifies monitor and saves replays (if configured).
+     * @param observed whether the simulation is shown in the monitor
+     * @param replayWriter the replay writer of the match or null
      * @param simId the ID of the current sim
      * @param startTime string representation of the simulation's start time
      * @param world the world state
      */
-    private void handleSimState(String simId, String startTime, JSONObject world) {
-        if (monitor != null) monitor.updateState(world);
+    private void handleSimState(boolean observed, ReplayWriter replayWriter, String simId, String startTime,
+                                JSONObject world) {
+        if (observed && monitor != null) monitor.updateState(world);
         if (replayWriter != null) replayWriter.updateState(simId, startTime, world);
     }
 
@@ -416,6 +664,12 @@ public class Server {
         Log.log(Log.Level.NORMAL, "Configuring backlog: " + config.backlog);
         config.agentTimeout = serverJSON.getInt("agentTimeout");
         Log.log(Log.Level.NORMAL, "Configuring agent timeout: " + config.agentTimeout);
+        config.stepMode = serverJSON.optString("stepMode", ServerConfig.STEP_MODE_EARLY);
+        if (!config.stepMode.equals(ServerConfig.STEP_MODE_EARLY) && !config.stepMode.equals(ServerConfig.STEP_MODE_DEADLINE)) {
+            Log.log(Log.Level.ERROR, "Unknown step mode " + config.stepMode + ", using " + ServerConfig.STEP_MODE_EARLY);
+            config.stepMode = ServerConfig.STEP_MODE_EARLY;
+        }
+        Log.log(Log.Level.NORMAL, "Configuring step mode: " + config.stepMode);
         config.logPath = serverJSON.getString("logPath");
         Log.log(Log.Level.NORMAL, "Configuring log path: " + config.logPath);
         config.logLevel = serverJSON.getString("logLevel");
@@ -426,8 +680,19 @@ public class Server {
         Log.log(Log.Level.NORMAL, "Configuring max packet length: " + config.maxPacketLength);
         config.replayPath = serverJSON.getString("replayPath");
         Log.log(Log.Level.NORMAL, "Configuring replay path: " + config.replayPath);
+        config.replayFormat = serverJSON.optString("replayFormat", ServerConfig.REPLAY_FORMAT_FILE);
+        Log.log(Log.Level.NORMAL, "Configuring replay format: " + config.replayFormat);
         config.waitBetweenSimulations = serverJSON.optInt("waitBetweenSimulations");
         Log.log(Log.Level.NORMAL, "Configuring wait time: " + config.waitBetweenSimulations);
+        config.virtualThreads = serverJSON.optBoolean("virtualThreads", false);
+        Log.log(Log.Level.NORMAL, "Configuring virtual threads: " + config.virtualThreads);
+        config.perceptThreads = serverJSON.optInt("perceptThreads", 0);
+        Log.log(Log.Level.NORMAL, "Configuring percept threads: " + config.perceptThreads);
+        config.parallelMatches = Math.max(1, serverJSON.optInt("parallelMatches", 1));
+        Log.log(Log.Level.NORMAL, "Configuring parallel matches: " + config.parallelMatches);
+        var workersJSON = serverJSON.optJSONArray("workers");
+        if (workersJSON != null) for (var worker : workersJSON) config.workers.add(worker.toString());
+        Log.log(Log.Level.NORMAL, "Configuring workers: " + config.workers);
 
         // parse matches
         JSONArray matchJSON = conf.getJSONArray("match");
@@ -0,0 +1,106 @@
+package massim;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Merges the results of several matches into a ranking of all teams.
+ * In each simulation, the team with the highest score gets 3 points. If several teams share the highest score,
+ * each of them gets 1 point. Teams are ranked by points, then by their total score.
+ */
+public class Standings {
+
+    private final Map<String, Entry> teams = new TreeMap<>();
+    private final JSONObject matches = new JSONObject();
+
+    /**
+     * Adds the result of one match (as written to a result file).
+     * @param name the name of the match (e.g. the name of the result file)
+     * @param matchResult maps each simulation to each team's result, e.g. {"sim1": {"A": {"score": 20}, ...}, ...}
+     */
+    public void add(String name, JSONObject matchResult) {
+        matches.put(name, matchResult);
+        for (var simName : matchResult.keySet()) {
+            var simResult = matchResult.getJSONObject(simName);
+            var best = Integer.MIN_VALUE;
+            var winners = 0;
+            for (var team : simResult.keySet()) {
+                var score = simResult.getJSONObject(team).getInt("score");
+                if (score > best) {
+                    best = score;
+                    winners = 1;
+                }
+                else if (score == best) winners++;
+            }
+            for (var team : simResult.keySet()) {
+                var score = simResult.getJSONObject(team).getInt("score");
+                var entry = teams.computeIfAbsent(team, Entry::new);
+                entry.simulations++;
+                entry.score += score;
+                if (score < best) entry.losses++;
+                else if (winners == 1) entry.wins++;
+                else entry.draws++;
+            }
+        }
+    }
+
+    /**
+     * @return all teams from best to worst
+     */
+    public List<Entry> getRanking() {
+        var ranking = new ArrayList<>(teams.values());
+        ranking.sort(Comparator.comparingInt(Entry::getPoints).thenComparingLong(e -> e.score).reversed());
+        return ranking;
+    }
+
+    /**
+     * @return the ranking and all match results
+     */
+    public JSONObject toJSON() {
+        var ranking = new JSONArray();
+        for (var entry : getRanking()) ranking.put(entry.toJSON());
+        return new JSONObject().put("standings", ranking).put("matches", matches);
+    }
+
+    public static class Entry {
+        private final String team;
+        private int simulations;
+        private int wins;
+        private int draws;
+        private int losses;
+        private long score;
+
+        private Entry(String team) {
+            this.team = team;
+        }
+
+        public String getTeam() {
+            return team;
+        }
+
+        public int getPoints() {
+            return 3 * wins + draws;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public int getSimulations() {
+            return simulations;
+        }
+
+        JSONObject toJSON() {
+            return new JSONObject()
+                    .put("team", team)
+                    .put("points", getPoints())
+                    .put("score", score)
+                    .put("simulations", simulations)
+                    .put("wins", wins)
+                    .put("draws", draws)
+                    .put("losses", losses);
+        }
+    }
+}
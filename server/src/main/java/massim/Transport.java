@@ -0,0 +1,305 @@
+package massim;
+
+import massim.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking network I/O for all agent connections.
+ * A small fixed number of threads each run one selector that serves many sockets. Incoming bytes are read into
+ * one direct buffer per thread and split at 0 bytes into messages ("frames").
+ * These are always platform threads, as a virtual thread blocked in a selector would occupy its carrier anyway.
+ */
+class Transport {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxPacketLength;
+    private final Loop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean stopped = false;
+
+    /**
+     * Receives the frames of one connection and provides the frames to send.
+     * All methods are called from the connection's I/O thread.
+     */
+    interface Endpoint {
+
+        /**
+         * Handles one complete frame (excluding the terminating 0 byte).
+         * @param frame the frame's bytes
+         */
+        void handleFrame(byte[] frame);
+
+        /**
+         * @return the next frame to send (excluding the terminating 0 byte) or null if there is nothing to send
+         */
+        byte[] nextFrame();
+
+        /**
+         * Called once the connection has been closed (by either side).
+         */
+        void handleClosed();
+    }
+
+    /**
+     * Creates and starts the I/O threads.
+     * @param maxPacketLength the maximum size of frames to process (bigger frames are discarded)
+     * @param threads the number of I/O threads to use
+     * @throws IOException if a selector cannot be opened
+     */
+    Transport(int maxPacketLength, int threads) throws IOException {
+        this.maxPacketLength = maxPacketLength;
+        this.loops = new Loop[Math.max(1, threads)];
+        for (var i = 0; i < loops.length; i++) {
+            loops[i] = new Loop();
+            var thread = new Thread(loops[i], "io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Hands a connected socket over to one of the I/O threads.
+     * @param channel the socket to serve (switched to non-blocking mode)
+     * @param endpoint the receiver of the socket's frames
+     * @return the new connection
+     * @throws IOException if the socket cannot be switched to non-blocking mode
+     */
+    Connection register(SocketChannel channel, Endpoint endpoint) throws IOException {
+        channel.configureBlocking(false);
+        var loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        var connection = new Connection(channel, endpoint, loop);
+        loop.execute(connection, connection::open);
+        return connection;
+    }
+
+    /**
+     * Stops all I/O threads and closes all connections.
+     */
+    void stop() {
+        stopped = true;
+        for (var loop : loops) loop.selector.wakeup();
+    }
+
+    /**
+     * One I/O thread with its selector.
+     */
+    private class Loop implements Runnable {
+
+        private final Selector selector = Selector.open();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+        private Loop() throws IOException {}
+
+        /**
+         * Runs the task on this loop's thread.
+         * @param connection the connection the task belongs to (closed if the task fails)
+         */
+        void execute(Connection connection, Runnable task) {
+            tasks.add(new Task(connection, task));
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    selector.select();
+                    Task task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.action().run();
+                        } catch (RuntimeException e) {
+                            fail(task.connection(), e);
+                        }
+                    }
+                    var keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        var key = keys.next();
+                        keys.remove();
+                        var connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) connection.read(readBuffer);
+                            if (key.isValid() && key.isWritable()) connection.write();
+                        } catch (IOException e) {
+                            Log.log(Log.Level.DEBUG, "Connection lost: " + e.getMessage());
+                            connection.closeNow();
+                        } catch (RuntimeException e) {
+                            fail(connection, e);
+                        }
+                    }
+                }
+                for (var key : selector.keys()) ((Connection) key.attachment()).closeNow();
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                Log.log(Log.Level.ERROR, "I/O thread failed: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Closes a connection whose endpoint (or handling) failed, so that the other connections of the loop
+         * are not affected.
+         */
+        private void fail(Connection connection, RuntimeException e) {
+            Log.log(Log.Level.ERROR, "Connection closed after unexpected error: " + e);
+            connection.closeNow();
+        }
+    }
+
+    /**
+     * A task to run on a loop's thread for one connection.
+     */
+    private record Task(Connection connection, Runnable action) {}
+
+    /**
+     * A socket served by one of the I/O threads.
+     */
+    class Connection {
+
+        private final SocketChannel channel;
+        private final Endpoint endpoint;
+        private final Loop loop;
+        private SelectionKey key;
+
+        // receiving
+        private byte[] frame = new byte[1024];
+        private int frameLength = 0;
+        private boolean skipping = false;
+
+        // sending
+        private final ByteBuffer[] pending = {ByteBuffer.allocate(0), ByteBuffer.allocate(0)};
+        private boolean closeWhenFlushed = false;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+        private Connection(SocketChannel channel, Endpoint endpoint, Loop loop) {
+            this.channel = channel;
+            this.endpoint = endpoint;
+            this.loop = loop;
+        }
+
+        /**
+         * Signals that new frames are available from the endpoint.
+         */
+        void requestWrite() {
+            loop.execute(this, this::tryWrite);
+        }
+
+        /**
+         * Sends all remaining frames, then closes the connection.
+         * @return a future completed when the connection is closed
+         */
+        CompletableFuture<Void> closeAfterFlush() {
+            loop.execute(this, () -> {
+                closeWhenFlushed = true;
+                tryWrite();
+            });
+            return closed;
+        }
+
+        /**
+         * Closes the connection without sending remaining frames.
+         */
+        void close() {
+            loop.execute(this, this::closeNow);
+        }
+
+        private void open() {
+            try {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+                tryWrite();
+            } catch (IOException e) {
+                closeNow();
+            }
+        }
+
+        private void tryWrite() {
+            try {
+                write();
+            } catch (IOException e) {
+                closeNow();
+            }
+        }
+
+        /**
+         * Reads everything available and passes complete frames on to the endpoint.
+         */
+        private void read(ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            if (channel.read(buffer) == -1) {
+                closeNow();
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                var start = buffer.position();
+                var limit = buffer.limit();
+                var end = start;
+                while (end < limit && buffer.get(end) != 0) end++;
+                var length = end - start;
+                if (!skipping) {
+                    if (frameLength + length > maxPacketLength) {
+                        skipping = true; // discard until the next 0 byte
+                        frameLength = 0;
+                    }
+                    else {
+                        if (frameLength + length > frame.length)
+                            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, frameLength + length));
+                        buffer.get(frame, frameLength, length);
+                        frameLength += length;
+                    }
+                }
+                if (end == limit) break; // frame continues with the next read
+                buffer.position(end + 1);
+                if (skipping) skipping = false; // new frame next up
+                else {
+                    endpoint.handleFrame(Arrays.copyOf(frame, frameLength));
+                    frameLength = 0;
+                }
+            }
+        }
+
+        /**
+         * Writes as many frames as the socket accepts and waits for the socket to become writable if needed.
+         */
+        private void write() throws IOException {
+            if (key == null || !key.isValid()) return;
+            while (true) {
+                if (!pending[1].hasRemaining()) {
+                    var next = endpoint.nextFrame();
+                    if (next == null) break;
+                    pending[0] = ByteBuffer.wrap(next);
+                    pending[1] = ByteBuffer.allocate(1); // the terminating 0 byte
+                }
+                channel.write(pending);
+                if (pending[1].hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (closeWhenFlushed) closeNow();
+        }
+
+        private void closeNow() {
+            if (closed.isDone()) return;
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+            closed.complete(null);
+            endpoint.handleClosed();
+        }
+    }
+}
@@ -15,6 +15,12 @@ public class ServerConfig {
     public final static String MODE_MANUAL = "manual";
     public final static String MODE_RANDOM = "random";
 
+    public final static String STEP_MODE_EARLY = "early";
+    public final static String STEP_MODE_DEADLINE = "deadline";
+
+    public final static String REPLAY_FORMAT_FILE = "file";
+    public final static String REPLAY_FORMAT_DIRECTORY = "directory";
+
     public String tournamentMode;
     public String launch;
     public int teamsPerMatch;
@@ -24,6 +30,13 @@ public class ServerConfig {
     public int backlog;
     public Map<String, String> accounts = new HashMap<>();
     public long agentTimeout;
+
+    /**
+     * Whether a step ends as soon as all actions have arrived ({@link #STEP_MODE_EARLY})
+     * or only after {@link #agentTimeout} ({@link #STEP_MODE_DEADLINE}).
+     */
+    public String stepMode = STEP_MODE_EARLY;
+
     public String logPath;
     public String resultPath;
 
@@ -47,6 +60,11 @@ public class ServerConfig {
      */
     public String replayPath;
 
+    /**
+     * How replays are stored (see REPLAY_FORMAT_* constants).
+     */
+    public String replayFormat = REPLAY_FORMAT_FILE;
+
     /**
      * The port for the webmonitor or 0.
      */
@@ -57,6 +75,32 @@ public class ServerConfig {
      */
     public int waitBetweenSimulations = 0;
 
+    /**
+     * Whether to run the networking threads as virtual threads (if available, i.e. with Java 21+).
+     */
+    public boolean virtualThreads = false;
+
+    /**
+     * The maximum number of threads building the agents' percepts (0 for the number of available processors).
+     */
+    public int perceptThreads = 0;
+
+    /**
+     * The maximum number of matches to run at the same time. A team never plays in two matches at once.
+     */
+    public int parallelMatches = 1;
+
+    /**
+     * The addresses (host:port) of the worker servers to distribute the matches to.
+     * If not empty, the server only coordinates the workers and does not run any simulations itself.
+     */
+    public List<String> workers = new ArrayList<>();
+
+    /**
+     * The port to receive matches from a coordinator on or 0 (set with the --worker option).
+     */
+    public int workerPort;
+
     /**
      * Actual number of agents required in each simulation.
      */
@@ -2,8 +2,10 @@ package massim.game;
 
 import massim.config.TeamConfig;
 import massim.game.environment.ClearEvent;
+import massim.game.environment.Diamond;
 import massim.game.environment.Grid;
 import massim.game.environment.Task;
+import massim.game.environment.Torus;
 import massim.game.environment.positionable.*;
 import massim.game.environment.zones.Zone;
 import massim.game.environment.zones.ZoneType;
@@ -19,6 +21,7 @@ import massim.protocol.messages.SimStartMessage;
 import massim.protocol.messages.scenario.ActionResults;
 import massim.protocol.messages.scenario.Actions;
 import massim.protocol.messages.scenario.InitialPercept;
+import massim.protocol.messages.scenario.SharedPercept;
 import massim.protocol.messages.scenario.StepPercept;
 import massim.protocol.util.JSONUtil;
 import massim.util.*;
@@ -44,6 +47,12 @@ public class GameState {
     private final int teamSize;
 
     // static env. things
+    private final SimulationContext context;
+    private final Torus torus;
+    private final RNG eventRng;
+    private final RNG taskRng;
+    private final RNG actionRng;
+    private final RNG failureRng;
     private final Grid grid;
     private final Map<String, Team> teams = new HashMap<>();
     private final Officer officer;
@@ -69,23 +78,30 @@ public class GameState {
 
     private final Map<String, JSONArray> stepEvents = new HashMap<>();
 
-    private final JSONArray logEvents = new JSONArray();
+    /**
+     * Events of the current step (replaced each step, as earlier snapshots may still reference the old events).
+     */
+    private JSONArray logEvents = new JSONArray();
 
-    public GameState(JSONObject config, Set<TeamConfig> matchTeams) {
+    /**
+     * @param context the context of the simulation (created from the same config)
+     */
+    public GameState(JSONObject config, Set<TeamConfig> matchTeams, SimulationContext context) {
+        this.context = context;
+        this.torus = context.torus();
+        this.eventRng = context.rng(SimulationContext.Stream.EVENTS);
+        this.taskRng = context.rng(SimulationContext.Stream.TASKS);
+        this.actionRng = context.rng(SimulationContext.Stream.ACTIONS);
+        this.failureRng = context.rng(SimulationContext.Stream.ACTION_FAILURES);
+        var worldRng = context.rng(SimulationContext.Stream.WORLD);
         this.randomFail = ConfigUtil.getInt(config, "randomFail");
         int attachLimit = ConfigUtil.getInt(config, "attachLimit");
         var clusterSizes = ConfigUtil.getBounds(config, "clusterBounds");
 
-        this.grid = new Grid(config.getJSONObject("grid"), attachLimit);
-
-        Entity.clearEnergyCost = ConfigUtil.getInt(config, "clearEnergyCost");
-        Entity.deactivatedDuration = ConfigUtil.getInt(config, "deactivatedDuration");
-        Entity.maxEnergy = ConfigUtil.getInt(config, "maxEnergy");
-        Entity.refreshEnergy = ConfigUtil.getInt(config, "refreshEnergy");
-        Entity.stepRecharge = ConfigUtil.getInt(config, "stepRecharge");
+        this.grid = new Grid(config.getJSONObject("grid"), attachLimit, context);
 
         var blockTypeBounds = ConfigUtil.getBounds(config, "blockTypes");
-        var numberOfBlockTypes = RNG.betweenClosed(blockTypeBounds.lower(), blockTypeBounds.upper());
+        var numberOfBlockTypes = worldRng.betweenClosed(blockTypeBounds.lower(), blockTypeBounds.upper());
         for (int i = 0; i < numberOfBlockTypes; i++)
             this.grid.blocks().addType("b" + i);
 
@@ -120,10 +136,10 @@ public class GameState {
             var numberOfAgents = entities.getInt(it.next());
             List<Integer> agentsRange = IntStream.rangeClosed(0, numberOfAgents-1).boxed().collect(Collectors.toList());
             while (!agentsRange.isEmpty()) {
-                int clusterSize = Math.min(RNG.betweenClosed(clusterSizes), agentsRange.size());
+                int clusterSize = Math.min(worldRng.betweenClosed(clusterSizes), agentsRange.size());
                 ArrayList<Position> cluster = grid.findRandomFreeClusterPosition(clusterSize);
                 for (Position p : cluster) {
-                    int index = agentsRange.remove(RNG.nextInt(agentsRange.size()));
+                    int index = agentsRange.remove(worldRng.nextInt(agentsRange.size()));
                     for (TeamConfig team: matchTeams) {
                         this.grid.entities().create(p, team.getAgentNames().get(index), team.getName(), defaultRole);
                     }
@@ -136,7 +152,7 @@ public class GameState {
 
         // create env. things
         for (var block : this.grid.blocks().getTypes()) {
-            var numberOfDispensers = RNG.betweenClosed(dispenserBounds);
+            var numberOfDispensers = worldRng.betweenClosed(dispenserBounds);
             for (var i = 0; i < numberOfDispensers; i++) {
                 this.grid.dispensers().create(this.grid.findRandomFreePosition(), block);
             }
@@ -270,6 +286,10 @@ public class GameState {
         return this.randomFail;
     }
 
+    public SimulationContext context() {
+        return context;
+    }
+
     public Grid grid() {
         return grid;
     }
@@ -286,7 +306,7 @@ public class GameState {
     Map<String, RequestActionMessage> prepareStep(int step) {
         this.step = step;
 
-        this.logEvents.clear();
+        this.logEvents = new JSONArray();
         this.grid.deleteMarkers();
 
         // handle norms before everything else
@@ -297,9 +317,9 @@ public class GameState {
         this.grid.entities().getAll().forEach(Entity::preStep);
 
         //handle (map) events
-        if (RNG.nextInt(100) < eventChance) {
-            this.clearEvents.add(new ClearEvent(grid.getRandomPosition(), step + eventWarning,
-                    RNG.betweenClosed(eventRadiusBounds)));
+        if (eventRng.nextInt(100) < eventChance) {
+            this.clearEvents.add(new ClearEvent(grid.getRandomPosition(eventRng), step + eventWarning,
+                    eventRng.betweenClosed(eventRadiusBounds)));
         }
         var processedEvents = new HashSet<ClearEvent>();
         for (var event: clearEvents) {
@@ -309,8 +329,8 @@ public class GameState {
             }
             else {
                 var type = event.step() - step <= 2? Marker.Type.CLEAR_IMMEDIATE : Marker.Type.CLEAR;
-                var clearArea = event.position().spanArea(event.radius());
-                var clearPerimeter = event.position().spanArea(event.radius() + eventCreatePerimeter);
+                var clearArea = torus.spanArea(event.position(), event.radius());
+                var clearPerimeter = torus.spanArea(event.position(), event.radius() + eventCreatePerimeter);
                 clearPerimeter.removeAll(clearArea);
                 for (Position pos: clearArea) grid.markers().create(pos, type);
                 for (Position pos: clearPerimeter) grid.markers().create(pos, Marker.Type.CLEAR_PERIMETER);
@@ -342,10 +362,10 @@ public class GameState {
 
     private void processEvent(ClearEvent event) {
         var removed = clearArea(event.position(), event.radius(), 1000, true);
-        var distributeNew = RNG.betweenClosed(eventCreateBounds) + removed;
+        var distributeNew = eventRng.betweenClosed(eventCreateBounds) + removed;
 
         for (var i = 0; i < distributeNew; i++) {
-            var pos = grid.findRandomFreePosition(event.position(),eventCreatePerimeter + event.radius());
+            var pos = grid.findRandomFreePosition(event.position(),eventCreatePerimeter + event.radius(), eventRng);
             if(pos != null && !this.grid.dispensers().isTaken(pos)) {
                 this.grid.obstacles().create(pos);
             }
@@ -363,49 +383,68 @@ public class GameState {
                 .filter(n -> n.toAnnounce(this.step) || n.isActive(this.step))
                 .map(Norm::toPercept)
                 .collect(Collectors.toSet());
+        var shared = new SharedPercept(activeTasks, allNorms);
         List<Record> records = officer.getArchive(this.step);
 
-        for (var entity : this.grid.entities().getAll()) {
-            var agentPos = entity.getPosition();
-            var visibleThings = new HashSet<Thing>();
-            var attachedThings = new ArrayList<Position>();
-            var goalZones = new ArrayList<Position>();
-            var roleZones = new ArrayList<Position>();
-            for (var currentPos: agentPos.spanArea(entity.getVision())){
-                for (var thing : this.grid.getEverythingAt(currentPos)) {
-                    visibleThings.add(thing.toPercept(agentPos));
-                    if (thing != entity && thing instanceof Attachable a && a.isAttachedToAnotherEntity()){
-                        attachedThings.add(thing.getPosition().relativeTo(agentPos));
-                    }
+        var entities = this.grid.entities().getAll();
+        var perceptPool = context.perceptPool();
+        if (perceptPool == null || entities.size() < 2) {
+            for (var entity : entities) result.put(entity.getAgentName(), buildStepPercept(entity, shared, records));
+            return result;
+        }
+        // percepts only read the state, so they can be built concurrently
+        return perceptPool.submit(() -> entities.parallelStream().collect(Collectors.toMap(
+                Entity::getAgentName, e -> (RequestActionMessage) buildStepPercept(e, shared, records),
+                (p1, p2) -> p1, HashMap::new))).join();
+    }
+
+    /**
+     * Builds the step percept of one entity without modifying the state.
+     */
+    private StepPercept buildStepPercept(Entity entity, SharedPercept shared, List<Record> records) {
+        var agentPos = entity.getPosition();
+        var visibleThings = new HashSet<Thing>();
+        var attachedThings = new ArrayList<Position>();
+        var goalZones = new ArrayList<Position>();
+        var roleZones = new ArrayList<Position>();
+        var cellContents = new ArrayList<Positionable>();
+        var area = Diamond.of(entity.getVision());
+        for (var i = 0; i < area.size(); i++) {
+            var x = agentPos.x + area.dx(i);
+            var y = agentPos.y + area.dy(i);
+            cellContents.clear();
+            for (var thing : this.grid.collectEverythingAt(x, y, cellContents)) {
+                var relativePos = torus.relative(thing.getPosition(), agentPos);
+                visibleThings.add(thing.toPercept(relativePos));
+                if (thing != entity && thing instanceof Attachable a && a.isAttachedToAnotherEntity()){
+                    attachedThings.add(relativePos);
                 }
-                if (this.grid.isInZone(ZoneType.GOAL, currentPos)) goalZones.add(currentPos.relativeTo(agentPos));
-                if (this.grid.isInZone(ZoneType.ROLE, currentPos)) roleZones.add(currentPos.relativeTo(agentPos));
             }
-            List<String> punishment = records.stream()
-                                                .filter(p -> p.entity().getAgentName().equals(entity.getAgentName()))
-                                                .map(Record::norm)
-                                                .collect(Collectors.toList());
-            result.put(entity.getAgentName(), new StepPercept(
-                    step,
-                    teams.get(entity.getTeamName()).getScore(),
-                    visibleThings,
-                    activeTasks,
-                    allNorms,
-                    entity.getLastAction(),
-                    entity.getLastActionParams(),
-                    entity.getLastActionResult(),
-                    attachedThings,
-                    stepEvents.get(entity.getAgentName()),
-                    entity.getRole().name(),
-                    entity.getEnergy(),
-                    entity.isDeactivated(),
-                    punishment,
-                    goalZones,
-                    roleZones,
-                    this.perceiveAbsolutePosition? entity.getPosition() : null
-            ));
+            if (this.grid.isInZone(ZoneType.GOAL, x, y)) goalZones.add(torus.relative(torus.wrap(x, y), agentPos));
+            if (this.grid.isInZone(ZoneType.ROLE, x, y)) roleZones.add(torus.relative(torus.wrap(x, y), agentPos));
         }
-        return result;
+        List<String> punishment = records.stream()
+                                            .filter(p -> p.entity().getAgentName().equals(entity.getAgentName()))
+                                            .map(Record::norm)
+                                            .collect(Collectors.toList());
+        return new StepPercept(
+                step,
+                teams.get(entity.getTeamName()).getScore(),
+                visibleThings,
+                shared,
+                entity.getLastAction(),
+                entity.getLastActionParams(),
+                entity.getLastActionResult(),
+                attachedThings,
+                stepEvents.get(entity.getAgentName()),
+                entity.getRole().name(),
+                entity.getEnergy(),
+                entity.isDeactivated(),
+                punishment,
+                goalZones,
+                roleZones,
+                this.perceiveAbsolutePosition? entity.getPosition() : null
+        );
     }
 
     Map<String, SimEndMessage> getFinalPercepts() {
@@ -456,7 +495,7 @@ public class GameState {
     }
 
     String handleAttachAction(Entity entity, String direction) {
-        Position target = entity.getPosition().moved(direction, 1);
+        Position target = torus.moved(entity.getPosition(), direction, 1);
         Attachable a = this.grid.getUniqueAttachable(target);
         if (a == null)
             return FAILED_TARGET;
@@ -470,7 +509,7 @@ public class GameState {
     }
 
     String handleDetachAction(Entity entity, String direction) {
-        Position target = entity.getPosition().moved(direction, 1);
+        Position target = torus.moved(entity.getPosition(), direction, 1);
         var a = this.grid.getUniqueAttachable(target);
         if (a == null) return ActionResults.FAILED_TARGET;
         if (a instanceof Entity && ofDifferentTeams(entity, (Entity) a)) {
@@ -483,30 +522,27 @@ public class GameState {
     }
 
     String handleDisconnectAction(Entity entity, Position attPos1, Position attPos2) {
-        var attachable1 = this.grid.getUniqueAttachable(attPos1.translate(entity.getPosition()));
-        var attachable2 = this.grid.getUniqueAttachable(attPos2.translate(entity.getPosition()));
+        var attachable1 = this.grid.getUniqueAttachable(torus.translate(attPos1, entity.getPosition()));
+        var attachable2 = this.grid.getUniqueAttachable(torus.translate(attPos2, entity.getPosition()));
         if (attachable1 == null || attachable2 == null) return ActionResults.FAILED_TARGET;
-        var allAttachments = entity.collectAllAttachments(true);
-        if (!allAttachments.contains(attachable1) || !allAttachments.contains(attachable2))
+        if (!entity.isConnectedTo(attachable1) || !entity.isConnectedTo(attachable2))
             return ActionResults.FAILED_TARGET;
         if (grid.detachNeighbors(attachable1, attachable2)) return ActionResults.SUCCESS;
         return ActionResults.FAILED_TARGET;
     }
 
     String handleConnectAction(Entity entity, Position blockPos, Entity partnerEntity, Position partnerBlockPos) {
-        Attachable block1 = this.grid.getUniqueAttachable(blockPos.translate(entity.getPosition()));
-        Attachable block2 = this.grid.getUniqueAttachable(partnerBlockPos.translate(partnerEntity.getPosition()));
+        Attachable block1 = this.grid.getUniqueAttachable(torus.translate(blockPos, entity.getPosition()));
+        Attachable block2 = this.grid.getUniqueAttachable(torus.translate(partnerBlockPos, partnerEntity.getPosition()));
 
         if(!(block1 instanceof Block) || !(block2 instanceof Block)) return ActionResults.FAILED_TARGET;
 
-        Set<Attachable> attachables = entity.collectAllAttachments(true);
-        if (attachables.contains(partnerEntity)) return ActionResults.FAILED;
-        if (!attachables.contains(block1)) return ActionResults.FAILED_TARGET;
-        if (attachables.contains(block2)) return ActionResults.FAILED_TARGET;
+        if (entity.isConnectedTo(partnerEntity)) return ActionResults.FAILED;
+        if (!entity.isConnectedTo(block1)) return ActionResults.FAILED_TARGET;
+        if (entity.isConnectedTo(block2)) return ActionResults.FAILED_TARGET;
 
-        Set<Attachable> partnerAttachables = partnerEntity.collectAllAttachments(true);
-        if (!partnerAttachables.contains(block2)) return ActionResults.FAILED_TARGET;
-        if (partnerAttachables.contains(block1)) return ActionResults.FAILED_TARGET;
+        if (!partnerEntity.isConnectedTo(block2)) return ActionResults.FAILED_TARGET;
+        if (partnerEntity.isConnectedTo(block1)) return ActionResults.FAILED_TARGET;
 
         if(grid.attach(block1, block2)){
             return SUCCESS;
@@ -515,7 +551,7 @@ public class GameState {
     }
 
     String handleRequestAction(Entity entity, String direction) {
-        var requestPosition = entity.getPosition().moved(direction, 1);
+        var requestPosition = torus.moved(entity.getPosition(), direction, 1);
         var dispenser = this.grid.dispensers().lookup(requestPosition);
         if (dispenser == null) return ActionResults.FAILED_TARGET;
         if (grid.isBlocked(requestPosition)) return ActionResults.FAILED_BLOCKED;
@@ -529,21 +565,20 @@ public class GameState {
             return ActionResults.FAILED_TARGET;
         Position ePos = e.getPosition();
         if (grid.isNotInZone(ZoneType.GOAL, ePos)) return ActionResults.FAILED;
-        Set<Attachable> attachedBlocks = e.collectAllAttachments(true);
         for (Map.Entry<Position, String> entry : task.getRequirements().entrySet()) {
             var pos = entry.getKey();
             var reqType = entry.getValue();
-            var checkPos = Position.wrapped(pos.x + ePos.x, pos.y + ePos.y);
+            var checkPos = torus.wrap(pos.x + ePos.x, pos.y + ePos.y);
             var actualBlock = this.grid.getUniqueAttachable(checkPos);
             if (actualBlock instanceof Block
                 && ((Block) actualBlock).getBlockType().equals(reqType)
-                && attachedBlocks.contains(actualBlock)) {
+                && e.isConnectedTo(actualBlock)) {
                 continue;
             }
             return ActionResults.FAILED;
         }
         task.getRequirements().keySet().forEach(pos -> {
-            Attachable a = this.grid.getUniqueAttachable(pos.translate(e.getPosition()));
+            Attachable a = this.grid.getUniqueAttachable(torus.translate(pos, e.getPosition()));
             a.destroy();
         });
         teams.get(e.getTeamName()).addScore(task.getReward());
@@ -566,15 +601,15 @@ public class GameState {
      * @return action result
      */
     String handleClearAction(Entity entity, Position xy) {
-        if (RNG.nextDouble() > entity.getRole().clearChance())
+        if (failureRng.nextDouble() > entity.getRole().clearChance())
             return FAILED_RANDOM;
 
         int maxDistance = entity.getRole().clearMaxDistance();
 
-        var targetPosition = xy.translate(entity.getPosition());
-        var distance = entity.getPosition().distanceTo(targetPosition);
+        var targetPosition = torus.translate(xy, entity.getPosition());
+        var distance = torus.distance(entity.getPosition(), targetPosition);
         if (distance > maxDistance) return FAILED_LOCATION;
-        if (entity.getEnergy() < Entity.clearEnergyCost) return FAILED_RESOURCES;
+        if (entity.getEnergy() < grid.entities().getParameters().clearEnergyCost()) return FAILED_RESOURCES;
 
         entity.consumeClearEnergy();
 
@@ -589,7 +624,7 @@ public class GameState {
                 targetEntity.decreaseEnergy(damage);
                 addEventPercept(targetEntity, new JSONObject()
                         .put("type", "hit")
-                        .put("origin", entity.getPosition().relativeTo(targetEntity.getPosition()).toJSON())
+                        .put("origin", torus.relative(entity.getPosition(), targetEntity.getPosition()).toJSON())
                         .put("damage", damage)
                 );
             }
@@ -609,7 +644,7 @@ public class GameState {
 
     int clearArea(Position center, int radius, int damage, boolean destroyAttachments) {
         var removed = 0;
-        for (var position : center.spanArea(radius)) {
+        for (var position : torus.spanArea(center, radius)) {
             for (Entity entity : this.grid.entities().lookup(position))
                 entity.decreaseEnergy(damage);
 
@@ -624,24 +659,24 @@ public class GameState {
     }
 
     void createRandomTask() {
-        int duration = RNG.betweenClosed(taskMaxDuration);
-        int size = RNG.betweenClosed(taskSizeBounds);
-        int iterations = RNG.betweenClosed(taskIterations);
+        int duration = taskRng.betweenClosed(taskMaxDuration);
+        int size = taskRng.betweenClosed(taskSizeBounds);
+        int iterations = taskRng.betweenClosed(taskIterations);
         if (size < 1) return;
         var name = "task" + tasks.values().size();
         var requirements = new HashMap<Position, String>();
         var typeList = new ArrayList<>(this.grid.blocks().getTypes());
         var lastPosition = Position.of(0, 1);
-        requirements.put(lastPosition, typeList.get(RNG.nextInt(typeList.size())));
+        requirements.put(lastPosition, typeList.get(taskRng.nextInt(typeList.size())));
         while (requirements.size() < size) {
-            double direction = RNG.nextDouble();
+            double direction = taskRng.nextDouble();
             if (direction <= .3)
                 lastPosition = Position.of(lastPosition.x - 1, lastPosition.y);
             else if (direction <= .6)
                 lastPosition = Position.of(lastPosition.x + 1, lastPosition.y);
             else
                 lastPosition = Position.of(lastPosition.x, lastPosition.y + 1);
-            requirements.put(lastPosition, typeList.get(RNG.nextInt(typeList.size())));
+            requirements.put(lastPosition, typeList.get(taskRng.nextInt(typeList.size())));
         }
         this.createTask(name, duration, iterations, requirements);
     }
@@ -655,7 +690,7 @@ public class GameState {
     }
 
     private boolean attachedToOpponent(Attachable a, Entity entity) {
-        return a.collectAllAttachments(true).stream().anyMatch(other -> other instanceof Entity e2 && ofDifferentTeams(e2, entity));
+        return a.getAttachmentGroup().stream().anyMatch(other -> other instanceof Entity e2 && ofDifferentTeams(e2, entity));
     }
 
     private boolean ofDifferentTeams(Entity e1, Entity e2) {
@@ -679,15 +714,14 @@ public class GameState {
     }
 
     JSONObject takeSnapshot() {
+        var snapshots = this.grid.snapshots();
+        snapshots.update();
         JSONObject snapshot = new JSONObject().put("step", step);
         JSONArray entities = new JSONArray();
         snapshot.put("entities", entities);
-        JSONArray blocks = new JSONArray();
-        snapshot.put("blocks", blocks);
-        JSONArray obstacles = new JSONArray();
-        snapshot.put("obstacles", obstacles);
-        JSONArray dispensers = new JSONArray();
-        snapshot.put("dispensers", dispensers);
+        snapshot.put("blocks", snapshots.getBlocks());
+        snapshot.put("obstacles", snapshots.getObstacles());
+        snapshot.put("dispensers", snapshots.getDispensers());
         JSONArray taskArr = new JSONArray();
         snapshot.put("tasks", taskArr);
         JSONArray normArr = new JSONArray();
@@ -695,19 +729,10 @@ public class GameState {
         JSONArray punishmentArr = new JSONArray();
         snapshot.put("violations", punishmentArr);
 
-        for (Entity entity : this.grid.entities().getAll()) {
+        for (Entity entity : snapshots.getEntities()) {
             entities.put(entity.toJSON()
                                .put("events", this.stepEvents.get(entity.getAgentName())));
         }
-        for (Block block : this.grid.blocks().getAll()) {
-            blocks.put(block.toJSON());
-        }
-        for (Dispenser dispenser : this.grid.dispensers().getAll()) {
-            dispensers.put(dispenser.toJSON());
-        }
-        for (Obstacle obstacle : this.grid.obstacles().getAll()) {
-            obstacles.put(obstacle.toJSON());
-        }
 
         this.tasks.values().stream()
                 .filter(t -> !t.isCompleted())
@@ -764,10 +789,10 @@ public class GameState {
 
     public String handleSurveyDispenserAction(Entity entity) {
         var optDispenser = this.grid.dispensers().getAll().stream().min(
-                Comparator.comparing(d -> d.getPosition().distanceTo(entity.getPosition())));
+                Comparator.comparing(d -> torus.distance(d.getPosition(), entity.getPosition())));
         if (optDispenser.isEmpty()) return FAILED_TARGET;
 
-        var distance = optDispenser.get().getPosition().distanceTo(entity.getPosition());
+        var distance = torus.distance(optDispenser.get().getPosition(), entity.getPosition());
         this.addEventPercept(entity, new JSONObject()
                 .put("type", "surveyed")
                 .put("target", "dispenser")
@@ -788,13 +813,13 @@ public class GameState {
     }
 
     public String handleSurveyTargetAction(Entity entity, Position targetPos) {
-        var distance = entity.getPosition().distanceTo(targetPos);
+        var distance = torus.distance(entity.getPosition(), targetPos);
         if (distance > entity.getVision())
             return FAILED_LOCATION;
         var targetEntities = new ArrayList<>(this.grid.entities().lookup(targetPos));
         if (targetEntities.isEmpty())
             return FAILED_TARGET;
-        RNG.shuffle(targetEntities);
+        actionRng.shuffle(targetEntities);
         var targetEntity = targetEntities.get(0);
         this.addEventPercept(entity, new JSONObject()
                 .put("type", "surveyed")
@@ -9,7 +9,6 @@ import massim.protocol.messages.RequestActionMessage;
 import massim.protocol.messages.SimEndMessage;
 import massim.protocol.messages.SimStartMessage;
 import massim.game.environment.Grid;
-import massim.util.RNG;
 import massim.util.Util;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -22,13 +21,21 @@ import static massim.protocol.messages.scenario.ActionResults.*;
 
 public class Simulation {
 
+    private final SimulationContext context;
     private String name;
     private GameState state;
     private int steps;
 
+    /**
+     * @param context the context of the new simulation (not to be shared with any other simulation)
+     */
+    public Simulation(SimulationContext context) {
+        this.context = context;
+    }
+
     public Map<String, SimStartMessage> init(int steps, JSONObject config, Set<TeamConfig> matchTeams) {
         this.steps = steps;
-        this.state = new GameState(config, matchTeams);
+        this.state = new GameState(config, matchTeams, context);
         this.name = System.currentTimeMillis() + "_" + matchTeams.stream()
                 .map(TeamConfig::getName)
                 .collect(Collectors.joining("_"));
@@ -92,7 +99,7 @@ public class Simulation {
         world.put("grid", grid);
         world.put("teams", teams);
         world.put("blockTypes", this.state.grid().blocks().getTypes());
-        world.put("maxEnergy", Entity.maxEnergy);
+        world.put("maxEnergy", this.state.grid().entities().getParameters().maxEnergy());
         world.put("steps", steps);
         return world;
     }
@@ -104,7 +111,7 @@ public class Simulation {
      */
     private void handleActions(Map<String, ActionMessage> actions) {
         var entities = new ArrayList<>(state.grid().entities().getAll());
-        RNG.shuffle(entities);
+        context.rng(SimulationContext.Stream.ACTIONS).shuffle(entities);
 
         for (Entity entity : entities) {
             var actionMessage = actions.get(entity.getAgentName());
@@ -118,7 +125,7 @@ public class Simulation {
             else if (!entity.isActionAvailable(actionMessage.getActionType())) {
                 entity.setLastActionResult(FAILED_ROLE);
             }
-            else if (RNG.nextInt(100) < state.getRandomFail()) {
+            else if (context.rng(SimulationContext.Stream.ACTION_FAILURES).nextInt(100) < state.getRandomFail()) {
                 entity.setLastActionResult(FAILED_RANDOM);
             }
         }
@@ -249,7 +256,7 @@ public class Simulation {
                             entity.setLastActionResult(FAILED_PARAMETER);
                             continue;
                         }
-                        var pos = Position.of(x, y).translate(entity.getPosition());
+                        var pos = context.torus().translate(Position.of(x, y), entity.getPosition());
                         entity.setLastActionResult(
                                 state.handleSurveyTargetAction(entity, pos));
                     } else
@@ -0,0 +1,124 @@
+package massim.game;
+
+import massim.game.environment.Torus;
+import massim.game.environment.positionable.Entity;
+import massim.util.ConfigUtil;
+import massim.util.RNG;
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Everything that all parts of one simulation share, but that must not be shared with other simulations:
+ * the grid's geometry, the random number generators, the entity parameters and the IDs of the game objects.
+ * Since nothing of this is global, any number of simulations can run in the same JVM at the same time.
+ * The only thing simulations may share is the pool that builds the step percepts.
+ * A context (like its simulation) must only be used by one thread at a time.
+ */
+public class SimulationContext {
+
+    /**
+     * The parts of a simulation that use randomness. Each of them has its own generator, all derived from the
+     * simulation's seed, so that changing how one part draws random numbers does not change the others' numbers.
+     * (New streams have to be added at the end to keep the existing streams' numbers.)
+     */
+    public enum Stream {
+        /** creating the world: terrain, zones, agents, dispensers, block types */
+        WORLD,
+        /** the order in which the agents' actions are executed and other random choices of actions */
+        ACTIONS,
+        /** random action failures */
+        ACTION_FAILURES,
+        /** clear events */
+        EVENTS,
+        /** new tasks */
+        TASKS,
+        /** new norms */
+        NORMS,
+        /** moving goal zones after task submissions */
+        GOAL_ZONES
+    }
+
+    private final long seed;
+    private final Map<Stream, RNG> streams = new EnumMap<>(Stream.class);
+    private final Torus torus;
+    private final Entity.Parameters entityParameters;
+    private int lastId = 0;
+    private ForkJoinPool perceptPool = null;
+
+    /**
+     * @param seed the seed of the simulation's random number generator
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param entityParameters the energy parameters of all entities
+     */
+    public SimulationContext(long seed, int width, int height, Entity.Parameters entityParameters) {
+        this.seed = seed;
+        var root = new RNG(seed);
+        for (var stream : Stream.values()) streams.put(stream, root.split());
+        this.torus = new Torus(width, height);
+        this.entityParameters = entityParameters;
+    }
+
+    /**
+     * Creates a context from a sim config. If the config has no "randomSeed", the current time is used.
+     * @param config the configuration of the simulation (one of the server config's "match" entries)
+     */
+    public static SimulationContext fromConfig(JSONObject config) {
+        var grid = config.getJSONObject("grid");
+        return new SimulationContext(
+                config.optLong("randomSeed", System.currentTimeMillis()),
+                grid.getInt("width"),
+                grid.getInt("height"),
+                new Entity.Parameters(
+                        ConfigUtil.getInt(config, "maxEnergy"),
+                        ConfigUtil.getInt(config, "clearEnergyCost"),
+                        ConfigUtil.getInt(config, "deactivatedDuration"),
+                        ConfigUtil.getInt(config, "stepRecharge"),
+                        ConfigUtil.getInt(config, "refreshEnergy")));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the random number generator of the given part of the simulation
+     */
+    public RNG rng(Stream stream) {
+        return streams.get(stream);
+    }
+
+    public Torus torus() {
+        return torus;
+    }
+
+    public Entity.Parameters entityParameters() {
+        return entityParameters;
+    }
+
+    /**
+     * @return the pool to build the step percepts in parallel or null to build them sequentially
+     */
+    public ForkJoinPool perceptPool() {
+        return perceptPool;
+    }
+
+    /**
+     * Sets the pool to build the step percepts in parallel. The pool can be shared by several simulations;
+     * it is not shut down by the simulation. Percepts are the same with or without a pool.
+     * @param pool the pool to use or null to build the percepts sequentially
+     */
+    public void setPerceptPool(ForkJoinPool pool) {
+        this.perceptPool = pool;
+    }
+
+    /**
+     * @return a new ID for a game object (unique within the simulation)
+     */
+    public int nextId() {
+        return ++lastId;
+    }
+}
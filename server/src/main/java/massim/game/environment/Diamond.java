@@ -0,0 +1,65 @@
+package massim.game.environment;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The offsets of all cells within a Manhattan distance (e.g. an agent's vision), ordered row by row.
+ * Instances are cached per radius, as there are only a few distinct radii in each simulation.
+ */
+public final class Diamond {
+
+    private static final ConcurrentHashMap<Integer, Diamond> cache = new ConcurrentHashMap<>();
+
+    private final int radius;
+    private final int[] dx;
+    private final int[] dy;
+
+    private Diamond(int radius) {
+        this.radius = radius;
+        var size = 2 * radius * (radius + 1) + 1;
+        this.dx = new int[size];
+        this.dy = new int[size];
+        var i = 0;
+        for (var y = -radius; y <= radius; y++) {
+            var width = radius - Math.abs(y);
+            for (var x = -width; x <= width; x++) {
+                dx[i] = x;
+                dy[i] = y;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * @param radius the maximum Manhattan distance from the center
+     * @return the (shared) offsets for the given radius
+     */
+    public static Diamond of(int radius) {
+        return cache.computeIfAbsent(Math.max(0, radius), Diamond::new);
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the number of cells
+     */
+    public int size() {
+        return dx.length;
+    }
+
+    /**
+     * @return the horizontal offset of the i-th cell
+     */
+    public int dx(int i) {
+        return dx[i];
+    }
+
+    /**
+     * @return the vertical offset of the i-th cell
+     */
+    public int dy(int i) {
+        return dy[i];
+    }
+}
@@ -3,17 +3,20 @@ package massim.game.environment;
 import massim.protocol.data.Position;
 import massim.protocol.data.Thing;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 public abstract class GameObject {
 
-    private static final AtomicInteger lastId = new AtomicInteger();
+    private final int id;
 
-    private final int id = lastId.incrementAndGet();
+    protected GameObject(int id) {
+        this.id = id;
+    }
 
     public final int getID() {
         return id;
     }
 
-    public abstract Thing toPercept(Position relativeTo);
+    /**
+     * @param relativePosition the position of this object relative to the perceiving entity
+     */
+    public abstract Thing toPercept(Position relativePosition);
 }
@@ -1,7 +1,8 @@
 package massim.game.environment;
 
-import massim.game.environment.positionable.Entity;
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.*;
+import massim.game.environment.positionable.observer.SnapshotBuilder;
 import massim.game.environment.zones.Zone;
 import massim.game.environment.zones.ZoneList;
 import massim.game.environment.zones.ZoneType;
@@ -17,33 +18,53 @@ public class Grid {
     public static final Set<String> DIRECTIONS = Set.of("n", "s", "e", "w");
     public static final Set<String> ROTATION_DIRECTIONS = Set.of("cw", "ccw");
 
+    private final SimulationContext context;
+    private final Torus torus;
+    private final RNG rng;
+    private final RNG goalZoneRng;
     private final int dimX;
     private final int dimY;
     private final int attachLimit;
     private final double moveProbability;
 
-    private final AttachableHub attachables = new AttachableHub();
-    private final EntityHub entities = new EntityHub();
-    private final BlockHub blocks = new BlockHub();
-    private final ObstacleHub obstacles = new ObstacleHub();
-    private final MarkerHub markers = new MarkerHub();
-    private final DispenserHub dispensers = new DispenserHub();
+    private final AttachableHub attachables;
+    private final EntityHub entities;
+    private final BlockHub blocks;
+    private final ObstacleHub obstacles;
+    private final MarkerHub markers;
+    private final DispenserHub dispensers;
+    private final SnapshotBuilder snapshots = new SnapshotBuilder();
 
-    private final ZoneList goalZones = new ZoneList();
-    private final ZoneList roleZones = new ZoneList();
-
-    public Grid(JSONObject gridConf, int attachLimit) {
-
-        Entity.setObservers(List.of(attachables, entities));
-        Block.setObservers(List.of(attachables, blocks));
-        Obstacle.setObservers(List.of(attachables, obstacles));
-        Marker.setObservers(List.of(markers));
-        Dispenser.setObservers(List.of(dispensers));
+    private final ZoneList goalZones;
+    private final ZoneList roleZones;
 
+    /**
+     * @param gridConf the grid configuration (its dimensions have to match those of the context)
+     * @param context the context of the simulation this grid belongs to
+     */
+    public Grid(JSONObject gridConf, int attachLimit, SimulationContext context) {
         this.attachLimit = attachLimit;
-        this.dimX = gridConf.getInt("width");
-        this.dimY = gridConf.getInt("height");
-        Position.setGridDimensions(dimX, dimY);
+        this.context = context;
+        this.torus = context.torus();
+        this.rng = context.rng(SimulationContext.Stream.WORLD);
+        this.goalZoneRng = context.rng(SimulationContext.Stream.GOAL_ZONES);
+        this.dimX = torus.width();
+        this.dimY = torus.height();
+
+        this.attachables = new AttachableHub(dimX, dimY);
+        this.entities = new EntityHub(context);
+        this.blocks = new BlockHub(context);
+        this.obstacles = new ObstacleHub(context);
+        this.markers = new MarkerHub(context);
+        this.dispensers = new DispenserHub(context);
+        this.goalZones = new ZoneList(torus);
+        this.roleZones = new ZoneList(torus);
+
+        this.entities.setObservers(List.of(attachables, entities, snapshots));
+        this.blocks.setObservers(List.of(attachables, blocks, snapshots));
+        this.obstacles.setObservers(List.of(attachables, obstacles, snapshots));
+        this.markers.setObservers(List.of(markers));
+        this.dispensers.setObservers(List.of(dispensers, snapshots));
 
         GridBuilder.fromBitmap(gridConf.optString("file"), this);
         GridBuilder.addObstaclesFromConfig(gridConf.getJSONArray("instructions"), this);
@@ -62,7 +83,7 @@ public class Grid {
         var sizeMax = sizeBounds.getInt(1);
         for (var i = 0; i < zoneCount; i++) {
             var centerPos = findRandomFreePosition();
-            var size = RNG.betweenClosed(sizeMin, sizeMax);
+            var size = rng.betweenClosed(sizeMin, sizeMax);
             this.addZone(type, centerPos, size);
         }
     }
@@ -86,6 +107,10 @@ public class Grid {
         return this.getZoneList(type).isInZone(pos);
     }
 
+    public boolean isInZone(ZoneType type, int x, int y) {
+        return this.getZoneList(type).isInZone(x, y);
+    }
+
     public boolean isNotInZone(ZoneType type, Position pos) {
         return !isInZone(type, pos);
     }
@@ -99,11 +124,19 @@ public class Grid {
      */
     public Integer getDistanceToNextZone(ZoneType type, Position pos) {
         return switch(type) {
-            case GOAL -> this.goalZones.getClosest(pos).position().distanceTo(pos);
-            case ROLE -> this.roleZones.getClosest(pos).position().distanceTo(pos);
+            case GOAL -> torus.distance(this.goalZones.getClosest(pos).position(), pos);
+            case ROLE -> torus.distance(this.roleZones.getClosest(pos).position(), pos);
         };
     }
 
+    public SimulationContext context() {
+        return context;
+    }
+
+    public Torus torus() {
+        return torus;
+    }
+
     public int getDimX() {
         return dimX;
     }
@@ -112,7 +145,7 @@ public class Grid {
         return dimY;
     }
 
-    private void moveMany(Set<Positionable> things, Map<Positionable, Position> newPositions) {
+    private void moveMany(Collection<? extends Positionable> things, Map<Positionable, Position> newPositions) {
         for (Positionable thing : things)
             thing.moveTo(newPositions.get(thing));
     }
@@ -122,17 +155,16 @@ public class Grid {
      * Only works if target is free and attachable has nothing attached.
      */
     public void moveWithoutAttachments(Attachable a, Position pos) {
-        if(isUnblocked(pos) && a.getAttachments().isEmpty())
+        if(isUnblocked(pos) && a.getGroupSize() == 1)
             a.moveTo(pos);
     }
 
     public boolean attach(Attachable a1, Attachable a2) {
         if (a1 == null || a2 == null) return false;
-        if (a1.getPosition().distanceTo(a2.getPosition()) != 1) return false;
+        if (torus.distance(a1.getPosition(), a2.getPosition()) != 1) return false;
 
-        var attachments = a1.collectAllAttachments(true);
-        attachments.addAll(a2.collectAllAttachments(true));
-        if (attachments.size() > attachLimit) return false;
+        var groupSize = a1.isConnectedTo(a2)? a1.getGroupSize() : a1.getGroupSize() + a2.getGroupSize();
+        if (groupSize > attachLimit) return false;
 
         a1.attach(a2);
         return true;
@@ -140,7 +172,7 @@ public class Grid {
 
     public boolean detachNeighbors(Attachable a1, Attachable a2) {
         if (a1 == null || a2 ==  null) return false;
-        if (a1.getPosition().distanceTo(a2.getPosition()) != 1) return false;
+        if (torus.distance(a1.getPosition(), a2.getPosition()) != 1) return false;
         if (!a1.getAttachments().contains(a2)) return false;
         a1.detach(a2);
         return true;
@@ -150,7 +182,7 @@ public class Grid {
      * @return whether the movement succeeded
      */
     public boolean moveWithAttached(Attachable anchor, String direction, int distance) {
-        var things = new HashSet<Positionable>(anchor.collectAllAttachments(true));
+        var things = anchor.getAttachmentGroup();
         var newPositions = canMove(things, direction, distance);
         if (newPositions == null) return false;
         this.moveMany(things, newPositions);
@@ -173,32 +205,34 @@ public class Grid {
      * @return a map from the element and all attachments to their new positions after rotation or null if anything is blocked
      */
     private Map<Positionable, Position> canRotate(Attachable anchor, boolean clockwise) {
-        var attachments = new HashSet<Positionable>(anchor.collectAllAttachments(true));
-        if(attachments.stream().anyMatch(a -> a != anchor && a instanceof Entity)) return null;
+        if (anchor.isAttachedToAnotherEntity()) return null;
+        var attachments = anchor.getAttachmentGroup();
         var newPositions = new HashMap<Positionable, Position>();
+        var excludedIDs = sortedIDs(attachments);
         for (var a : attachments) {
-            var rotatedPos = a.getPosition().rotated90(anchor.getPosition(), clockwise);
-            if(!isUnblocked(rotatedPos, attachments)) return null;
+            var rotatedPos = torus.rotated90(a.getPosition(), anchor.getPosition(), clockwise);
+            if(!isUnblocked(rotatedPos, excludedIDs)) return null;
             newPositions.put(a, rotatedPos);
         }
         return newPositions;
     }
 
-    private Map<Positionable, Position> canMove(Set<Positionable> things, String direction, int distance) {
+    private Map<Positionable, Position> canMove(Collection<? extends Positionable> things, String direction, int distance) {
         var newPositions = new HashMap<Positionable, Position>();
+        var excludedIDs = sortedIDs(things);
         for (var thing : things) {
             for (int i = 1; i <= distance; i++) {
-                var newPos = thing.getPosition().moved(direction, i);
-                if(!isUnblocked(newPos, things)) return null;
+                var newPos = torus.moved(thing.getPosition(), direction, i);
+                if(!isUnblocked(newPos, excludedIDs)) return null;
             }
-            newPositions.put(thing, thing.getPosition().moved(direction, distance));
+            newPositions.put(thing, torus.moved(thing.getPosition(), direction, distance));
         }
         return newPositions;
     }
 
     public Position findRandomFreePosition() {
-        int x = RNG.nextInt(this.dimX);
-        int y = RNG.nextInt(this.dimY);
+        int x = rng.nextInt(this.dimX);
+        int y = rng.nextInt(this.dimY);
         final int startX = x;
         final int startY = y;
         while (isBlocked(Position.of(x,y))) {
@@ -216,8 +250,8 @@ public class Grid {
     
     public ArrayList<Position> findRandomFreeClusterPosition(int clusterSize) {
         ArrayList<Position> cluster = new ArrayList<>();
-        int x = RNG.nextInt(dimX);
-        int y = RNG.nextInt(dimY);
+        int x = rng.nextInt(dimX);
+        int y = rng.nextInt(dimY);
         final int radius = (int) (Math.log(clusterSize)/Math.log(2)); 
         final int startX = x;
         final int startY = y;
@@ -233,7 +267,7 @@ public class Grid {
             }
         }
 
-        Position.of(x, y).spanArea(radius).forEach((p) -> {
+        torus.spanArea(Position.of(x, y), radius).forEach((p) -> {
             if(cluster.size() == clusterSize) return;
             if(isUnblocked(p)) cluster.add(p);
         });
@@ -250,21 +284,24 @@ public class Grid {
 
     private boolean hasEnoughFreeSpots(Position origin, int radius, int numberPositionNeeded){
         int freeSpots = 0;
-        for (Position p : origin.spanArea(radius)) 
+        for (Position p : torus.spanArea(origin, radius)) 
             if (isUnblocked(p))
                 freeSpots++;
         return freeSpots >= numberPositionNeeded;
     }
 
-    public Position findRandomFreePosition(Position center, int maxDistance) {
+    /**
+     * @param rng the generator to use (this is not part of creating the world)
+     */
+    public Position findRandomFreePosition(Position center, int maxDistance, RNG rng) {
         for (var i = 0; i < 50; i++) {
             int x = center.x;
             int y = center.y;
-            int dx = RNG.nextInt(maxDistance + 1);
-            int dy = RNG.nextInt(maxDistance + 1);
-            x += RNG.nextDouble() < .5? dx : -dx;
-            y += RNG.nextDouble() < .5? dy : -dy;
-            var target = Position.of(x, y).wrapped();
+            int dx = rng.nextInt(maxDistance + 1);
+            int dy = rng.nextInt(maxDistance + 1);
+            x += rng.nextDouble() < .5? dx : -dx;
+            y += rng.nextDouble() < .5? dy : -dy;
+            var target = torus.wrap(x, y);
             if (this.isUnblocked(target)) return target;
         }
         return null;
@@ -274,19 +311,30 @@ public class Grid {
      * @return true if there is no attachable (i.e. an entity, a block, an obstacle, ...) in the cell
      */
     public boolean isUnblocked(Position xy) {
-        return isUnblocked(xy, Collections.emptySet());
+        return !this.attachables.isTaken(xy);
     }
 
-    private boolean isUnblocked(Position xy, Set<Positionable> excludedObjects) {
-        return !this.attachables.isTaken(xy.wrapped(), excludedObjects);
+    /**
+     * @param excludedIDs IDs of attachables to ignore (sorted)
+     */
+    private boolean isUnblocked(Position xy, int[] excludedIDs) {
+        return !this.attachables.isTaken(xy, excludedIDs);
+    }
+
+    private static int[] sortedIDs(Collection<? extends Positionable> things) {
+        var ids = new int[things.size()];
+        var i = 0;
+        for (var thing : things) ids[i++] = thing.getID();
+        Arrays.sort(ids);
+        return ids;
     }
 
     public void deleteMarkers() {
         markers.clear();
     }
 
-    public Position getRandomPosition() {
-        return Position.of(RNG.nextInt(dimX), RNG.nextInt(dimY));
+    public Position getRandomPosition(RNG rng) {
+        return Position.of(rng.nextInt(dimX), rng.nextInt(dimY));
     }
 
     /**
@@ -295,7 +343,7 @@ public class Grid {
      * @param position the position at which to look for a goal zone
      */
     public void moveGoalZone(Position position) {
-        if (RNG.nextDouble() > this.moveProbability) return;
+        if (goalZoneRng.nextDouble() > this.moveProbability) return;
 
         var possibleZone = goalZones.findOneZoneAt(position);
         if (possibleZone.isEmpty()) return;
@@ -303,7 +351,7 @@ public class Grid {
         var zone = possibleZone.get();
         var newPos = zone.position();
         while (goalZones.contains(newPos)) {
-            newPos = getRandomPosition();
+            newPos = getRandomPosition(goalZoneRng);
         }
 
         this.removeZone(ZoneType.GOAL, zone.position());
@@ -334,6 +382,10 @@ public class Grid {
         return this.attachables;
     }
 
+    public SnapshotBuilder snapshots() {
+        return this.snapshots;
+    }
+
     public Attachable getUniqueAttachable(Position pos) {
         var things = attachables.lookup(pos);
         if (things.size() != 1) {
@@ -356,10 +408,17 @@ public class Grid {
      * @return everything that can be found at the given position (entities, blocks, obstacles, markers, dispensers)
      */
     public List<Positionable> getEverythingAt(Position pos) {
-        var result = new ArrayList<Positionable>(this.attachables.lookup(pos));
-        result.addAll(markers.lookup(pos));
-        if (dispensers.isTaken(pos))
-            result.add(dispensers.lookup(pos));
-        return result;
+        return this.collectEverythingAt(pos.x, pos.y, new ArrayList<>());
+    }
+
+    /**
+     * Adds everything at the given (possibly unwrapped) coordinates to the given collection.
+     * @return the collection
+     */
+    public <C extends Collection<Positionable>> C collectEverythingAt(int x, int y, C toThisCollection) {
+        this.attachables.addThingsAt(x, y, toThisCollection);
+        this.markers.addThingsAt(x, y, toThisCollection);
+        this.dispensers.addThingAt(x, y, toThisCollection);
+        return toThisCollection;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package massim.game.environment;
 
+import massim.game.SimulationContext;
 import massim.game.environment.zones.ZoneType;
 import massim.protocol.data.Position;
 import massim.util.Log;
@@ -43,6 +44,7 @@ public abstract class GridBuilder {
     public static void addObstaclesFromConfig(JSONArray instructions, Grid grid) {
         var dimX = grid.getDimX();
         var dimY = grid.getDimY();
+        var rng = grid.context().rng(SimulationContext.Stream.WORLD);
         boolean[][] obstacles = new boolean[dimX][dimY];
         for (var i = 0; i < instructions.length(); i++) {
             var instruction = instructions.optJSONArray(i);
@@ -54,13 +56,13 @@ public abstract class GridBuilder {
                 }
                 case "ragged-border" -> {
                     var width = instruction.getInt(1);
-                    createRaggedBorder(obstacles, width);
+                    createRaggedBorder(obstacles, width, rng);
                 }
                 case "cave" -> {
                     var chanceAlive = instruction.getDouble(1);
                     for (int x = 0; x < dimX; x++) {
                         for (int y = 0; y < dimY; y++) {
-                            if (RNG.nextDouble() < chanceAlive) obstacles[x][y] = true;
+                            if (rng.nextDouble() < chanceAlive) obstacles[x][y] = true;
                         }
                     }
                     var iterations = instruction.getInt(2);
@@ -99,8 +101,7 @@ public abstract class GridBuilder {
         var count = 0;
         for (var x = cx - 1; x <= cx + 1; x++) { for (var y = cy - 1; y <= cy + 1; y++) {
             if (x != cx || y != cy) {
-                var pos = Position.wrapped(x, y);
-                if (obstacles[pos.x][pos.y]) count++;
+                if (obstacles[Math.floorMod(x, obstacles.length)][Math.floorMod(y, obstacles[0].length)]) count++;
             }
         }}
         return count;
@@ -122,27 +123,27 @@ public abstract class GridBuilder {
         }
     }
 
-    private static void createRaggedBorder(boolean[][] obstacles, int width) {
+    private static void createRaggedBorder(boolean[][] obstacles, int width, RNG rng) {
         int dimX = obstacles.length;
         int dimY = obstacles[0].length;
         var currentWidth = width;
         for (var x = 0; x < dimX; x++) {
-            currentWidth = Math.max(currentWidth - 1 + RNG.nextInt(3), 1);
+            currentWidth = Math.max(currentWidth - 1 + rng.nextInt(3), 1);
             for (var i = 0; i < currentWidth; i++) obstacles[x][i] = true;
         }
         currentWidth = width;
         for (var x = 0; x < dimX; x++) {
-            currentWidth = Math.max(currentWidth - 1 + RNG.nextInt(3), 1);
+            currentWidth = Math.max(currentWidth - 1 + rng.nextInt(3), 1);
             for (var i = 0; i < currentWidth; i++) obstacles[x][dimY - (i + 1)] = true;
         }
         currentWidth = width;
         for (var y = 0; y < dimY; y++) {
-            currentWidth = Math.max(currentWidth - 1 + RNG.nextInt(3), 1);
+            currentWidth = Math.max(currentWidth - 1 + rng.nextInt(3), 1);
             for (var i = 0; i < currentWidth; i++) obstacles[i][y] = true;
         }
         currentWidth = width;
         for (var y = 0; y < dimY; y++) {
-            currentWidth = Math.max(currentWidth - 1 + RNG.nextInt(3), 1);
+            currentWidth = Math.max(currentWidth - 1 + rng.nextInt(3), 1);
             for (var i = 0; i < currentWidth; i++) obstacles[dimX - (i + 1)][y] = true;
         }
     }
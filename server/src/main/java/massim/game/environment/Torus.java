@@ -0,0 +1,97 @@
+package massim.game.environment;
+
+import massim.protocol.data.Position;
+
+import java.util.ArrayList;
+
+/**
+ * The geometry of a grid whose borders wrap around, i.e. leaving the grid on one side leads back in on the other side.
+ * All calculations with positions that depend on the grid's dimensions are done here.
+ * @param width the number of columns
+ * @param height the number of rows
+ */
+public record Torus(int width, int height) {
+
+    /**
+     * @return the position wrapped back into the bounds
+     */
+    public Position wrap(int x, int y) {
+        // handle negative values correctly
+        return Position.of(Math.floorMod(x, width), Math.floorMod(y, height));
+    }
+
+    public Position wrap(Position pos) {
+        return wrap(pos.x, pos.y);
+    }
+
+    /**
+     * @return the manhattan distance between both positions (taking the shorter way around the borders)
+     */
+    public int distance(Position p1, Position p2) {
+        int dx = Math.abs(p1.x - p2.x);
+        if (dx > width / 2.0) dx = width - dx;
+        int dy = Math.abs(p1.y - p2.y);
+        if (dy > height / 2.0) dy = height - dy;
+        return dx + dy;
+    }
+
+    /**
+     * @param direction one of n, s, e and w (the position is not moved for any other value)
+     */
+    public Position moved(Position pos, String direction, int distance) {
+        return switch (direction) {
+            case "n" -> wrap(pos.x, pos.y - distance);
+            case "s" -> wrap(pos.x, pos.y + distance);
+            case "w" -> wrap(pos.x - distance, pos.y);
+            case "e" -> wrap(pos.x + distance, pos.y);
+            default -> Position.of(pos.x, pos.y);
+        };
+    }
+
+    public Position translate(Position pos, int dx, int dy) {
+        return wrap(pos.x + dx, pos.y + dy);
+    }
+
+    public Position translate(Position pos, Position offset) {
+        return translate(pos, offset.x, offset.y);
+    }
+
+    /**
+     * @return the position relative to the origin (using the shorter way around the borders)
+     */
+    public Position relative(Position pos, Position origin) {
+        var dx = pos.x - origin.x;
+        if (dx < -(width / 2.0)) dx += width;
+        else if (dx > width / 2.0) dx -= width;
+        var dy = pos.y - origin.y;
+        if (dy < -(height / 2.0)) dy += height;
+        else if (dy > height / 2.0) dy -= height;
+        return Position.of(dx, dy);
+    }
+
+    /**
+     * @return list containing all positions belonging to the area around the center within the given radius.
+     */
+    public ArrayList<Position> spanArea(Position center, int radius) {
+        var area = new ArrayList<Position>();
+        for (var dx = -radius; dx <= radius; dx++) {
+            var cx = center.x + dx;
+            var dy = radius - Math.abs(dx);
+            for (var cy = center.y - dy; cy <= center.y + dy; cy++) {
+                area.add(wrap(cx, cy));
+            }
+        }
+        return area;
+    }
+
+    /**
+     * @return the position rotated 90 degrees around the center in the given direction
+     */
+    public Position rotated90(Position pos, Position center, boolean clockwise) {
+        // the rotation is calculated relative to the rotation center
+        var relative = relative(pos, center);
+        var dx = clockwise? -relative.y : relative.y;
+        var dy = clockwise? relative.x : -relative.x;
+        return wrap(center.x + dx, center.y + dy);
+    }
+}
@@ -1,19 +1,22 @@
 package massim.game.environment.positionable;
 
+import massim.game.environment.positionable.observer.PositionObserver;
 import massim.protocol.data.Position;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public abstract class Attachable extends Positionable {
 
     private final Set<Attachable> attachments = new HashSet<>();
+    AttachmentGroup group = new AttachmentGroup(this);
 
-    public Attachable(Position pos) {
-        super(pos);
+    public Attachable(int id, Position pos, List<PositionObserver> observers) {
+        super(id, pos, observers);
     }
 
     @Override
@@ -24,17 +27,28 @@ public abstract class Attachable extends Positionable {
     public void attach(Attachable other) {
         attachments.add(other);
         other.requestAttachment(this);
+        AttachmentGroup.merge(this, other);
+        this.notifyChange();
+        other.notifyChange();
     }
 
     public void detach(Attachable other) {
-        attachments.remove(other);
+        var removed = attachments.remove(other);
         other.requestDetachment(this);
+        if (!removed) return;
+        AttachmentGroup.split(this, other);
+        this.notifyChange();
+        other.notifyChange();
     }
 
     public Set<Attachable> getAttachments() {
         return new HashSet<>(attachments);
     }
 
+    Set<Attachable> getAttachmentsView() {
+        return attachments;
+    }
+
     public void detachAll() {
         new ArrayList<>(attachments).forEach(this::detach);
     }
@@ -51,32 +65,42 @@ public abstract class Attachable extends Positionable {
      * @return a set of all attachments and attachments attached to these attachments (and so on)
      */
     public Set<Attachable> collectAllAttachments(boolean selfIncluded) {
-        var attachables = new HashSet<Attachable>();
-        attachables.add(this);
-        Set<Attachable> newAttachables = new HashSet<>(attachables);
-        while (!newAttachables.isEmpty()) {
-            var tempAttachables = new HashSet<Attachable>();
-            for (Attachable a : newAttachables) {
-                for (Attachable a2 : a.getAttachments()) {
-                    if (attachables.add(a2)) tempAttachables.add(a2);
-                }
-            }
-            newAttachables = tempAttachables;
-        }
+        var attachables = new HashSet<>(group.getMembers());
         if(!selfIncluded) attachables.remove(this);
         return attachables;
     }
 
+    /**
+     * @return a read-only view of this thing and everything (directly or indirectly) attached to it
+     */
+    public Set<Attachable> getAttachmentGroup() {
+        return group.getMembers();
+    }
+
+    /**
+     * @return the number of things in this thing's attachment group (including itself)
+     */
+    public int getGroupSize() {
+        return group.size();
+    }
+
+    /**
+     * @return whether the other thing is (directly or indirectly) attached to this one (or is this one)
+     */
+    public boolean isConnectedTo(Attachable other) {
+        return other != null && this.group == other.group;
+    }
+
     public boolean  isAttachedToAnotherEntity() {
-        return this.collectAllAttachments(false).stream().anyMatch(a -> a instanceof Entity);
+        return this.group.countEntities() > (this instanceof Entity? 1 : 0);
     }
 
     @Override
     public JSONObject toJSON() {
         var result = super.toJSON();
         var positions = new JSONArray();
-        this.collectAllAttachments(false).forEach(a ->
-                positions.put(a.getPosition().toJSON()));
+        for (var a : this.group.getMembers())
+            if (a != this) positions.put(a.getPosition().toJSON());
         if (!positions.isEmpty())
             result.put("attached", positions);
         return result;
@@ -3,6 +3,11 @@ package massim.game.environment.positionable;
 import massim.game.environment.positionable.observer.MultiHub;
 
 public class AttachableHub extends MultiHub<Attachable> {
+
+    public AttachableHub(int dimX, int dimY) {
+        super(dimX, dimY);
+    }
+
     @Override
     public void notifyCreate(Positionable p) {
         super.notifyCreate(p);
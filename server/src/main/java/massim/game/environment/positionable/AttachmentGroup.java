@@ -0,0 +1,84 @@
+package massim.game.environment.positionable;
+
+import java.util.*;
+
+/**
+ * A connected component of attached things. All members reference the same group object, which is updated
+ * whenever attachments are added or removed, so that membership and group size can be looked up directly.
+ */
+class AttachmentGroup {
+
+    private final Set<Attachable> members = new HashSet<>();
+    private final Set<Attachable> readOnlyMembers = Collections.unmodifiableSet(members);
+    private int entities = 0;
+
+    /**
+     * Creates a new group containing only the given thing.
+     */
+    AttachmentGroup(Attachable first) {
+        this.add(first);
+    }
+
+    private AttachmentGroup() {}
+
+    private void add(Attachable a) {
+        this.members.add(a);
+        if (a instanceof Entity) this.entities++;
+        a.group = this;
+    }
+
+    /**
+     * @return a read-only view of all members
+     */
+    Set<Attachable> getMembers() {
+        return readOnlyMembers;
+    }
+
+    int size() {
+        return members.size();
+    }
+
+    /**
+     * @return the number of entities in this group
+     */
+    int countEntities() {
+        return entities;
+    }
+
+    /**
+     * Joins the groups of two things that have just been attached.
+     */
+    static void merge(Attachable a1, Attachable a2) {
+        var g1 = a1.group;
+        var g2 = a2.group;
+        if (g1 == g2) return;
+        var larger = g1.size() >= g2.size()? g1 : g2;
+        var smaller = larger == g1? g2 : g1;
+        for (var a : smaller.members) larger.add(a);
+    }
+
+    /**
+     * Splits the group of two things that have just been detached, if they are no longer connected.
+     * The part containing the first thing is moved to a new group.
+     */
+    static void split(Attachable a1, Attachable a2) {
+        var group = a1.group;
+        if (group != a2.group) return;
+        var reached = new HashSet<Attachable>();
+        var open = new ArrayDeque<Attachable>();
+        reached.add(a1);
+        open.add(a1);
+        while (!open.isEmpty()) {
+            for (var next : open.poll().getAttachmentsView()) {
+                if (next == a2) return; // still connected
+                if (reached.add(next)) open.add(next);
+            }
+        }
+        var newGroup = new AttachmentGroup();
+        for (var a : reached) {
+            group.members.remove(a);
+            if (a instanceof Entity) group.entities--;
+            newGroup.add(a);
+        }
+    }
+}
@@ -5,22 +5,15 @@ import massim.protocol.data.Position;
 import massim.protocol.data.Thing;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Block extends Attachable {
 
-    private static List<PositionObserver> observers = new ArrayList<>();
-
-    public static void setObservers(List<PositionObserver> observers) {
-        Block.observers = observers;
-    }
-
 
     private final String blockType;
 
-    Block(Position xy, String blockType) {
-        super(xy);
+    Block(int id, Position xy, String blockType, List<PositionObserver> observers) {
+        super(id, xy, observers);
         this.blockType = blockType;
     }
 
@@ -29,16 +22,10 @@ public class Block extends Attachable {
     }
 
     @Override
-    public Thing toPercept(Position entityPosition) {
-        Position relativePosition = getPosition().relativeTo(entityPosition);
+    public Thing toPercept(Position relativePosition) {
         return new Thing(relativePosition.x, relativePosition.y, Thing.TYPE_BLOCK, blockType);
     }
 
-    @Override
-    public List<PositionObserver> getObservers() {
-        return Block.observers;
-    }
-
     @Override
     public JSONObject toJSON() {
         return super.toJSON().put("type", this.blockType);
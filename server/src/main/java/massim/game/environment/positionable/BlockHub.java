@@ -1,5 +1,6 @@
 package massim.game.environment.positionable;
 
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.observer.Hub;
 import massim.protocol.data.Position;
 
@@ -10,10 +11,17 @@ public class BlockHub extends Hub<Block> {
 
     private final Set<String> types = new TreeSet<>();
 
+    private final SimulationContext context;
+
+    public BlockHub(SimulationContext context) {
+        super(context.torus().width(), context.torus().height());
+        this.context = context;
+    }
+
     public Block create(Position pos, String blockType) {
         if(!this.typeExists(blockType)) return null;
         if (isTaken(pos)) return null;
-        var block = new Block(pos, blockType);
+        var block = new Block(context.nextId(), pos, blockType, getObservers());
         block.init();
         return this.add(block);
     }
@@ -5,22 +5,15 @@ import massim.protocol.data.Position;
 import massim.protocol.data.Thing;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Dispenser extends Positionable {
 
-    private static List<PositionObserver> observers = new ArrayList<>();
-
-    public static void setObservers(List<PositionObserver> observers) {
-        Dispenser.observers = observers;
-    }
-
 
     private final String blockType;
 
-    Dispenser(Position position, String blockType) {
-        super(position);
+    Dispenser(int id, Position position, String blockType, List<PositionObserver> observers) {
+        super(id, position, observers);
         this.blockType = blockType;
     }
 
@@ -29,8 +22,7 @@ public class Dispenser extends Positionable {
     }
 
     @Override
-    public Thing toPercept(Position entityPosition) {
-        Position local = getPosition().relativeTo(entityPosition);
+    public Thing toPercept(Position local) {
         return new Thing(local.x, local.y, Thing.TYPE_DISPENSER, blockType);
     }
 
@@ -42,11 +34,6 @@ public class Dispenser extends Positionable {
     @Override
     protected void onDestroyed() {}
 
-    @Override
-    public List<PositionObserver> getObservers() {
-        return Dispenser.observers;
-    }
-
     @Override
     public JSONObject toJSON() {
         return super.toJSON().put("type", this.blockType);
@@ -1,13 +1,21 @@
 package massim.game.environment.positionable;
 
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.observer.Hub;
 import massim.protocol.data.Position;
 
 public class DispenserHub extends Hub<Dispenser>  {
 
+    private final SimulationContext context;
+
+    public DispenserHub(SimulationContext context) {
+        super(context.torus().width(), context.torus().height());
+        this.context = context;
+    }
+
     public Dispenser create(Position pos, String blockType) {
         if (this.isTaken(pos)) return null;
-        var d = new Dispenser(pos, blockType);
+        var d = new Dispenser(context.nextId(), pos, blockType, getObservers());
         d.init();
         return this.add(d);
     }
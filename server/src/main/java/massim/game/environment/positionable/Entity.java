@@ -9,7 +9,6 @@ import massim.protocol.messages.scenario.ActionResults;
 import massim.protocol.messages.scenario.Actions;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -22,18 +21,13 @@ import static massim.protocol.messages.scenario.Actions.ADOPT;
  */
 public class Entity extends Attachable {
 
-    public static int maxEnergy = 0;
-    public static int clearEnergyCost = 0;
-    public static int deactivatedDuration = 0;
-    public static int stepRecharge = 0;
-    public static int refreshEnergy = 0;
-
-    private static List<PositionObserver> observers = new ArrayList<>();
-
-    public static void setObservers(List<PositionObserver> observers) {
-        Entity.observers = observers;
-    }
+    /**
+     * The energy parameters shared by all entities of a simulation.
+     */
+    public record Parameters(int maxEnergy, int clearEnergyCost, int deactivatedDuration, int stepRecharge,
+                             int refreshEnergy) {}
 
+    private final Parameters parameters;
     private final String agentName;
     private final String teamName;
     private Role role;
@@ -45,17 +39,18 @@ public class Entity extends Attachable {
     private int energy;
     private int deactivatedSteps = 0;
 
-    Entity(Position pos, String agentName, String teamName, Role role) {
-        super(pos);
+    Entity(int id, Position pos, String agentName, String teamName, Role role, Parameters parameters,
+           List<PositionObserver> observers) {
+        super(id, pos, observers);
         this.agentName = agentName;
         this.teamName = teamName;
-        this.energy = maxEnergy;
+        this.parameters = parameters;
+        this.energy = parameters.maxEnergy();
         this.role = role;
     }
 
     @Override
-    public Thing toPercept(Position origin) {
-        Position localPosition = getPosition().relativeTo(origin);
+    public Thing toPercept(Position localPosition) {
         return new Thing(localPosition.x, localPosition.y, Thing.TYPE_ENTITY, teamName);
     }
 
@@ -64,9 +59,9 @@ public class Entity extends Attachable {
      */
     public void preStep() {
         if (deactivatedSteps > 0 && --deactivatedSteps == 0)
-            this.energy = Entity.refreshEnergy;
+            this.energy = parameters.refreshEnergy();
         else
-            energy = Math.min(this.energy + Entity.stepRecharge, Entity.maxEnergy);
+            energy = Math.min(this.energy + parameters.stepRecharge(), parameters.maxEnergy());
     }
 
     public String getTeamName() {
@@ -114,11 +109,11 @@ public class Entity extends Attachable {
      * @return the entity's speed considering current attachments
      */
     public int getCurrentSpeed() {
-        return this.role.maxSpeed(collectAllAttachments(false).size());
+        return this.role.maxSpeed(getGroupSize() - 1);
     }
 
     public void deactivate() {
-        deactivatedSteps = Entity.deactivatedDuration + 1; //entity repaired in preStep
+        deactivatedSteps = parameters.deactivatedDuration() + 1; //entity repaired in preStep
         detachAll();
     }
 
@@ -131,7 +126,7 @@ public class Entity extends Attachable {
     }
 
     public void consumeClearEnergy() {
-        this.decreaseEnergy(Entity.clearEnergyCost);
+        this.decreaseEnergy(parameters.clearEnergyCost());
     }
 
     public void decreaseEnergy(int amount) {
@@ -155,11 +150,6 @@ public class Entity extends Attachable {
         return action.equals(Actions.NO_ACTION) || this.role.actions().contains(action);
     }
 
-    @Override
-    public List<PositionObserver> getObservers() {
-        return Entity.observers;
-    }
-
     public JSONObject toJSON() {
         return super.toJSON()
                 .put("name", this.agentName)
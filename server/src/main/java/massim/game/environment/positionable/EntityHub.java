@@ -1,5 +1,6 @@
 package massim.game.environment.positionable;
 
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.observer.MultiHub;
 import massim.protocol.data.Position;
 import massim.protocol.data.Role;
@@ -16,8 +17,15 @@ public class EntityHub extends MultiHub<Entity> {
     private final Map<String, Role> roles = new HashMap<>();
     private final Map<String, Entity> nameToEntity = new HashMap<>();
 
+    private final SimulationContext context;
+
+    public EntityHub(SimulationContext context) {
+        super(context.torus().width(), context.torus().height());
+        this.context = context;
+    }
+
     public Entity create(Position pos, String agentName, String teamName, Role role) {
-        var entity = new Entity(pos, agentName, teamName, role);
+        var entity = new Entity(context.nextId(), pos, agentName, teamName, role, context.entityParameters(), getObservers());
         entity.init();
         this.nameToEntity.put(agentName, entity);
         return this.add(entity);
@@ -29,6 +37,10 @@ public class EntityHub extends MultiHub<Entity> {
         if (positionable instanceof Entity entity) nameToEntity.remove(entity.getAgentName());
     }
 
+    public Entity.Parameters getParameters() {
+        return context.entityParameters();
+    }
+
     public Entity getByName(String name) {
         return this.nameToEntity.get(name);
     }
@@ -46,9 +58,9 @@ public class EntityHub extends MultiHub<Entity> {
         return new ArrayList<>(this.roles.values());
     }
 
-    public Role getRandomRole() {
+    public Role getRandomRole(RNG rng) {
         var roles = getRoles();
-        int index = RNG.nextInt(roles.size());
+        int index = rng.nextInt(roles.size());
         return roles.get(index);
     }
 }
\ No newline at end of file
@@ -5,7 +5,6 @@ import massim.game.environment.positionable.observer.PositionObserver;
 import massim.protocol.data.Position;
 import massim.protocol.data.Thing;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,17 +12,11 @@ import java.util.List;
  */
 public class Marker extends Positionable {
 
-    private static List<PositionObserver> observers = new ArrayList<>();
-
-    public static void setObservers(List<PositionObserver> observers) {
-        Marker.observers = observers;
-    }
-
 
     private final Type type;
 
-    Marker(Position pos, Type type) {
-        super(pos);
+    Marker(int id, Position pos, Type type, List<PositionObserver> observers) {
+        super(id, pos, observers);
         this.type = type;
     }
 
@@ -32,8 +25,7 @@ public class Marker extends Positionable {
     }
 
     @Override
-    public Thing toPercept(Position relativeTo) {
-        var pos = getPosition().relativeTo(relativeTo);
+    public Thing toPercept(Position pos) {
         return new Thing(pos.x, pos.y, Thing.TYPE_MARKER, type.name);
     }
 
@@ -56,9 +48,4 @@ public class Marker extends Positionable {
             this.name = name;
         }
     }
-
-    @Override
-    public List<PositionObserver> getObservers() {
-        return Marker.observers;
-    }
 }
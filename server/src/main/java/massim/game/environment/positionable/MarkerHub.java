@@ -1,12 +1,20 @@
 package massim.game.environment.positionable;
 
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.observer.MultiHub;
 import massim.protocol.data.Position;
 
 public class MarkerHub extends MultiHub<Marker> {
 
+    private final SimulationContext context;
+
+    public MarkerHub(SimulationContext context) {
+        super(context.torus().width(), context.torus().height());
+        this.context = context;
+    }
+
     public Marker create(Position pos, Marker.Type type) {
-        var marker = new Marker(pos, type);
+        var marker = new Marker(context.nextId(), pos, type, getObservers());
         marker.init();
         return this.add(marker);
     }
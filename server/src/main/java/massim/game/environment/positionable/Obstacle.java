@@ -4,30 +4,17 @@ import massim.game.environment.positionable.observer.PositionObserver;
 import massim.protocol.data.Position;
 import massim.protocol.data.Thing;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Obstacle extends Attachable{
 
-    private static List<PositionObserver> observers = new ArrayList<>();
 
-    public static void setObservers(List<PositionObserver> observers) {
-        Obstacle.observers = observers;
-    }
-
-
-    Obstacle(Position position) {
-        super(position);
+    Obstacle(int id, Position position, List<PositionObserver> observers) {
+        super(id, position, observers);
     }
 
     @Override
-    public Thing toPercept(Position entityPosition) {
-        var relativePosition = getPosition().relativeTo(entityPosition);
+    public Thing toPercept(Position relativePosition) {
         return new Thing(relativePosition.x, relativePosition.y, Thing.TYPE_OBSTACLE, "");
     }
-
-    @Override
-    public List<PositionObserver> getObservers() {
-        return Obstacle.observers;
-    }
 }
\ No newline at end of file
@@ -1,13 +1,21 @@
 package massim.game.environment.positionable;
 
+import massim.game.SimulationContext;
 import massim.game.environment.positionable.observer.Hub;
 import massim.protocol.data.Position;
 
 public class ObstacleHub extends Hub<Obstacle>  {
 
+    private final SimulationContext context;
+
+    public ObstacleHub(SimulationContext context) {
+        super(context.torus().width(), context.torus().height());
+        this.context = context;
+    }
+
     public Obstacle create(Position pos) {
         if (this.isTaken(pos)) return null;
-        var obstacle = new Obstacle(pos);
+        var obstacle = new Obstacle(context.nextId(), pos, getObservers());
         obstacle.init();
         return this.add(obstacle);
     }
@@ -10,9 +10,16 @@ import java.util.List;
 public abstract class Positionable extends GameObject {
 
     private Position position;
+    private final List<PositionObserver> observers;
 
-    public Positionable(Position position) {
+    /**
+     * @param id the ID of the new thing (unique within the simulation)
+     * @param observers the observers to notify of this thing's changes (usually the same list for all things of a type)
+     */
+    public Positionable(int id, Position position, List<PositionObserver> observers) {
+        super(id);
         this.position = position;
+        this.observers = observers;
     }
 
     public void init() {
@@ -39,10 +46,17 @@ public abstract class Positionable extends GameObject {
 
     protected abstract void onDestroyed();
 
+    protected void notifyChange() {
+        for (PositionObserver observer : this.getObservers())
+            observer.notifyChange(this);
+    }
+
     /**
      * @return List of all observers to be notified of changes. Ideally the same list for each object.
      */
-    public abstract List<PositionObserver> getObservers();
+    public List<PositionObserver> getObservers() {
+        return this.observers;
+    }
 
     public JSONObject toJSON() {
         return new JSONObject()
@@ -0,0 +1,219 @@
+package massim.game.environment.positionable.observer;
+
+import massim.game.environment.positionable.Positionable;
+import massim.protocol.data.Position;
+
+import java.util.*;
+
+/**
+ * Dense index of items on the (torus-shaped) grid. Each cell is addressed by y * dimX + x.
+ * The first item of a cell is referenced from a flat array over all cells. Further items in the same cell
+ * are chained through a parallel array of slots, so that multi-occupancy requires no additional objects.
+ * Queries neither allocate nor hash.
+ */
+public class CellIndex<T extends Positionable> {
+
+    private static final int NONE = -1;
+
+    private final int dimX;
+    private final int dimY;
+
+    /**
+     * First slot of each cell (or {@link #NONE}).
+     */
+    private final int[] head;
+
+    // slots
+    private Object[] items = new Object[64];
+    private int[] ids = new int[64];
+    private int[] next = new int[64];
+    private int freeSlot = NONE;
+    private int usedSlots = 0;
+
+    public CellIndex(int dimX, int dimY) {
+        this.dimX = dimX;
+        this.dimY = dimY;
+        this.head = new int[dimX * dimY];
+        Arrays.fill(head, NONE);
+    }
+
+    private int cell(Position pos) {
+        return cell(pos.x, pos.y);
+    }
+
+    private int cell(int x, int y) {
+        return Math.floorMod(y, dimY) * dimX + Math.floorMod(x, dimX);
+    }
+
+    /**
+     * Adds an item to a cell (after all items already in the cell).
+     */
+    public void add(Position pos, T item) {
+        var slot = allocateSlot();
+        items[slot] = item;
+        ids[slot] = item.getID();
+        next[slot] = NONE;
+        var cell = cell(pos);
+        if (head[cell] == NONE) {
+            head[cell] = slot;
+            return;
+        }
+        var last = head[cell];
+        while (next[last] != NONE) last = next[last];
+        next[last] = slot;
+    }
+
+    /**
+     * Removes an item from a cell.
+     * @return true iff the item was found in the cell
+     */
+    public boolean remove(Position pos, T item) {
+        var cell = cell(pos);
+        var previous = NONE;
+        for (var slot = head[cell]; slot != NONE; slot = next[slot]) {
+            if (items[slot] != item) {
+                previous = slot;
+                continue;
+            }
+            if (previous == NONE) head[cell] = next[slot];
+            else next[previous] = next[slot];
+            releaseSlot(slot);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the item that was added first to the cell or null if the cell is empty
+     */
+    public T first(Position pos) {
+        return first(pos.x, pos.y);
+    }
+
+    /**
+     * Same as {@link #first(Position)} without requiring a position object.
+     */
+    @SuppressWarnings("unchecked")
+    public T first(int x, int y) {
+        var slot = head[cell(x, y)];
+        return slot == NONE? null : (T) items[slot];
+    }
+
+    public boolean isEmpty(Position pos) {
+        return head[cell(pos)] == NONE;
+    }
+
+    /**
+     * @return the number of items in the cell
+     */
+    public int count(Position pos) {
+        var count = 0;
+        for (var slot = head[cell(pos)]; slot != NONE; slot = next[slot]) count++;
+        return count;
+    }
+
+    /**
+     * @param excludedIDs IDs of items to ignore, sorted in ascending order
+     * @return true iff the cell contains any item whose ID is not excluded
+     */
+    public boolean containsOtherThan(Position pos, int[] excludedIDs) {
+        for (var slot = head[cell(pos)]; slot != NONE; slot = next[slot])
+            if (Arrays.binarySearch(excludedIDs, ids[slot]) < 0) return true;
+        return false;
+    }
+
+    /**
+     * Creates a read-only view of a cell's items without copying them.
+     * The view reflects later changes, so the cell must not be changed while iterating over the view.
+     * @return the items of the cell (in the order they were added)
+     */
+    public Set<T> view(Position pos) {
+        var cell = cell(pos);
+        return head[cell] == NONE? Collections.emptySet() : new CellView(cell);
+    }
+
+    /**
+     * Adds all items of a cell to the given collection.
+     * @return the collection
+     */
+    public <C extends Collection<? super T>> C collect(Position pos, C toThisCollection) {
+        return collect(pos.x, pos.y, toThisCollection);
+    }
+
+    /**
+     * Same as {@link #collect(Position, Collection)} without requiring a position object.
+     */
+    @SuppressWarnings("unchecked")
+    public <C extends Collection<? super T>> C collect(int x, int y, C toThisCollection) {
+        for (var slot = head[cell(x, y)]; slot != NONE; slot = next[slot])
+            toThisCollection.add((T) items[slot]);
+        return toThisCollection;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NONE) {
+            var slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (usedSlots == items.length) {
+            items = Arrays.copyOf(items, usedSlots * 2);
+            ids = Arrays.copyOf(ids, usedSlots * 2);
+            next = Arrays.copyOf(next, usedSlots * 2);
+        }
+        return usedSlots++;
+    }
+
+    private void releaseSlot(int slot) {
+        items[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    /**
+     * The items of one cell as a read-only set.
+     */
+    private class CellView extends AbstractSet<T> {
+
+        private final int cell;
+
+        private CellView(int cell) {
+            this.cell = cell;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<>() {
+                private int slot = head[cell];
+
+                @Override
+                public boolean hasNext() {
+                    return slot != NONE;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (slot == NONE) throw new NoSuchElementException();
+                    var item = (T) items[slot];
+                    slot = next[slot];
+                    return item;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            var count = 0;
+            for (var slot = head[cell]; slot != NONE; slot = next[slot]) count++;
+            return count;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (var slot = head[cell]; slot != NONE; slot = next[slot])
+                if (items[slot] == o) return true;
+            return false;
+        }
+    }
+}
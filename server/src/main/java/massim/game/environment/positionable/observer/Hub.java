@@ -11,26 +11,49 @@ import java.util.*;
  */
 public class Hub<T extends Positionable> implements PositionObserver {
 
-    private final Map<Position, T> positionToItem = new HashMap<>();
-    private final Map<Integer, T> idToItem = new HashMap<>();
+    private final CellIndex<T> cells;
+    private final Map<Integer, T> idToItem = new LinkedHashMap<>(); // keeps creation order for reproducible runs
+    private List<PositionObserver> observers = List.of();
+
+    /**
+     * @param dimX the width of the grid
+     * @param dimY the height of the grid
+     */
+    public Hub(int dimX, int dimY) {
+        this.cells = new CellIndex<>(dimX, dimY);
+    }
+
+    /**
+     * Sets the observers of all things created by this hub afterwards.
+     */
+    public void setObservers(List<PositionObserver> observers) {
+        this.observers = observers;
+    }
+
+    protected List<PositionObserver> getObservers() {
+        return observers;
+    }
 
     public T lookup(Position pos) {
-        return positionToItem.get(pos);
+        return cells.first(pos);
     }
 
+    /**
+     * @return a new set of all items in order of their creation
+     */
     public Set<T> getAll() {
-        return new HashSet<>(positionToItem.values());
+        return new LinkedHashSet<>(idToItem.values());
     }
 
     protected T add(T item) {
         this.idToItem.put(item.getID(), item);
-        this.positionToItem.put(item.getPosition(), item);
+        this.cells.add(item.getPosition(), item);
         return item;
     }
 
     @Override
     public void notifyCreate(Positionable p) {
-        var previous = this.positionToItem.get(p.getPosition());
+        var previous = this.cells.first(p.getPosition());
         if (previous != null && previous != p)
             Log.log(Log.Level.ERROR, "Created item in the same position as another: " + p.toJSON()
                     + " blocked by " + previous.toJSON());
@@ -38,28 +61,27 @@ public class Hub<T extends Positionable> implements PositionObserver {
 
     @Override
     public void notifyDestroy(Positionable positionable) {
-        this.removeItemAtPosition(positionable, positionable.getPosition());
+        var item = idToItem.remove(positionable.getID());
+        if (item != null) this.cells.remove(positionable.getPosition(), item);
     }
 
     @Override
     public void notifyMove(Positionable p, Position oldPosition, Position newPosition) {
-        this.removeItemAtPosition(p, oldPosition);
-        this.positionToItem.put(newPosition, idToItem.get(p.getID()));
-    }
-
-    private void removeItemAtPosition(Positionable p, Position pos) {
-        T item = idToItem.get(p.getID());
-        this.positionToItem.remove(pos, item);
+        var item = idToItem.get(p.getID());
+        if (item == null) return;
+        this.cells.remove(oldPosition, item);
+        this.cells.add(newPosition, item);
     }
 
     public boolean isTaken(Position pos) {
-        return this.positionToItem.get(pos) != null;
+        return !this.cells.isEmpty(pos);
     }
 
-    public boolean isTaken(Position pos, Set<Positionable> excludedObjects) {
-        var thing = positionToItem.get(pos);
-        if (thing == null) return false;
-        return !excludedObjects.contains(thing);
+    /**
+     * @param excludedIDs IDs of things to ignore (sorted in ascending order)
+     */
+    public boolean isTaken(Position pos, int[] excludedIDs) {
+        return this.cells.containsOtherThan(pos, excludedIDs);
     }
 
     public Collection<Positionable> addThingAt(Position position, Collection<Positionable> toThisCollection) {
@@ -68,4 +90,11 @@ public class Hub<T extends Positionable> implements PositionObserver {
             toThisCollection.add(thing);
         return toThisCollection;
     }
+
+    public Collection<Positionable> addThingAt(int x, int y, Collection<Positionable> toThisCollection) {
+        var thing = this.cells.first(x, y);
+        if (thing != null)
+            toThisCollection.add(thing);
+        return toThisCollection;
+    }
 }
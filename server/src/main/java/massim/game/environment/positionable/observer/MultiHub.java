@@ -4,27 +4,52 @@ import massim.game.environment.positionable.Positionable;
 import massim.protocol.data.Position;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Tracks positions of Positionables. Each position can have multiple positionables.
  */
 public abstract class MultiHub<T extends Positionable> implements PositionObserver {
 
-    private final Map<Position, Set<T>> positionToItems = new HashMap<>();
-    private final Map<Integer, T> idToItem = new HashMap<>();
+    private final CellIndex<T> cells;
+    private final Map<Integer, T> idToItem = new LinkedHashMap<>(); // keeps creation order for reproducible runs
+    private List<PositionObserver> observers = List.of();
 
+    /**
+     * @param dimX the width of the grid
+     * @param dimY the height of the grid
+     */
+    protected MultiHub(int dimX, int dimY) {
+        this.cells = new CellIndex<>(dimX, dimY);
+    }
+
+    /**
+     * Sets the observers of all things created by this hub afterwards.
+     */
+    public void setObservers(List<PositionObserver> observers) {
+        this.observers = observers;
+    }
+
+    protected List<PositionObserver> getObservers() {
+        return observers;
+    }
+
+    /**
+     * @return a read-only view of the things at the given position (must not be used while things are moved there)
+     */
     public Set<T> lookup(Position pos) {
-        return new HashSet<>(this.getEntry(pos));
+        return this.cells.view(pos);
     }
 
+    /**
+     * @return a new set of all items in order of their creation
+     */
     public Set<T> getAll() {
-        return new HashSet<>(idToItem.values());
+        return new LinkedHashSet<>(idToItem.values());
     }
 
     protected T add(T item) {
         this.idToItem.put(item.getID(), item);
-        this.getEntry(item.getPosition()).add(item);
+        this.cells.add(item.getPosition(), item);
         return item;
     }
 
@@ -33,35 +58,36 @@ public abstract class MultiHub<T extends Positionable> implements PositionObserv
 
     @Override
     public void notifyDestroy(Positionable positionable) {
-        var thing = idToItem.get(positionable.getID());
+        var thing = idToItem.remove(positionable.getID());
         if (thing != null)
-            this.getEntry(thing.getPosition()).remove(thing);
-        idToItem.remove(positionable.getID());
+            this.cells.remove(thing.getPosition(), thing);
     }
 
     @Override
     public void notifyMove(Positionable p, Position oldPosition, Position newPosition) {
         var item = this.idToItem.get(p.getID());
         if (item == null) return;
-        this.getEntry(oldPosition).remove(item);
-        this.getEntry(newPosition).add(item);
+        this.cells.remove(oldPosition, item);
+        this.cells.add(newPosition, item);
     }
 
     public boolean isTaken(Position pos) {
-        return this.getEntry(pos).size() > 0;
+        return !this.cells.isEmpty(pos);
     }
 
-    public boolean isTaken(Position pos, Set<Positionable> excludedObjects) {
-        var things = this.lookup(pos);
-        things.removeAll(excludedObjects.stream()
-                                        .map(o -> this.idToItem.get(o.getID()))
-                                        .collect(Collectors.toSet()));
-        return things.size() > 0;
+    /**
+     * @param excludedIDs IDs of things to ignore (sorted in ascending order)
+     */
+    public boolean isTaken(Position pos, int[] excludedIDs) {
+        return this.cells.containsOtherThan(pos, excludedIDs);
     }
 
     public Collection<Positionable> addThingsAt(Position position, Collection<Positionable> toThisCollection) {
-        toThisCollection.addAll(this.getEntry(position));
-        return toThisCollection;
+        return this.cells.collect(position, toThisCollection);
+    }
+
+    public Collection<Positionable> addThingsAt(int x, int y, Collection<Positionable> toThisCollection) {
+        return this.cells.collect(x, y, toThisCollection);
     }
 
     /**
@@ -71,8 +97,4 @@ public abstract class MultiHub<T extends Positionable> implements PositionObserv
         for (T t : this.getAll())
             t.destroy();
     }
-
-    public Set<T> getEntry(Position pos) {
-        return this.positionToItems.computeIfAbsent(pos, key -> new HashSet<>());
-    }
-}
\ No newline at end of file
+}
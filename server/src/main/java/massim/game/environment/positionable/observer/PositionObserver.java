@@ -9,4 +9,9 @@ public interface PositionObserver {
     void notifyDestroy(Positionable positionable);
 
     void notifyMove(Positionable positionable, Position oldPosition, Position newPosition);
+
+    /**
+     * Called if something other than the position changed (e.g. attachments), which only concerns some observers.
+     */
+    default void notifyChange(Positionable positionable) {}
 }
\ No newline at end of file
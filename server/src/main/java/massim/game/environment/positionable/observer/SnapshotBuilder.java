@@ -0,0 +1,101 @@
+package massim.game.environment.positionable.observer;
+
+import massim.game.environment.positionable.*;
+import massim.protocol.data.Position;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Keeps the JSON representation of all blocks, obstacles and dispensers up to date for snapshots.
+ * Things are only serialized again if they were created, moved or changed (or something attached to them)
+ * since the last {@link #update()}. Unchanged things keep the same JSON object from one snapshot to the next,
+ * so that consumers can recognize them without comparing their contents. The JSON objects are never modified
+ * after they have been created.
+ * Entities are only tracked, since their state changes in almost every step anyway.
+ */
+public class SnapshotBuilder implements PositionObserver {
+
+    private final Map<Integer, Entity> entities = new LinkedHashMap<>();
+    private final Collection<Entity> readOnlyEntities = Collections.unmodifiableCollection(entities.values());
+    private final Map<Integer, JSONObject> blocks = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> obstacles = new LinkedHashMap<>();
+    private final Map<Integer, JSONObject> dispensers = new LinkedHashMap<>();
+
+    private final Set<Positionable> changed = new LinkedHashSet<>();
+
+    @Override
+    public void notifyCreate(Positionable p) {
+        if (p instanceof Entity entity) entities.put(entity.getID(), entity);
+        else if (getItems(p) != null) changed.add(p);
+    }
+
+    @Override
+    public void notifyDestroy(Positionable p) {
+        if (p instanceof Entity) entities.remove(p.getID());
+        var items = getItems(p);
+        if (items == null) return;
+        items.remove(p.getID());
+        changed.remove(p);
+    }
+
+    @Override
+    public void notifyMove(Positionable p, Position oldPosition, Position newPosition) {
+        changed.add(p);
+    }
+
+    @Override
+    public void notifyChange(Positionable p) {
+        if (changed.contains(p) || p instanceof Entity || isTracked(p)) changed.add(p);
+    }
+
+    private boolean isTracked(Positionable p) {
+        var items = getItems(p);
+        return items != null && items.containsKey(p.getID());
+    }
+
+    /**
+     * Serializes everything that changed since the last update.
+     * Since attached things also contain the positions of the things they are attached to,
+     * a change of one thing also concerns all other things of its attachment group.
+     */
+    public void update() {
+        var dirty = new LinkedHashSet<Positionable>();
+        for (var p : changed) {
+            if (p instanceof Attachable a && a.getGroupSize() > 1) dirty.addAll(a.getAttachmentGroup());
+            else dirty.add(p);
+        }
+        changed.clear();
+        for (var p : dirty) {
+            var items = getItems(p);
+            if (items != null) items.put(p.getID(), p.toJSON());
+        }
+    }
+
+    /**
+     * @return a read-only view of all entities (in the order of their creation)
+     */
+    public Collection<Entity> getEntities() {
+        return readOnlyEntities;
+    }
+
+    public JSONArray getBlocks() {
+        return new JSONArray(blocks.values());
+    }
+
+    public JSONArray getObstacles() {
+        return new JSONArray(obstacles.values());
+    }
+
+    public JSONArray getDispensers() {
+        return new JSONArray(dispensers.values());
+    }
+
+    private Map<Integer, JSONObject> getItems(Positionable p) {
+        if (p instanceof Block) return blocks;
+        if (p instanceof Obstacle) return obstacles;
+        if (p instanceof Dispenser) return dispensers;
+        return null;
+    }
+}
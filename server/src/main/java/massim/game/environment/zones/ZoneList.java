@@ -1,5 +1,7 @@
 package massim.game.environment.zones;
 
+import massim.game.environment.Diamond;
+import massim.game.environment.Torus;
 import massim.protocol.data.Position;
 
 import java.util.*;
@@ -7,29 +9,55 @@ import java.util.*;
 public class ZoneList {
 
     private final Map<Position, Zone> zones = new HashMap<>();
-    private final Map<Position, Integer> cellPresence = new HashMap<>();
+
+    private final Torus torus;
+    private final int dimX;
+    private final int dimY;
+    /**
+     * Number of zones covering each cell (addressed by y * dimX + x).
+     */
+    private final int[] cellPresence;
+
+    public ZoneList(Torus torus) {
+        this.torus = torus;
+        this.dimX = torus.width();
+        this.dimY = torus.height();
+        this.cellPresence = new int[dimX * dimY];
+    }
 
     public void add(Position xy, int radius) {
         this.zones.put(xy, new Zone(xy, radius));
-        for (Position pos : xy.spanArea(radius))
-            this.cellPresence.merge(pos, 1, Integer::sum);
+        this.updatePresence(xy, radius, 1);
     }
 
     public void remove(Position zonePosition) {
         Zone z = this.zones.remove(zonePosition);
         if (z == null) return;
-        for (Position pos : zonePosition.spanArea(z.radius()))
-            cellPresence.merge(pos, -1, Integer::sum);
+        this.updatePresence(zonePosition, z.radius(), -1);
+    }
+
+    private void updatePresence(Position center, int radius, int change) {
+        var area = Diamond.of(radius);
+        for (var i = 0; i < area.size(); i++)
+            this.cellPresence[cell(center.x + area.dx(i), center.y + area.dy(i))] += change;
+    }
+
+    private int cell(int x, int y) {
+        return Math.floorMod(y, dimY) * dimX + Math.floorMod(x, dimX);
     }
 
     public Zone getClosest(Position pos) {
         var closestZone =
-                this.zones.values().stream().min(Comparator.comparing(zone -> zone.position().distanceTo(pos)));
+                this.zones.values().stream().min(Comparator.comparing(zone -> torus.distance(zone.position(), pos)));
         return closestZone.orElse(null);
     }
 
     public boolean isInZone(Position pos) {
-        return this.cellPresence.getOrDefault(pos, 0) > 0;
+        return this.isInZone(pos.x, pos.y);
+    }
+
+    public boolean isInZone(int x, int y) {
+        return this.cellPresence[cell(x, y)] > 0;
     }
 
     public List<Zone> getZones() {
@@ -38,7 +66,7 @@ public class ZoneList {
 
     public Optional<Zone> findOneZoneAt(Position pos) {
         return zones.values().stream()
-                .filter(zone -> zone.position().distanceTo(pos) <= zone.radius())
+                .filter(zone -> torus.distance(zone.position(), pos) <= zone.radius())
                 .findAny();
     }
 
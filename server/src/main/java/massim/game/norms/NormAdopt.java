@@ -15,11 +15,11 @@ import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
 import massim.game.GameState;
+import massim.game.SimulationContext;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
 import massim.util.Bounds;
 import massim.util.Log;
-import massim.util.RNG;
 import massim.util.Log.Level;
 
 public class NormAdopt extends Norm{
@@ -60,7 +60,7 @@ public class NormAdopt extends Norm{
             counters.get(role)[index] += 1;
         }
 
-        float prob = RNG.betweenClosed(new Bounds(0, 1));
+        float prob = state.context().rng(SimulationContext.Stream.NORMS).betweenClosed(new Bounds(0, 1));
         float total = 0;
         String chosen = counters.keySet().iterator().next();
         for (Map.Entry<String, int[]> counter : counters.entrySet()) {
@@ -10,10 +10,10 @@ import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
 import massim.game.GameState;
+import massim.game.SimulationContext;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
 import massim.util.Log;
-import massim.util.RNG;
 import massim.util.Log.Level;
 
 public class NormCarry extends Norm{
@@ -49,7 +49,7 @@ public class NormCarry extends Norm{
     @Override
     public void bill(GameState state, Record info) { 
         Template template = (Template) info;        
-        this.maxAttached = RNG.betweenClosed(template.min, template.max);
+        this.maxAttached = state.context().rng(SimulationContext.Stream.NORMS).betweenClosed(template.min, template.max);
         this.level = NormInfo.Level.INDIVIDUAL;
     }
 
@@ -58,7 +58,7 @@ public class NormCarry extends Norm{
         ArrayList<Entity> violators = new ArrayList<>();
         
         for (Entity entity : entities) {
-            if (entity.collectAllAttachments(false).size() > this.maxAttached)
+            if (entity.getGroupSize() - 1 > this.maxAttached)
                 violators.add(entity);
         }
         
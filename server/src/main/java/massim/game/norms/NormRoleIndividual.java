@@ -13,6 +13,7 @@ import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
 import massim.game.GameState;
+import massim.game.SimulationContext;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
 
@@ -30,7 +31,7 @@ public class NormRoleIndividual extends Norm{
 
     @Override
     public void bill(GameState state, Record info) {
-        var role = state.grid().entities().getRandomRole().name();
+        var role = state.grid().entities().getRandomRole(state.context().rng(SimulationContext.Stream.NORMS)).name();
         this.prohibitedRoles.put(role, 1);
         this.level = NormInfo.Level.INDIVIDUAL;
     }
@@ -14,6 +14,7 @@ import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
 import massim.game.GameState;
+import massim.game.SimulationContext;
 import massim.util.Log;
 import massim.util.RNG;
 
@@ -131,13 +132,14 @@ public class Officer {
         if (inProcessNorms >= this.maxActiveNorms)
             return;
         
-        if (RNG.nextDouble() > this.chance)
+        var rng = state.context().rng(SimulationContext.Stream.NORMS);
+        if (rng.nextDouble() > this.chance)
             return;        
 
-        double p = RNG.nextDouble() * this.accumulatedWeight;
+        double p = rng.nextDouble() * this.accumulatedWeight;
         for (NormTemplate temp : this.templates) {
             if (temp.getChance() >= p) {
-                Norm norm = createNorm(step, temp);
+                Norm norm = createNorm(step, temp, rng);
                 norm.bill(state, temp.getAdditionalInfo());
                 norms.put(norm.getName(), norm);
                 Log.log(Log.Level.NORMAL, "Created "+ norm);
@@ -162,12 +164,12 @@ public class Officer {
             this.archive.put(step, allViolators);
     }
 
-    private Norm createNorm(int step, NormTemplate template){
+    private Norm createNorm(int step, NormTemplate template, RNG rng){
         Norm norm = FactoryNorms.valueOf(template.getName()).factory.get();
         
-        int duration = RNG.betweenClosed(template.getMinDuration(), template.getMaxDuration());
-        int announcePeriod = RNG.betweenClosed(template.getMinAnnouncement(), template.getMaxAnnouncement());  
-        int punishment = RNG.betweenClosed(template.getMinPunishment(), template.getMaxPunishment());
+        int duration = rng.betweenClosed(template.getMinDuration(), template.getMaxDuration());
+        int announcePeriod = rng.betweenClosed(template.getMinAnnouncement(), template.getMaxAnnouncement());  
+        int punishment = rng.betweenClosed(template.getMinPunishment(), template.getMaxPunishment());
         norm.init("n"+normsIds, step, step+announcePeriod, step+announcePeriod+duration, punishment);
         normsIds += 1;
 
@@ -1,25 +1,51 @@
 package massim.util;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
  * Logger utility for the MASSim server. Supports 4 different log levels.
+ *
+ * Messages are formatted by the logging thread (only if their level is enabled) and put into a bounded buffer,
+ * from which a background thread writes them in batches. If the buffer is full, {@link Level#NORMAL} and
+ * {@link Level#DEBUG} messages are dropped (and counted), while more important messages are written
+ * by the logging thread itself.
  */
 public class Log {
 
     public enum Level { CRITICAL, ERROR, NORMAL, DEBUG }
 
-    private static Level logLevel = Level.NORMAL;
-    private static File outputFile = null;
-    private static FileWriter writer = null;
+    private static final int BUFFER_SIZE = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
 
-    private static final Map<Level, OutputStream> outputs = new HashMap<>();
+    private static volatile Level logLevel = Level.NORMAL;
+    private static volatile File outputFile = null;
+    private static Writer writer = null;
+
+    private static final Map<Level, OutputStream> outputs = new ConcurrentHashMap<>();
     private static final Map<Level, String> typeStrings = new HashMap<>();
 
+    private static final RingBuffer buffer = new RingBuffer(BUFFER_SIZE);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final Object drainLock = new Object();
+    private static final AtomicBoolean writerIdle = new AtomicBoolean();
+    private static final Thread writerThread;
+
+    /**
+     * A formatted message and where to write it.
+     * @param out the stream to write to or null if the message only goes to the log file
+     */
+    private record Entry(OutputStream out, String text) {}
+
     static{ // initialization
         outputs.put(Level.CRITICAL, System.err);
         outputs.put(Level.ERROR, System.err);
@@ -31,29 +57,23 @@ public class Log {
         typeStrings.put(Level.NORMAL, "[ NORMAL  ] ");
         typeStrings.put(Level.DEBUG, "[ DEBUG  ] ");
 
+        writerThread = new Thread(Log::runWriter, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+
         Thread.setDefaultUncaughtExceptionHandler((t, e) -> {
             e.printStackTrace();
-            logToFile(typeStrings.get(Level.ERROR) + e + " : " + Arrays.toString(e.getStackTrace()));
+            enqueue(Level.ERROR, new Entry(null, typeStrings.get(Level.ERROR) + e + " : "
+                    + Arrays.toString(e.getStackTrace())));
         });
     }
 
     /**
-     * Logs a string with a certain log level to the respective output stream if the current log level permits.
-     * @param level the log level at which to log
-     * @param message the message to log
+     * @return true if messages of the given level are currently logged
      */
-    private static synchronized void logString(Level level, String message) {
-        if (level.ordinal() <= logLevel.ordinal()){
-            OutputStream out = outputs.get(level);
-            String typeString = typeStrings.get(level);
-            try {
-                out.write(typeString.getBytes());
-                out.write(message.getBytes());
-                logToFile(typeString + message);
-            } catch (IOException e) {
-                System.err.println("Error while trying to write log string: " + message);
-            }
-        }
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() <= logLevel.ordinal();
     }
 
     /**
@@ -63,6 +83,7 @@ public class Log {
      * @param msg the message to log
      */
     public static void log(Level type, String msg) {
+        if (!isEnabled(type)) return;
 
         String metaInfo = "";
         if (logLevel == Level.DEBUG){
@@ -75,7 +96,14 @@ public class Log {
             }
         }
 
-        logString(type, metaInfo +" ##   " + msg + "\n");
+        enqueue(type, new Entry(outputs.get(type), typeStrings.get(type) + metaInfo + " ##   " + msg + "\n"));
+    }
+
+    /**
+     * Like {@link #log(Level, String)}, but only creates the message if the level is currently being logged.
+     */
+    public static void log(Level type, Supplier<String> msg) {
+        if (isEnabled(type)) log(type, msg.get());
     }
 
     /**
@@ -105,6 +133,13 @@ public class Log {
         }
     }
 
+    /**
+     * Writes all buffered messages.
+     */
+    public static void flush() {
+        while (drain());
+    }
+
     /**
      * @return some meta information about the current context
      */
@@ -114,13 +149,16 @@ public class Log {
         StackTraceElement[] stack = e.getStackTrace();
         GregorianCalendar calendar = new GregorianCalendar();
         String t = "";
-        String x = "";
         /*
-         * 2 means this method and the calling method are ignored. thus, any method
-         * calling getMetaInfo should have been called from outside.
+         * the first method outside of this class is the one that logged the message
          */
-        StackTraceElement ls = stack[2];
-        t += x;
+        StackTraceElement ls = stack[stack.length - 1];
+        for (StackTraceElement element : stack) {
+            if (!element.getClassName().equals(Log.class.getName())) {
+                ls = element;
+                break;
+            }
+        }
         t += ls.getClassName() + "." + ls.getMethodName() + ":" + ls.getLineNumber();
         return String.format("%02d:%02d:%02d",
                 calendar.get(Calendar.HOUR_OF_DAY),
@@ -130,25 +168,158 @@ public class Log {
                 t;
     }
 
+    private static void enqueue(Level level, Entry entry) {
+        while (!buffer.offer(entry)) {
+            if (level.ordinal() > Level.ERROR.ordinal()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            drain(); // make room instead of losing an important message
+        }
+        if (writerIdle.get() && writerIdle.compareAndSet(true, false))
+            LockSupport.unpark(writerThread);
+    }
+
+    private static void runWriter() {
+        while (true) {
+            if (drain()) continue;
+            writerIdle.set(true);
+            boolean empty;
+            synchronized (drainLock) {
+                empty = buffer.isEmpty();
+            }
+            if (empty) LockSupport.parkNanos(IDLE_PARK_NANOS);
+            writerIdle.set(false);
+        }
+    }
+
+    /**
+     * Writes the buffered messages and flushes the outputs afterwards.
+     * @return true if there was anything to write
+     */
+    private static boolean drain() {
+        synchronized (drainLock) {
+            var touched = Collections.newSetFromMap(new IdentityHashMap<OutputStream, Boolean>());
+            var any = false;
+            for (var i = 0; i < BUFFER_SIZE; i++) { // at most one buffer per batch
+                var entry = buffer.poll();
+                if (entry == null) break;
+                any = true;
+                write(entry, touched);
+            }
+            var lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                any = true;
+                write(new Entry(outputs.get(Level.ERROR),
+                        typeStrings.get(Level.ERROR) + " ##   " + lost + " log messages dropped\n"), touched);
+            }
+            if (!any) return false;
+            for (var out : touched) {
+                try {
+                    out.flush();
+                } catch (IOException ignored) {}
+            }
+            if (writer != null) {
+                try {
+                    writer.flush();
+                } catch (IOException ignored) {}
+            }
+            return true;
+        }
+    }
+
+    private static void write(Entry entry, Set<OutputStream> touched) {
+        if (entry.out != null) {
+            try {
+                entry.out.write(entry.text.getBytes());
+                touched.add(entry.out);
+            } catch (IOException e) {
+                System.err.println("Error while trying to write log string: " + entry.text);
+            }
+        }
+        logToFile(entry.text);
+    }
+
     /**
-     * Writes a string to the log file.
+     * Writes a string to the log file (buffered until the end of the current batch).
      * @param s the string to write
      */
-    private static synchronized void logToFile(String s){
+    private static void logToFile(String s){
 
         if(outputFile == null) return;
 
         if (writer == null){
             try {
-                writer = new FileWriter(outputFile, true);
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(outputFile, true), StandardCharsets.UTF_8));
             } catch (IOException ignored) {}
         }
 
         if(writer != null){
             try {
                 writer.append(s);
-                writer.flush();
             } catch (IOException ignored) {}
         }
     }
+
+    /**
+     * A bounded buffer for any number of producers and a single consumer, which does not lock.
+     * Each slot has a sequence number telling whether it can be written (for the current round) or read.
+     */
+    private static final class RingBuffer {
+
+        private final int mask;
+        private final AtomicReferenceArray<Entry> entries;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private long head; // only used by the consumer
+
+        /**
+         * @param capacity a power of 2
+         */
+        RingBuffer(int capacity) {
+            this.mask = capacity - 1;
+            this.entries = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (var i = 0; i < capacity; i++) sequences.set(i, i);
+        }
+
+        /**
+         * @return false if the buffer is full
+         */
+        boolean offer(Entry entry) {
+            var pos = tail.get();
+            while (true) {
+                var slot = (int) (pos & mask);
+                var diff = sequences.get(slot) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        entries.set(slot, entry);
+                        sequences.set(slot, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                }
+                else if (diff < 0) return false;
+                else pos = tail.get();
+            }
+        }
+
+        /**
+         * @return the next entry or null if there is none
+         */
+        Entry poll() {
+            var slot = (int) (head & mask);
+            if (sequences.get(slot) != head + 1) return null;
+            var entry = entries.get(slot);
+            entries.set(slot, null);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            return entry;
+        }
+
+        boolean isEmpty() {
+            return sequences.get((int) (head & mask)) != head + 1;
+        }
+    }
 }
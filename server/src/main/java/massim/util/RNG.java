@@ -1,58 +1,71 @@
 package massim.util;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
- * Implements the random number generation (wraps standard Java Random for now).
+ * Implements the random number generation (wraps a {@link SplittableRandom}).
+ * A generator is not thread-safe and should only be used by one simulation (see {@link massim.game.SimulationContext}).
  */
-public abstract class RNG {
+public class RNG {
 
-    private static Random random = new Random(System.currentTimeMillis());
+    private final SplittableRandom random;
 
     /**
-     * Initializes the rng to the given seed.
+     * Creates a new rng with the given seed.
      * @param seed the seed for the rng
      */
-    public static synchronized void initialize(long seed){
-        random = new Random(seed);
+    public RNG(long seed){
+        this(new SplittableRandom(seed));
+    }
+
+    private RNG(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Creates a new generator whose numbers are independent of this generator's future numbers.
+     * Splitting generators with the same seed in the same order always yields the same generators.
+     * @see SplittableRandom#split()
+     */
+    public RNG split() {
+        return new RNG(random.split());
     }
 
     /**
-     * @see Random#nextInt()
+     * @see SplittableRandom#nextInt()
      */
-    public static synchronized int nextInt(){
+    public int nextInt(){
         return random.nextInt();
     }
 
     /**
      * (upper bound  exclusive)
-     * @see Random#nextInt(int)
+     * @see SplittableRandom#nextInt(int)
      */
-    public static synchronized int nextInt(int bound){
+    public int nextInt(int bound){
         return random.nextInt(bound);
     }
 
     /**
-     * @see Random#nextDouble()
+     * @see SplittableRandom#nextDouble()
      */
-    public static synchronized double nextDouble(){ return random.nextDouble(); }
+    public double nextDouble(){ return random.nextDouble(); }
 
     /**
-     * Shuffles a list with the internal random object.
-     * @see Collections#shuffle
+     * Shuffles a list with the internal random object (same algorithm as {@link java.util.Collections#shuffle}).
      * @param list the list to shuffle
      */
-    public static synchronized void shuffle(List<?> list){
-        Collections.shuffle(list, random);
+    public <T> void shuffle(List<T> list){
+        for (var i = list.size(); i > 1; i--)
+            list.set(i - 1, list.set(random.nextInt(i), list.get(i - 1)));
     }
 
-    public static synchronized int betweenClosed(int lower, int upper){
-        return lower + nextInt(upper - lower + 1);
+    public int betweenClosed(int lower, int upper){
+        return lower + random.nextInt(upper - lower + 1);
     }
 
-    public static synchronized int betweenClosed(Bounds bounds) {
+    public int betweenClosed(Bounds bounds) {
         return betweenClosed(bounds.lower(), bounds.upper());
     }
 }
@@ -0,0 +1,66 @@
+package massim.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of the server's networking parts.
+ * Uses virtual threads if enabled and supported by the JVM (Java 21+), platform threads otherwise.
+ */
+public abstract class Threads {
+
+    private static ThreadFactory virtualFactory = null;
+
+    /**
+     * Tries to switch to virtual threads for all threads created from now on.
+     * Virtual threads are looked up reflectively, so that the server still runs on older JVMs.
+     * @return true iff virtual threads are available and will be used
+     */
+    public static synchronized boolean enableVirtualThreads() {
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            var factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            virtualFactory = (ThreadFactory) factory;
+            virtualFactory.newThread(() -> {}); // fails if virtual threads are only a preview feature
+            return true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            virtualFactory = null;
+            return false;
+        }
+    }
+
+    /**
+     * @return whether virtual threads are used
+     */
+    public static synchronized boolean usesVirtualThreads() {
+        return virtualFactory != null;
+    }
+
+    /**
+     * Creates a new (not yet started) thread.
+     * @param name the name of the thread
+     * @param task what the thread should run
+     * @return the new thread (virtual if enabled; platform otherwise)
+     */
+    public static Thread newThread(String name, Runnable task) {
+        ThreadFactory factory;
+        synchronized (Threads.class) {
+            factory = virtualFactory;
+        }
+        var thread = factory != null? factory.newThread(task) : new Thread(task);
+        thread.setName(name);
+        return thread;
+    }
+
+    /**
+     * Creates a thread factory for daemon threads (virtual threads are always daemons).
+     * @param name the name of all threads created by the factory
+     * @return the new factory
+     */
+    public static ThreadFactory daemonFactory(String name) {
+        return task -> {
+            var thread = newThread(name, task);
+            if (!thread.isDaemon()) thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
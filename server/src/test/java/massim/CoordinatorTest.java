@@ -0,0 +1,134 @@
+package massim;
+
+import massim.config.ServerConfig;
+import massim.config.TeamConfig;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.*;
+
+public class CoordinatorTest {
+
+    @org.junit.Test
+    public void distributesMatches() throws Exception {
+        var teams = teams("A", "B", "C", "D");
+        var played = Collections.synchronizedList(new ArrayList<String>());
+        var worker1 = fakeWorker(List.of("A", "B", "C", "D"), played, Integer.MAX_VALUE);
+        var worker2 = fakeWorker(List.of("A", "B", "C", "D"), played, Integer.MAX_VALUE);
+        var worker3 = fakeWorker(List.of("A", "B"), played, Integer.MAX_VALUE);
+
+        var config = config(worker1, worker2, worker3);
+        var matches = roundRobin(teams);
+        var standings = new Coordinator(config).run(matches);
+
+        assert played.size() == 6;
+        assert new HashSet<>(played).size() == 6;
+        var ranking = standings.getRanking();
+        assert ranking.size() == 4;
+        // the fake workers let the alphabetically first team win every simulation
+        assert ranking.get(0).getTeam().equals("A") && ranking.get(0).getPoints() == 3 * 3;
+        assert ranking.get(3).getTeam().equals("D") && ranking.get(3).getPoints() == 0;
+        assert ranking.get(0).getSimulations() == 3;
+
+        var files = new File(config.resultPath).list();
+        assert files != null;
+        assert Arrays.stream(files).filter(f -> f.startsWith("result_")).count() == 6;
+        assert Arrays.stream(files).filter(f -> f.startsWith("standings_")).count() == 1;
+    }
+
+    @org.junit.Test
+    public void reassignsMatchesOfFailedWorkers() throws Exception {
+        var teams = teams("A", "B", "C");
+        var played = Collections.synchronizedList(new ArrayList<String>());
+        var failing = fakeWorker(List.of("A", "B", "C"), played, 1);
+        var worker = fakeWorker(List.of("A", "B", "C"), played, Integer.MAX_VALUE);
+
+        var standings = new Coordinator(config(failing, worker)).run(roundRobin(teams));
+        assert played.size() == 3;
+        assert standings.toJSON().getJSONObject("matches").length() == 3;
+        assert standings.getRanking().get(0).getPoints() == 2 * 3;
+    }
+
+    @org.junit.Test
+    public void standings() {
+        var standings = new Standings();
+        standings.add("m1", new JSONObject()
+                .put("s1", new JSONObject().put("A", score(10)).put("B", score(20)))
+                .put("s2", new JSONObject().put("A", score(30)).put("B", score(30))));
+        standings.add("m2", new JSONObject()
+                .put("s1", new JSONObject().put("A", score(5)).put("C", score(0))));
+        var ranking = standings.getRanking();
+        // A and B have the same points (one win and one draw each), but B has the higher score
+        assert ranking.get(0).getTeam().equals("B") && ranking.get(0).getPoints() == 4;
+        assert ranking.get(0).getScore() == 50;
+        assert ranking.get(1).getTeam().equals("A") && ranking.get(1).getPoints() == 4;
+        assert ranking.get(1).getScore() == 45;
+        assert ranking.get(2).getTeam().equals("C") && ranking.get(2).getPoints() == 0;
+    }
+
+    private static JSONObject score(int score) {
+        return new JSONObject().put("score", score);
+    }
+
+    private static List<TeamConfig> teams(String... names) {
+        var teams = new ArrayList<TeamConfig>();
+        for (var name : names) teams.add(new TeamConfig(name));
+        return teams;
+    }
+
+    private static List<Set<TeamConfig>> roundRobin(List<TeamConfig> teams) {
+        var matches = new ArrayList<Set<TeamConfig>>();
+        for (var i = 0; i < teams.size(); i++)
+            for (var j = i + 1; j < teams.size(); j++)
+                matches.add(Set.of(teams.get(i), teams.get(j)));
+        return matches;
+    }
+
+    private static ServerConfig config(ServerSocket... workers) throws IOException {
+        var config = new ServerConfig();
+        config.resultPath = Files.createTempDirectory("massim-results").toString();
+        for (var worker : workers) config.workers.add("localhost:" + worker.getLocalPort());
+        return config;
+    }
+
+    /**
+     * Starts a worker that plays each match by letting the alphabetically first team win.
+     * @param matchesBeforeFailure the number of matches after which the worker drops the connection
+     */
+    private static ServerSocket fakeWorker(List<String> teams, List<String> played, int matchesBeforeFailure)
+            throws IOException {
+        var serverSocket = new ServerSocket(0);
+        var thread = new Thread(() -> {
+            try (serverSocket; var socket = serverSocket.accept()) {
+                var in = new BufferedInputStream(socket.getInputStream());
+                var out = new BufferedOutputStream(socket.getOutputStream());
+                Coordinator.send(out, new JSONObject().put("type", Coordinator.READY).put("teams", teams));
+                for (var count = 0; ; count++) {
+                    var message = Coordinator.receive(in);
+                    if (message == null || message.getString("type").equals(Coordinator.DONE)) return;
+                    if (count == matchesBeforeFailure) return;
+                    var matchTeams = new ArrayList<String>();
+                    for (var team : message.getJSONArray("teams")) matchTeams.add(team.toString());
+                    Collections.sort(matchTeams);
+                    var sim = new JSONObject();
+                    for (var team : matchTeams) sim.put(team, score(team.equals(matchTeams.get(0))? 10 : 0));
+                    var name = "result_" + String.join("_", matchTeams);
+                    played.add(name);
+                    Coordinator.send(out, new JSONObject()
+                            .put("type", Coordinator.RESULT)
+                            .put("name", name)
+                            .put("result", new JSONObject().put("sim1", sim)));
+                }
+            } catch (IOException ignored) {}
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return serverSocket;
+    }
+}
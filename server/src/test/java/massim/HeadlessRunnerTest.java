@@ -0,0 +1,82 @@
+package massim;
+
+import massim.helper.ConfigBuilder;
+import massim.protocol.messages.ActionMessage;
+import massim.protocol.messages.scenario.Actions;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+public class HeadlessRunnerTest {
+
+    @org.junit.Test
+    public void runsAllSteps() {
+        var config = ConfigBuilder.buildGameStateConfig(5).put("steps", 50).put("randomSeed", 7);
+        var runner = new HeadlessRunner(config, ConfigBuilder.buildTeams(5));
+        assert runner.getInitialPercepts().size() == 10;
+
+        var calls = new int[1];
+        runner.setDefaultProvider(p -> {
+            calls[0]++;
+            return new ActionMessage(Actions.SKIP, p.getId(), List.of());
+        });
+        runner.setProvider("A1", p -> {
+            assert p.getStep() == runner.getStep();
+            return new ActionMessage(Actions.MOVE, p.getId(), List.of("n"));
+        });
+        var result = runner.run();
+
+        assert runner.isFinished() && runner.getStep() == 50 && !runner.step();
+        assert calls[0] == 50 * 9;
+        assert result.has("A") && result.has("B");
+        var status = runner.getSimulation().getStatusSnapshot();
+        assert status.getInt("steps") == 50;
+    }
+
+    @org.junit.Test
+    public void deterministic() {
+        var first = run(7);
+        assert first.equals(run(7)) : "same seed, different results";
+    }
+
+    @org.junit.Test
+    public void parallelThreads() throws Exception {
+        var expected = List.of(run(3, 40), run(4, 70), run(5, 40), run(6, 70));
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var results = new ArrayList<Future<String>>();
+            for (var i = 0; i < 4; i++) {
+                var seed = 3 + i;
+                var size = i % 2 == 0? 40 : 70;
+                results.add(pool.submit(() -> run(seed, size)));
+            }
+            for (var i = 0; i < 4; i++)
+                assert results.get(i).get().equals(expected.get(i)) : "simulation " + i + " affected by another thread";
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String run(long seed) {
+        return run(seed, 100);
+    }
+
+    private static String run(long seed, int size) {
+        var config = ConfigBuilder.buildGameStateConfig(5, size, 5).put("steps", 30).put("randomSeed", seed);
+        Function<StepPercept, ActionMessage> mover = p -> new ActionMessage(Actions.MOVE, p.getId(),
+                List.of(List.of("n", "e", "s", "w").get((int) ((p.getStep() + p.energy) % 4))));
+        var runner = new HeadlessRunner(config, ConfigBuilder.buildTeams(5)).setDefaultProvider(mover);
+        runner.run();
+        var state = new JSONObject().put("result", runner.getSimulation().getResult());
+        for (var entity : runner.getSimulation().getSnapshot().getJSONArray("entities")) {
+            var e = (JSONObject) entity;
+            state.put(e.getString("name"), e.get("pos") + "," + e.getInt("energy"));
+        }
+        return state.toString();
+    }
+}
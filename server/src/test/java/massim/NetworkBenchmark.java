@@ -0,0 +1,197 @@
+package massim;
+
+import massim.config.ServerConfig;
+import massim.config.TeamConfig;
+import massim.protocol.messages.ActionMessage;
+import massim.protocol.messages.RequestActionMessage;
+import massim.protocol.messages.scenario.Actions;
+import massim.util.Log;
+import massim.util.Threads;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Measures the networking stack (front desk, agent manager and transport) with many simulated agents.
+ * Reports the number of threads, the resident memory and the time needed per step to collect all actions.
+ * The agents are simulated by a single client thread, so that the client does not distort the thread count.
+ *
+ * Usage (from the test classpath): NetworkBenchmark [platform|virtual] [agents,...] [steps]
+ * e.g. NetworkBenchmark virtual 20,200,2000 50
+ */
+public class NetworkBenchmark {
+
+    private static final int PORT = 12399;
+    private static final int WARMUP_STEPS = 5;
+
+    public static void main(String[] args) throws Exception {
+        var mode = args.length > 0? args[0] : "platform";
+        var agentCounts = args.length > 1? args[1].split(",") : new String[]{"20", "200", "2000"};
+        var steps = args.length > 2? Integer.parseInt(args[2]) : 50;
+
+        Log.setLogLevel(Log.Level.ERROR);
+        if (mode.equals("virtual") && !Threads.enableVirtualThreads()) {
+            // do not report platform results as virtual ones
+            System.err.println("Virtual threads are not available on Java " + Runtime.version().feature()
+                    + " (they need Java 21 or newer).");
+            System.exit(1);
+        }
+
+        System.out.println("mode=" + (Threads.usesVirtualThreads()? "virtual" : "platform")
+                + " cores=" + Runtime.getRuntime().availableProcessors());
+        for (var count : agentCounts) run(Integer.parseInt(count.trim()), steps);
+    }
+
+    /**
+     * Runs one benchmark with a new server instance.
+     */
+    private static void run(int agentCount, int steps) throws Exception {
+        var team = new TeamConfig("A");
+        for (var i = 0; i < agentCount; i++) team.addAgent("agent" + i, "1");
+        var config = new ServerConfig();
+        config.port = PORT;
+        config.backlog = agentCount;
+        config.teams.add(team);
+        config.teamSizes.add(agentCount);
+
+        var agentManager = new AgentManager(config.teams, 2000, 65536, AgentManager.StepMode.EARLY);
+        var frontDesk = new FrontDesk(agentManager, config);
+        frontDesk.open();
+        var agents = new Agents(team.getAgentNames());
+        var client = new Thread(agents, "client");
+        client.setDaemon(true);
+        client.start();
+
+        for (var step = 0; step < WARMUP_STEPS; step++) requestActions(agentManager, team, step);
+
+        var latencies = new long[steps];
+        var timeouts = 0;
+        for (var step = 0; step < steps; step++) {
+            var start = System.nanoTime();
+            var actions = requestActions(agentManager, team, WARMUP_STEPS + step);
+            latencies[step] = System.nanoTime() - start;
+            timeouts += actions.values().stream().filter(a -> a.getActionType().equals(Actions.NO_ACTION)).count();
+        }
+
+        var threads = ManagementFactory.getThreadMXBean();
+        Arrays.sort(latencies);
+        System.out.printf("agents=%d threads=%d peakThreads=%d rss=%s step[ms] median=%.2f p95=%.2f max=%.2f"
+                        + " timeouts=%d%n",
+                agentCount, threads.getThreadCount(), threads.getPeakThreadCount(), readRSS(),
+                latencies[steps / 2] / 1e6, latencies[(int) (steps * .95)] / 1e6, latencies[steps - 1] / 1e6,
+                timeouts);
+
+        agents.stop();
+        frontDesk.close();
+        agentManager.stop();
+    }
+
+    private static Map<String, ActionMessage> requestActions(AgentManager agentManager, TeamConfig team, int step) {
+        var percepts = new HashMap<String, RequestActionMessage>();
+        for (var agent : team.getAgentNames()) {
+            percepts.put(agent, new RequestActionMessage(System.currentTimeMillis(), -1, -1, step) {
+                @Override
+                public JSONObject makePercept() {
+                    return new JSONObject();
+                }
+            });
+        }
+        return agentManager.requestActions(percepts);
+    }
+
+    /**
+     * @return the resident set size of this process (only available on Linux)
+     */
+    private static String readRSS() {
+        try {
+            for (var line : Files.readAllLines(Path.of("/proc/self/status")))
+                if (line.startsWith("VmRSS:")) return line.substring(6).trim().replace(" ", "");
+        } catch (IOException ignored) {}
+        return "n/a";
+    }
+
+    /**
+     * Connects and authenticates all agents, then answers each request-action message immediately.
+     */
+    private static class Agents implements Runnable {
+
+        private final Selector selector = Selector.open();
+        private volatile boolean stopped = false;
+
+        private Agents(List<String> names) throws IOException {
+            for (var name : names) {
+                var channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+                send(channel, new JSONObject().put("type", "auth-request")
+                        .put("content", new JSONObject().put("user", name).put("pw", "1")));
+                var response = ByteBuffer.allocate(1);
+                do {
+                    response.clear();
+                    if (channel.read(response) == -1) throw new IOException(name + ": no auth response");
+                } while (response.get(0) != 0);
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new StringBuilder());
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            var buffer = ByteBuffer.allocate(65536);
+            try {
+                while (!stopped) {
+                    selector.select();
+                    for (var key : selector.selectedKeys()) {
+                        var channel = (SocketChannel) key.channel();
+                        var received = (StringBuilder) key.attachment();
+                        buffer.clear();
+                        if (channel.read(buffer) == -1) {
+                            key.cancel();
+                            continue;
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            var b = buffer.get();
+                            if (b != 0) received.append((char) b);
+                            else {
+                                handleMessage(channel, new JSONObject(received.toString()));
+                                received.setLength(0);
+                            }
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+                for (var key : selector.keys()) key.channel().close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void handleMessage(SocketChannel channel, JSONObject message) throws IOException {
+            if (!message.getString("type").equals("request-action")) return;
+            var id = message.getJSONObject("content").getLong("id");
+            send(channel, new JSONObject().put("type", "action")
+                    .put("content", new JSONObject().put("id", id).put("type", "skip").put("p", List.of())));
+        }
+
+        private static void send(SocketChannel channel, JSONObject message) throws IOException {
+            var bytes = message.toString().getBytes(StandardCharsets.UTF_8);
+            var buffer = ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) 0).flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+}
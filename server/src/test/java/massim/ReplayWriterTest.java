@@ -0,0 +1,106 @@
+package massim;
+
+import massim.config.ServerConfig;
+import massim.monitor.ReplayFile;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ReplayWriterTest {
+
+    @org.junit.Test
+    public void groupFiles() throws IOException {
+        var dir = Files.createTempDirectory("replay");
+        var writer = new ReplayWriter(dir.toString(), ServerConfig.REPLAY_FORMAT_DIRECTORY);
+        writer.updateState("sim", "start", new JSONObject().put("grid", new JSONObject()));
+        for (var step = -1; step < 12; step++)
+            writer.updateState("sim", "start", new JSONObject().put("step", step));
+        writer.close();
+
+        var replay = dir.resolve("start-sim");
+        assert read(replay.resolve("static.json")).has("grid");
+        var group = read(replay.resolve("0.json"));
+        assert group.length() == 6;
+        for (var step = -1; step < 5; step++)
+            assert group.getJSONObject(String.valueOf(step)).getInt("step") == step;
+        assert read(replay.resolve("5.json")).length() == 5;
+        var last = read(replay.resolve("10.json"));
+        assert last.length() == 2 && last.has("11");
+    }
+
+    @org.junit.Test
+    public void singleFile() throws IOException {
+        var dir = Files.createTempDirectory("replay");
+        var writer = new ReplayWriter(dir.toString(), ServerConfig.REPLAY_FORMAT_FILE);
+        writer.updateState("sim", "start", new JSONObject().put("grid", new JSONObject().put("width", 70)));
+        for (var step = -1; step < 700; step++)
+            writer.updateState("sim", "start", new JSONObject().put("step", step).put("entities", List.of()));
+        writer.close();
+
+        var file = dir.resolve("start-sim" + ReplayFile.EXTENSION);
+        assert ReplayFile.isReplayFile(file);
+        try (var reader = new ReplayFile.Reader(file)) {
+            assert reader.getSteps().size() == 701 && reader.getSteps().first() == -1;
+            assert new JSONObject(reader.readStatic()).getJSONObject("grid").getInt("width") == 70;
+            assert new JSONObject(reader.readStep(650)).getInt("step") == 650;
+            assert reader.readStep(700) == null;
+        }
+
+        // without the index (e.g. if the server was stopped while writing), all complete frames can still be read
+        var truncated = dir.resolve("truncated" + ReplayFile.EXTENSION);
+        var bytes = Files.readAllBytes(file);
+        var indexSize = 4 + 702 * 12 + 16;
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - indexSize - 10));
+        try (var reader = new ReplayFile.Reader(truncated)) {
+            assert reader.getSteps().size() == 700 && reader.getSteps().last() == 698;
+            assert new JSONObject(reader.readStep(698)).getInt("step") == 698;
+        }
+    }
+
+    @org.junit.Test
+    public void deltaFrames() throws IOException {
+        var file = Files.createTempFile("replay", ReplayFile.EXTENSION);
+        var states = new ArrayList<JSONObject>();
+        try (var writer = new ReplayFile.Writer(file, 4)) {
+            for (var step = 0; step < 30; step++) {
+                var blocks = new JSONArray();
+                for (var id = step / 3; id < 10 + step / 2; id++)
+                    blocks.put(new JSONObject().put("id", id).put("pos", List.of(id, step % 7 == 0? step : 0)));
+                var zones = new JSONArray().put(new JSONObject().put("pos", List.of(step / 10, 1)).put("r", 2));
+                var state = new JSONObject().put("step", step).put("blocks", blocks).put("goalZones", zones)
+                        .put("scores", List.of(step));
+                if (step != 13) state.put("obstacles", new JSONArray().put(new JSONObject().put("id", 99)));
+                writer.writeStep(step, state);
+                states.add(new JSONObject(state.toString()));
+            }
+        }
+        assert Files.size(file) > 0;
+
+        try (var reader = new ReplayFile.Reader(file)) {
+            for (var step : List.of(29, 3, 4, 5, 6, 7, 17, 12, 13, 14, 0, 29, 28))
+                assertSameState(reader.readState(step), states.get(step));
+        }
+    }
+
+    private static void assertSameState(JSONObject actual, JSONObject expected) {
+        assert actual.keySet().equals(expected.keySet());
+        for (var key : expected.keySet()) {
+            if (ReplayFile.DELTA_SETS.contains(key)) assert items(actual, key).equals(items(expected, key));
+            else assert actual.get(key).toString().equals(expected.get(key).toString());
+        }
+    }
+
+    private static Set<String> items(JSONObject state, String key) {
+        var result = new HashSet<String>();
+        for (var item : state.getJSONArray(key)) result.add(new TreeMap<>(((JSONObject) item).toMap()).toString());
+        return result;
+    }
+
+    private static JSONObject read(Path file) throws IOException {
+        return new JSONObject(Files.readString(file));
+    }
+}
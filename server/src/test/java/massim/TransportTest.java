@@ -0,0 +1,71 @@
+package massim;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TransportTest {
+
+    @org.junit.Test
+    public void failingEndpointOnlyClosesItsConnection() throws Exception {
+        var transport = new Transport(1024, 1); // both connections share one I/O thread
+        try (var server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0))) {
+            var failing = new TestEndpoint(true);
+            var working = new TestEndpoint(false);
+            try (var client1 = SocketChannel.open(server.getLocalAddress());
+                 var client2 = SocketChannel.open(server.getLocalAddress())) {
+                transport.register(server.accept(), failing);
+                transport.register(server.accept(), working);
+
+                send(client1, "bad");
+                failing.closed.get(5, TimeUnit.SECONDS);
+
+                send(client2, "first");
+                assert "first".equals(working.frames.poll(5, TimeUnit.SECONDS));
+                send(client2, "second");
+                assert "second".equals(working.frames.poll(5, TimeUnit.SECONDS));
+                assert !working.closed.isDone();
+            }
+        } finally {
+            transport.stop();
+        }
+    }
+
+    private static void send(SocketChannel client, String frame) throws IOException {
+        var bytes = (frame + "\0").getBytes(StandardCharsets.UTF_8);
+        client.write(ByteBuffer.wrap(bytes));
+    }
+
+    private static class TestEndpoint implements Transport.Endpoint {
+
+        private final boolean fail;
+        private final LinkedBlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+        private TestEndpoint(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void handleFrame(byte[] frame) {
+            if (fail) throw new IllegalStateException("broken endpoint");
+            frames.add(new String(frame, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public byte[] nextFrame() {
+            return null;
+        }
+
+        @Override
+        public void handleClosed() {
+            closed.complete(null);
+        }
+    }
+}
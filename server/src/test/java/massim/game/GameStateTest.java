@@ -1,5 +1,6 @@
 package massim.game;
 
+import massim.game.environment.Torus;
 import massim.game.environment.positionable.Block;
 import massim.game.environment.positionable.Entity;
 import massim.game.environment.zones.ZoneType;
@@ -8,20 +9,22 @@ import massim.protocol.data.Position;
 import massim.protocol.data.Role;
 import massim.protocol.messages.scenario.ActionResults;
 import massim.protocol.messages.scenario.StepPercept;
-import massim.util.RNG;
+import org.json.JSONObject;
 
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class GameStateTest {
 
     private GameState state;
+    private Torus torus;
     private final int agents = 2;
 
     @org.junit.Before
     public void setUp() {
-        RNG.initialize(17);
         state = ConfigBuilder.buildGameState(this.agents);
+        torus = state.grid().torus();
     }
 
     @org.junit.Test
@@ -31,7 +34,7 @@ public class GameStateTest {
         Entity a1 = state.grid().entities().getByName("A1");
         assert a1 != null;
         assert state.grid().dispensers().create(dispenserPos, blockTypes.iterator().next()) != null;
-        assert state.teleport("A1", dispenserPos.moved("s", 2));
+        assert state.teleport("A1", torus.moved(dispenserPos, "s", 2));
 
         // too far away -> fail
         assert state.handleRequestAction(a1, "n").equals(ActionResults.FAILED_TARGET);
@@ -44,7 +47,7 @@ public class GameStateTest {
         // repeat -> fail
         assert state.handleRequestAction(a1, "n").equals(ActionResults.FAILED_BLOCKED);
         // another try
-        assert state.grid().dispensers().create(a1.getPosition().moved("e", 1),
+        assert state.grid().dispensers().create(torus.moved(a1.getPosition(), "e", 1),
                 blockTypes.iterator().next()) != null;
         assert state.handleRequestAction(a1, "e").equals(ActionResults.SUCCESS);
     }
@@ -86,8 +89,8 @@ public class GameStateTest {
         assert state.handleAttachAction(a2, "s").equals(ActionResults.SUCCESS);
 
         var percept = new StepPercept(state.getStepPercepts().get(a1.getAgentName()).toJson().getJSONObject("content"));
-        assert(percept.attachedThings.contains(a2.getPosition().relativeTo(a1.getPosition())));
-        assert(percept.attachedThings.contains(block.getPosition().relativeTo(a1.getPosition())));
+        assert(percept.attachedThings.contains(torus.relative(a2.getPosition(), a1.getPosition())));
+        assert(percept.attachedThings.contains(torus.relative(block.getPosition(), a1.getPosition())));
     }
 
     @org.junit.Test
@@ -138,7 +141,7 @@ public class GameStateTest {
             assert(a2.getEnergy() < energy);
         }
 
-        for (var j = 0; j < Entity.deactivatedDuration + 1; j++) {
+        for (var j = 0; j < state.grid().entities().getParameters().deactivatedDuration() + 1; j++) {
             assert(a2.isDeactivated());
             state.prepareStep(step + j);
         }
@@ -153,17 +156,17 @@ public class GameStateTest {
         a1.setRole(clearRole);
         var a2 = state.grid().entities().getByName("A2");
         state.teleport(a1.getAgentName(), Position.of(20, 20));
-        state.teleport(a2.getAgentName(), a1.getPosition().east());
+        state.teleport(a2.getAgentName(), torus.moved(a1.getPosition(), "e", 1));
 
         state.prepareStep(0);
         int energy = a2.getEnergy();
-        var result = state.handleClearAction(a1, Position.of(0, 0).east());
+        var result = state.handleClearAction(a1, torus.moved(Position.of(0, 0), "e", 1));
         assert result.equals(ActionResults.FAILED_TARGET);
         assert a2.getEnergy() == energy;
 
-        var block = state.grid().blocks().create(a1.getPosition().west(), "b1");
+        var block = state.grid().blocks().create(torus.moved(a1.getPosition(), "w", 1), "b1");
         assert block != null;
-        result = state.handleClearAction(a1, Position.of(0, 0).west());
+        result = state.handleClearAction(a1, torus.moved(Position.of(0, 0), "w", 1));
         assert result.equals(ActionResults.SUCCESS);
         assert state.grid().blocks().lookup(block.getPosition()) != block;
     }
@@ -186,7 +189,7 @@ public class GameStateTest {
         assert b3.collectAllAttachments(false).contains(b2);
 
         state.handleDisconnectAction(a1,
-                b2.getPosition().relativeTo(a1.getPosition()), b3.getPosition().relativeTo(a1.getPosition()));
+                torus.relative(b2.getPosition(), a1.getPosition()), torus.relative(b3.getPosition(), a1.getPosition()));
 
         assert !b2.collectAllAttachments(false).contains(b3);
         assert !b3.collectAllAttachments(false).contains(b2);
@@ -197,14 +200,14 @@ public class GameStateTest {
         var a1 = state.grid().entities().getByName("A1");
         assert a1 != null;
 
-        state.grid().addZone(ZoneType.ROLE, a1.getPosition().moved("n", 10), 2);
+        state.grid().addZone(ZoneType.ROLE, torus.moved(a1.getPosition(), "n", 10), 2);
         assert state.grid().getZones(ZoneType.ROLE).size() == 1;
         assert state.handleSurveyZoneAction(a1, ZoneType.ROLE).equals(ActionResults.SUCCESS);
         var percept = this.getPercept("A1");
         assert percept.stepEvents.length() == 1;
         assert percept.stepEvents.getJSONObject(0).getInt("distance") == 10;
 
-        state.grid().addZone(ZoneType.GOAL, a1.getPosition().moved("n", 7), 2);
+        state.grid().addZone(ZoneType.GOAL, torus.moved(a1.getPosition(), "n", 7), 2);
         assert state.grid().getZones(ZoneType.GOAL).size() == 1;
         assert state.handleSurveyZoneAction(a1, ZoneType.GOAL).equals(ActionResults.SUCCESS);
         percept = this.getPercept("A1");
@@ -213,8 +216,8 @@ public class GameStateTest {
 
         var pos = Position.of(10, 10);
         assert state.teleport("A1", pos);
-        assert state.teleport("A2", pos.moved("e", a1.getVision()));
-        assert state.teleport("B1", pos.moved("e", a1.getVision() + 1));
+        assert state.teleport("A2", torus.moved(pos, "e", a1.getVision()));
+        assert state.teleport("B1", torus.moved(pos, "e", a1.getVision() + 1));
         var a2 = state.grid().entities().getByName("A2");
         var b1 = state.grid().entities().getByName("B1");
         assert state.handleSurveyTargetAction(a1, a2.getPosition()).equals(ActionResults.SUCCESS);
@@ -223,16 +226,50 @@ public class GameStateTest {
         assert percept.stepEvents.length() == 1;
         assert percept.stepEvents.getJSONObject(0).getString("name").equals("A2");
 
-        state.grid().dispensers().create(pos.moved("s", 14), "b1");
+        state.grid().dispensers().create(torus.moved(pos, "s", 14), "b1");
         assert state.handleSurveyDispenserAction(a1).equals(ActionResults.SUCCESS);
         percept = this.getPercept("A1");
         assert percept.stepEvents.length() == 1;
         assert percept.stepEvents.getJSONObject(0).getInt("distance") == 14;
     }
 
+    @org.junit.Test
+    public void parallelPercepts() {
+        state.grid().addZone(ZoneType.GOAL, Position.of(10, 10), 3);
+        state.grid().obstacles().create(Position.of(11, 10));
+        var agents = List.of("A1", "A2", "B1", "B2");
+        for (var i = 0; i < agents.size(); i++) assert state.teleport(agents.get(i), Position.of(9 + i, 9 + i));
+        var sequential = state.getStepPercepts();
+        var pool = new ForkJoinPool(4);
+        try {
+            state.context().setPerceptPool(pool);
+            var parallel = state.getStepPercepts();
+            assert parallel.keySet().equals(sequential.keySet());
+            for (var agent : sequential.keySet()) {
+                var expected = sequential.get(agent).toJson().getJSONObject("content").getJSONObject("percept");
+                var actual = parallel.get(agent).toJson().getJSONObject("content").getJSONObject("percept");
+                // things are kept in a hash set of objects without equals, so only their order may differ
+                assert sortedThings(actual).equals(sortedThings(expected));
+                actual.remove("things");
+                expected.remove("things");
+                assert actual.toString().equals(expected.toString());
+            }
+        } finally {
+            state.context().setPerceptPool(null);
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> sortedThings(JSONObject percept) {
+        var things = new ArrayList<String>();
+        for (var thing : percept.getJSONArray("things")) things.add(thing.toString());
+        Collections.sort(things);
+        return things;
+    }
+
     @org.junit.Test
     public void testArea() {
-        var area = Position.of(10, 10).spanArea(2);
+        var area = torus.spanArea(Position.of(10, 10), 2);
         assert(area.size() == 13);
         assert(area.contains(Position.of(10, 10)));
         assert(area.contains(Position.of(10, 11)));
@@ -248,9 +285,9 @@ public class GameStateTest {
         assert(area.contains(Position.of(11, 11)));
         assert(area.contains(Position.of(11, 9)));
 
-        assert(Position.of(0,0).spanArea(3).size() == 25);
-        assert(Position.of(0,0).spanArea(1).size() == 5);
-        assert(Position.of(0,0).spanArea(0).size() == 1);
+        assert(torus.spanArea(Position.of(0,0), 3).size() == 25);
+        assert(torus.spanArea(Position.of(0,0), 1).size() == 5);
+        assert(torus.spanArea(Position.of(0,0), 0).size() == 1);
     }
 
     @org.junit.Test
@@ -258,10 +295,10 @@ public class GameStateTest {
         var grid = state.grid();
 
         //test basics
-        var pos1 = Position.wrapped(-1, -1);
+        var pos1 = torus.wrap(-1, -1);
         assert(pos1.equals(Position.of(grid.getDimX() - 1, grid.getDimY() - 1)));
 
-        var area = Position.of(0,0).spanArea(1);
+        var area = torus.spanArea(Position.of(0,0), 1);
         assert area.contains(Position.of(0,0));
         assert area.contains(Position.of(1,0));
         assert area.contains(Position.of(0,1));
@@ -22,7 +22,6 @@ import massim.protocol.data.NormInfo;
 import massim.protocol.data.Position;
 import massim.protocol.messages.scenario.StepPercept;
 import massim.util.IOUtil;
-import massim.util.RNG;
 
 public class NormsTest {
     private GameState state;
@@ -48,7 +47,6 @@ public class NormsTest {
 
     @org.junit.Before
     public void setUp() {
-        RNG.initialize(17);
         String currentPath = System.getProperty("user.dir");
         JSONObject config;
         try {
@@ -62,7 +60,8 @@ public class NormsTest {
             var teamB = new TeamConfig("B");
             for (var i = 1; i <= 3; i++)
                 teamB.addAgent("B" + i, "1");        
-            this.state = new GameState(config, Set.of(teamA, teamB));
+            config.put("randomSeed", 17);
+            this.state = new GameState(config, Set.of(teamA, teamB), SimulationContext.fromConfig(config));
         } catch (IOException e) {
             e.printStackTrace();
         }        
@@ -93,9 +92,9 @@ public class NormsTest {
 
         assert officer.getActiveNorms(25).size() == 1;
 
-        assert this.state.grid().blocks().create(pos.east(), "b1") != null;
+        assert this.state.grid().blocks().create(state.grid().torus().moved(pos, "e", 1), "b1") != null;
         assert this.state.handleAttachAction(a1, "e").equals(ActionResults.SUCCESS);
-        assert this.state.grid().blocks().create(pos2.west(), "b2") != null;
+        assert this.state.grid().blocks().create(state.grid().torus().moved(pos2, "w", 1), "b2") != null;
         assert this.state.handleAttachAction(a2, "w").equals(ActionResults.SUCCESS);
 
         officer.regulateNorms(25, agents);
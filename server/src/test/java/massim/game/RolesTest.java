@@ -10,7 +10,6 @@ import massim.protocol.data.Thing;
 import massim.protocol.messages.ActionMessage;
 import massim.protocol.messages.scenario.ActionResults;
 import massim.protocol.messages.scenario.StepPercept;
-import massim.util.RNG;
 import org.json.JSONObject;
 
 import java.util.List;
@@ -25,7 +24,6 @@ public class RolesTest {
 
     @org.junit.Before
     public void setUp() {
-        RNG.initialize(17);
         int agents = 2;
         this.config = ConfigBuilder.buildGameStateConfig(agents);
         this.teams = ConfigBuilder.buildTeams(agents);
@@ -39,7 +37,8 @@ public class RolesTest {
         var vision = 2;
         ConfigBuilder.addRole(config,
                 new Role("testRole", vision, Set.of("adopt"), new int[]{3,2,1}, 1, 1));
-        var state = new GameState(config, teams);
+        var state = new GameState(config, teams, SimulationContext.fromConfig(config));
+        var torus = state.grid().torus();
 
         var zones = state.grid().getZones(ZoneType.ROLE);
         assert zones.size() == number;
@@ -56,7 +55,7 @@ public class RolesTest {
 
         assert state.handleAdoptAction(a1, "unknownRole").equalsIgnoreCase(ActionResults.FAILED_PARAMETER);
 
-        assert state.teleport("A1", zoneCenter.moved("e", size + 1));
+        assert state.teleport("A1", torus.moved(zoneCenter, "e", size + 1));
         assert state.handleAdoptAction(a1, "testRole").equalsIgnoreCase(ActionResults.FAILED_LOCATION);
 
         assert state.teleport("A1", zoneCenter);
@@ -64,40 +63,40 @@ public class RolesTest {
 
         var position = a1.getPosition();
         assert state.handleMoveAction(a1, List.of("e", "e", "e")).equals(ActionResults.SUCCESS);
-        assert a1.getPosition().equals(position.moved("e", 3));
+        assert a1.getPosition().equals(torus.moved(position, "e", 3));
 
         position = a1.getPosition();
-        var obstacle = state.grid().obstacles().create(position.moved("e", 2));
+        var obstacle = state.grid().obstacles().create(torus.moved(position, "e", 2));
         assert obstacle != null;
         assert state.handleMoveAction(a1, List.of("e", "e", "e")).equals(ActionResults.PARTIAL_SUCCESS);
-        assert a1.getPosition().equals(position.moved("e", 1));
+        assert a1.getPosition().equals(torus.moved(position, "e", 1));
 
         position = a1.getPosition();
         assert state.grid().attach(a1, obstacle);
         assert state.handleMoveAction(a1, List.of("e", "e", "e")).equals(ActionResults.PARTIAL_SUCCESS);
-        assert a1.getPosition().equals(position.moved("e", 2));
+        assert a1.getPosition().equals(torus.moved(position, "e", 2));
 
         position = a1.getPosition();
-        var o2 = state.grid().obstacles().create(a1.getPosition().moved("w", 1));
+        var o2 = state.grid().obstacles().create(torus.moved(a1.getPosition(), "w", 1));
         assert state.grid().attach(a1, o2);
         assert state.handleMoveAction(a1, List.of("e", "e", "e")).equals(ActionResults.PARTIAL_SUCCESS);
-        assert a1.getPosition().equals(position.moved("e", 1));
+        assert a1.getPosition().equals(torus.moved(position, "e", 1));
 
         position = a1.getPosition();
-        var o3 = state.grid().obstacles().create(a1.getPosition().moved("n", 1));
+        var o3 = state.grid().obstacles().create(torus.moved(a1.getPosition(), "n", 1));
         assert state.grid().attach(a1, o3);
         assert state.handleMoveAction(a1, List.of("e", "e", "e")).equals(ActionResults.PARTIAL_SUCCESS);
-        assert a1.getPosition().equals(position.moved("e", 1));
+        assert a1.getPosition().equals(torus.moved(position, "e", 1));
 
         position = a1.getPosition();
-        var b1 = state.grid().blocks().create(position.moved("s", vision), "b1");
-        var b2 = state.grid().blocks().create(position.moved("s", vision + 1), "b1");
+        var b1 = state.grid().blocks().create(torus.moved(position, "s", vision), "b1");
+        var b2 = state.grid().blocks().create(torus.moved(position, "s", vision + 1), "b1");
         assert b1 != null && b2 != null;
         var percept = new StepPercept(state.getStepPercepts().get(a1.getAgentName()).toJson().getJSONObject("content"));
-        assert perceptContainsThing(percept, b1.toPercept(a1.getPosition()));
-        assert !perceptContainsThing(percept, b2.toPercept(a1.getPosition()));
+        assert perceptContainsThing(percept, b1.toPercept(torus.relative(b1.getPosition(), a1.getPosition())));
+        assert !perceptContainsThing(percept, b2.toPercept(torus.relative(b2.getPosition(), a1.getPosition())));
 
-        var sim = new Simulation();
+        var sim = new Simulation(SimulationContext.fromConfig(config));
         sim.init(1000, config, teams);
         sim.preStep(0);
         sim.step(0, Map.of("A1", new ActionMessage("survey", 0, List.of("goal"))));
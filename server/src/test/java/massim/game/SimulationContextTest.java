@@ -0,0 +1,58 @@
+package massim.game;
+
+import massim.game.environment.positionable.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimulationContextTest {
+
+    private static final Entity.Parameters PARAMETERS = new Entity.Parameters(100, 2, 4, 1, 50);
+
+    @org.junit.Test
+    public void streamsAreDeterministic() {
+        var c1 = new SimulationContext(17, 10, 10, PARAMETERS);
+        var c2 = new SimulationContext(17, 10, 10, PARAMETERS);
+        for (var stream : SimulationContext.Stream.values())
+            assert draw(c1, stream).equals(draw(c2, stream));
+
+        var c3 = new SimulationContext(18, 10, 10, PARAMETERS);
+        assert !draw(c1, SimulationContext.Stream.TASKS).equals(draw(c3, SimulationContext.Stream.TASKS));
+    }
+
+    @org.junit.Test
+    public void streamsAreIndependent() {
+        var c1 = new SimulationContext(17, 10, 10, PARAMETERS);
+        var c2 = new SimulationContext(17, 10, 10, PARAMETERS);
+        // use one stream much more in the first context
+        for (var i = 0; i < 1000; i++) c1.rng(SimulationContext.Stream.EVENTS).nextDouble();
+        c1.rng(SimulationContext.Stream.WORLD).shuffle(new ArrayList<>(List.of(1, 2, 3, 4, 5)));
+
+        assert draw(c1, SimulationContext.Stream.TASKS).equals(draw(c2, SimulationContext.Stream.TASKS));
+        assert draw(c1, SimulationContext.Stream.NORMS).equals(draw(c2, SimulationContext.Stream.NORMS));
+        assert !draw(c1, SimulationContext.Stream.EVENTS).equals(draw(c2, SimulationContext.Stream.EVENTS));
+        assert !draw(c1, SimulationContext.Stream.TASKS).equals(draw(c1, SimulationContext.Stream.NORMS));
+    }
+
+    @org.junit.Test
+    public void shuffle() {
+        var list = new ArrayList<Integer>();
+        for (var i = 0; i < 20; i++) list.add(i);
+        var shuffled = new ArrayList<>(list);
+        new SimulationContext(17, 10, 10, PARAMETERS).rng(SimulationContext.Stream.ACTIONS).shuffle(shuffled);
+        var again = new ArrayList<>(list);
+        new SimulationContext(17, 10, 10, PARAMETERS).rng(SimulationContext.Stream.ACTIONS).shuffle(again);
+
+        assert shuffled.equals(again);
+        assert !shuffled.equals(list);
+        shuffled.sort(null);
+        assert shuffled.equals(list);
+    }
+
+    private static List<Integer> draw(SimulationContext context, SimulationContext.Stream stream) {
+        var rng = context.rng(stream);
+        var numbers = new ArrayList<Integer>();
+        for (var i = 0; i < 10; i++) numbers.add(rng.betweenClosed(0, 1000));
+        return numbers;
+    }
+}
@@ -0,0 +1,34 @@
+package massim.game.environment;
+
+import massim.protocol.data.Position;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+public class DiamondTest {
+
+    @Test
+    public void matchesSpanArea() {
+        var torus = new Torus(30, 30);
+        for (var radius = 0; radius <= 7; radius++) {
+            var diamond = Diamond.of(radius);
+            var cells = new HashSet<Position>();
+            for (var i = 0; i < diamond.size(); i++)
+                cells.add(torus.wrap(10 + diamond.dx(i), 10 + diamond.dy(i)));
+            assert diamond.size() == cells.size();
+            assert cells.equals(new HashSet<>(torus.spanArea(Position.of(10, 10), radius)));
+        }
+    }
+
+    @Test
+    public void rowByRow() {
+        var diamond = Diamond.of(2);
+        assert diamond.getRadius() == 2 && diamond.size() == 13;
+        for (var i = 1; i < diamond.size(); i++) {
+            assert diamond.dy(i - 1) <= diamond.dy(i);
+            if (diamond.dy(i - 1) == diamond.dy(i)) assert diamond.dx(i - 1) < diamond.dx(i);
+        }
+        assert Diamond.of(2) == diamond;
+        assert Diamond.of(-1).size() == 1;
+    }
+}
@@ -1,7 +1,9 @@
 package massim.game.environment;
 
+import massim.game.environment.positionable.Marker;
 import massim.protocol.data.Position;
-import massim.util.RNG;
+import massim.game.SimulationContext;
+import massim.game.environment.positionable.Entity;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -15,8 +17,6 @@ public class GridTest {
 
     @org.junit.Before
     public void setUp() {
-        RNG.initialize(17);
-        
         this.gridjson = new JSONObject()
                 .put("height", 70)
                 .put("width", 70)
@@ -30,12 +30,11 @@ public class GridTest {
         this.gridjson.put("height", 5);
         this.gridjson.put("width", 5);
         System.out.println(this.gridjson.toString());
-        Grid grid = new Grid(this.gridjson, 10);
+        Grid grid = newGrid();
 
         printGridTerrain(grid);
         
         System.out.println("Testing cluster size 1");
-        RNG.initialize(15);
         ArrayList<Position> cluster = grid.findRandomFreeClusterPosition(1);
         assertNotNull(cluster);
         assert(cluster.size()==1);
@@ -44,7 +43,6 @@ public class GridTest {
 //        assert(cluster.get(0).toString().equals("(2,2)"));
 
         System.out.println("Testing cluster size 3");
-        RNG.initialize(15);
         printGridTerrain(grid);
         ArrayList<Position> cluster3 = grid.findRandomFreeClusterPosition(3);
         assertNotNull(cluster3);
@@ -55,6 +53,36 @@ public class GridTest {
         assert grid.isUnblocked(cluster3.get(2));
     }
 
+    @org.junit.Test
+    public void multipleThingsPerCell() {
+        Grid grid = newGrid();
+        grid.markers().clear();
+        var pos = Position.of(69, 0);
+        var m1 = grid.markers().create(pos, Marker.Type.CLEAR);
+        var m2 = grid.markers().create(pos, Marker.Type.CLEAR_PERIMETER);
+        var m3 = grid.markers().create(pos, Marker.Type.CLEAR_IMMEDIATE);
+        assert grid.markers().lookup(pos).equals(Set.of(m1, m2, m3));
+
+        m2.destroy();
+        assert grid.markers().lookup(pos).equals(Set.of(m1, m3));
+        m1.moveTo(grid.torus().moved(pos, "e", 1));
+        assert grid.markers().lookup(pos).equals(Set.of(m3));
+        assert grid.markers().lookup(Position.of(0, 0)).equals(Set.of(m1));
+        assert grid.markers().isTaken(Position.of(70, 70));
+
+        m3.destroy();
+        assert !grid.markers().isTaken(pos);
+        var m4 = grid.markers().create(pos, Marker.Type.CLEAR);
+        assert grid.markers().lookup(pos).equals(Set.of(m4));
+        assert grid.markers().getAll().equals(Set.of(m1, m4));
+    }
+
+    private Grid newGrid() {
+        var context = new SimulationContext(17, gridjson.getInt("width"), gridjson.getInt("height"),
+                new Entity.Parameters(100, 2, 4, 1, 50));
+        return new Grid(this.gridjson, 10, context);
+    }
+
     private void printGridTerrain(Grid grid){
         for (int x=0; x < grid.getDimX(); x++){
             System.out.println(" ");
@@ -0,0 +1,38 @@
+package massim.game.environment;
+
+import massim.protocol.data.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TorusTest {
+
+    @Test
+    public void distance() {
+        int dim = 100;
+        var torus = new Torus(dim, dim);
+
+        var p1 = Position.of(99,99);
+        var p2 = Position.of(0,99);
+        var p3 = Position.of(99,0);
+        var p4 = Position.of(0,0);
+        var p5 = Position.of(0,50);
+
+        assert torus.distance(p1, p2) == 1;
+        assert torus.distance(p1, p3) == 1;
+        assert torus.distance(p1, p4) == 2;
+        assert torus.distance(p2, p3) == 2;
+        assert torus.distance(p2, p4) == 1;
+        assert torus.distance(p3, p4) == 1;
+
+        assert torus.distance(p1, p2) == torus.distance(p2, p1);
+        assert torus.distance(p1, p3) == torus.distance(p3, p1);
+        assert torus.distance(p1, p4) == torus.distance(p4, p1);
+        assert torus.distance(p2, p3) == torus.distance(p3, p2);
+        assert torus.distance(p2, p4) == torus.distance(p4, p2);
+        assert torus.distance(p3, p4) == torus.distance(p4, p3);
+
+        assert torus.distance(p4, p5) == 50;
+        assert torus.distance(p5, p4) == 50;
+    }
+}
\ No newline at end of file
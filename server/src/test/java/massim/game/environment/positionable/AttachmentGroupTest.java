@@ -0,0 +1,57 @@
+package massim.game.environment.positionable;
+
+import massim.game.SimulationContext;
+import massim.game.environment.Grid;
+import massim.protocol.data.Position;
+import massim.protocol.data.Role;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Set;
+
+public class AttachmentGroupTest {
+
+    private Grid grid;
+
+    @org.junit.Before
+    public void setUp() {
+        var gridjson = new JSONObject()
+                .put("height", 30)
+                .put("width", 30)
+                .put("instructions", new JSONArray())
+                .put("goals", new JSONObject("{\"number\" : 0,\"size\" : [1,1],\"moveProbability\" : 0}"))
+                .put("roleZones", new JSONObject("{\"number\" : 0,\"size\" : [1,1]}"));
+        var context = new SimulationContext(17, 30, 30, new Entity.Parameters(100, 2, 4, 1, 50));
+        grid = new Grid(gridjson, 10, context);
+        grid.blocks().addType("b1");
+    }
+
+    @org.junit.Test
+    public void groups() {
+        var role = new Role("default", 5, Set.of(), new int[]{1}, 1, 1);
+        var a1 = grid.entities().create(Position.of(10, 10), "A1", "A", role);
+        var b1 = grid.blocks().create(Position.of(11, 10), "b1");
+        var b2 = grid.blocks().create(Position.of(11, 11), "b1");
+        var b3 = grid.blocks().create(Position.of(10, 11), "b1");
+        var b4 = grid.blocks().create(Position.of(12, 11), "b1");
+        assert !b1.isAttachedToAnotherEntity();
+        assert grid.attach(a1, b1);
+        assert grid.attach(b1, b2);
+        assert grid.attach(b2, b3);
+        assert grid.attach(b3, a1); // cycle
+        assert grid.attach(b2, b4);
+        assert a1.getGroupSize() == 5 && b4.getGroupSize() == 5;
+        assert b4.isAttachedToAnotherEntity() && !a1.isAttachedToAnotherEntity();
+
+        // still connected through the cycle
+        assert grid.detachNeighbors(a1, b1);
+        assert a1.isConnectedTo(b1) && a1.getGroupSize() == 5;
+
+        b2.destroy();
+        assert !a1.isConnectedTo(b1) && !a1.isConnectedTo(b4);
+        assert a1.isConnectedTo(b3) && a1.getGroupSize() == 2;
+        assert b1.getGroupSize() == 1 && b4.getGroupSize() == 1 && b2.getGroupSize() == 1;
+        assert !b4.isAttachedToAnotherEntity() && b3.isAttachedToAnotherEntity();
+        assert a1.collectAllAttachments(false).equals(Set.of(b3));
+    }
+}
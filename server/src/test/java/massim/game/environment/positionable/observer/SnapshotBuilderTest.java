@@ -0,0 +1,84 @@
+package massim.game.environment.positionable.observer;
+
+import massim.game.SimulationContext;
+import massim.game.environment.Grid;
+import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.Positionable;
+import massim.protocol.data.Position;
+import massim.protocol.data.Role;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class SnapshotBuilderTest {
+
+    private Grid grid;
+
+    @org.junit.Before
+    public void setUp() {
+        var gridjson = new JSONObject()
+                .put("height", 40)
+                .put("width", 40)
+                .put("instructions", new JSONArray())
+                .put("goals", new JSONObject("{\"number\" : 0,\"size\" : [1,1],\"moveProbability\" : 0}"))
+                .put("roleZones", new JSONObject("{\"number\" : 0,\"size\" : [1,1]}"));
+        var context = new SimulationContext(17, 40, 40, new Entity.Parameters(100, 2, 4, 1, 50));
+        grid = new Grid(gridjson, 10, context);
+        grid.blocks().addType("b1");
+    }
+
+    @org.junit.Test
+    public void incrementalUpdates() {
+        var snapshots = grid.snapshots();
+        var role = new Role("default", 5, Set.of(), new int[]{1}, 1, 1);
+        var a1 = grid.entities().create(Position.of(10, 10), "A1", "A", role);
+        var b1 = grid.blocks().create(Position.of(11, 10), "b1");
+        var b2 = grid.blocks().create(Position.of(12, 10), "b1");
+        var b3 = grid.blocks().create(Position.of(20, 20), "b1");
+        grid.obstacles().create(Position.of(30, 30));
+        grid.dispensers().create(Position.of(5, 5), "b1");
+        snapshots.update();
+        assertMatchesGrid();
+        assert snapshots.getEntities().size() == 1 && snapshots.getEntities().contains(a1);
+        var obstacles = snapshots.getObstacles();
+
+        assert grid.attach(a1, b1) && grid.attach(b1, b2);
+        grid.moveWithAttached(a1, "s", 1);
+        b3.destroy();
+        snapshots.update();
+        assertMatchesGrid();
+        assert findByID(snapshots.getBlocks(), b2.getID()).getJSONArray("attached").length() == 2;
+
+        // unchanged things keep their JSON objects
+        var obstacle = snapshots.getObstacles().getJSONObject(0);
+        assert obstacle == findByID(obstacles, obstacle.getInt("id"));
+
+        grid.detachNeighbors(b1, b2);
+        snapshots.update();
+        assertMatchesGrid();
+        assert !findByID(snapshots.getBlocks(), b2.getID()).has("attached");
+    }
+
+    private void assertMatchesGrid() {
+        var snapshots = grid.snapshots();
+        assertMatches(snapshots.getBlocks(), grid.blocks().getAll());
+        assertMatches(snapshots.getObstacles(), grid.obstacles().getAll());
+        assertMatches(snapshots.getDispensers(), grid.dispensers().getAll());
+    }
+
+    private static void assertMatches(JSONArray items, Collection<? extends Positionable> expected) {
+        var actual = new HashSet<String>();
+        for (var item : items) actual.add(item.toString());
+        assert actual.equals(expected.stream().map(p -> p.toJSON().toString()).collect(Collectors.toSet()));
+    }
+
+    private static JSONObject findByID(JSONArray items, int id) {
+        for (var item : items)
+            if (((JSONObject) item).getInt("id") == id) return (JSONObject) item;
+        return null;
+    }
+}
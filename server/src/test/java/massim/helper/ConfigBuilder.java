@@ -2,6 +2,7 @@ package massim.helper;
 
 import massim.config.TeamConfig;
 import massim.game.GameState;
+import massim.game.SimulationContext;
 import massim.protocol.data.Role;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -13,7 +14,15 @@ import java.util.Set;
 public abstract class ConfigBuilder {
 
     public static GameState buildGameState(int agents) {
-        return new GameState(buildGameStateConfig(agents), buildTeams(agents));
+        return buildGameState(buildGameStateConfig(agents), agents);
+    }
+
+    public static GameState buildGameState(int agents, int size, int vision) {
+        return buildGameState(buildGameStateConfig(agents, size, vision), agents);
+    }
+
+    public static GameState buildGameState(JSONObject config, int agents) {
+        return new GameState(config, buildTeams(agents), SimulationContext.fromConfig(config));
     }
 
     public static Set<TeamConfig> buildTeams(int agents) {
@@ -28,8 +37,17 @@ public abstract class ConfigBuilder {
     }
 
     public static JSONObject buildGameStateConfig(int agents) {
+        return buildGameStateConfig(agents, 100, 5);
+    }
+
+    /**
+     * @param size width and height of the grid
+     * @param vision the vision of the default role
+     */
+    public static JSONObject buildGameStateConfig(int agents, int size, int vision) {
         return new JSONObject()
                 .put("steps", 500)
+                .put("randomSeed", 17)
                 .put("randomFail", 1)
                 .put("entities", new JSONObject().put("standard", agents))
                 .put("clusterBounds", new JSONArray().put(1).put(3))
@@ -41,8 +59,8 @@ public abstract class ConfigBuilder {
                 .put("maxEnergy", 100)
                 .put("attachLimit", 10)
                 .put("grid", new JSONObject()
-                        .put("height", 100)
-                        .put("width", 100)
+                        .put("height", size)
+                        .put("width", size)
                         .put("instructions", new JSONArray())
                         .put("goals", new JSONObject()
                                 .put("number", 0)
@@ -72,7 +90,7 @@ public abstract class ConfigBuilder {
                 .put("roles", new JSONArray()
                         .put(new JSONObject()
                                 .put("name", "default")
-                                .put("vision", 5)
+                                .put("vision", vision)
                                 .put("actions", new JSONArray(List.of("skip", "move", "rotate", "adopt", "request", "attach", "detach", "connect", "disconnect", "submit", "clear")))
                                 .put("speed", new JSONArray(List.of(1, 1, 0)))
                                 .put("clear", new JSONObject()
@@ -94,6 +112,18 @@ public abstract class ConfigBuilder {
         );
     }
 
+    /**
+     * Adds cave-like obstacles covering roughly the given share of the grid.
+     */
+    public static void setObstacles(JSONObject config, double chance) {
+        config.getJSONObject("grid").put("instructions", new JSONArray()
+                .put(new JSONArray(List.of("cave", chance, 2, 5, 4))));
+    }
+
+    public static void setDispensers(JSONObject config, int min, int max) {
+        config.put("dispensers", new JSONArray().put(min).put(max));
+    }
+
     public static void addRole(JSONObject config, Role role) {
         config.getJSONArray("roles").put(new JSONObject()
                 .put("name", role.name())
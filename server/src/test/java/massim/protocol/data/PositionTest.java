@@ -1,5 +1,6 @@
 package massim.protocol.data;
 
+import org.json.JSONArray;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -7,6 +8,14 @@ import static org.junit.Assert.*;
 public class PositionTest {
 
     @Test
+    public void json() {
+        var p = Position.of(3, -7);
+        assert Position.fromJSON(new JSONArray(p.toJSON().toString())).equals(p);
+        assert p.toJSON().getInt(0) == 3 && p.toJSON().getInt(1) == -7;
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
     public void distanceTo() {
         int dim = 100;
         Position.setGridDimensions(dim, dim);
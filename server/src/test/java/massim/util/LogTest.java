@@ -0,0 +1,48 @@
+package massim.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class LogTest {
+
+    @org.junit.Test
+    public void concurrentMessages() throws InterruptedException {
+        var out = new ByteArrayOutputStream();
+        var log = new Log();
+        log.changeOutputStream(Log.Level.DEBUG, out);
+        Log.setLogLevel(Log.Level.NORMAL);
+        try {
+            // disabled levels do not even create the message
+            Log.log(Log.Level.DEBUG, () -> { throw new AssertionError(); });
+
+            Log.setLogLevel(Log.Level.DEBUG);
+            var threads = new ArrayList<Thread>();
+            for (var t = 0; t < 4; t++) {
+                var name = "t" + t;
+                threads.add(new Thread(() -> {
+                    for (var i = 0; i < 500; i++) Log.log(Log.Level.DEBUG, name + " message " + i);
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (var thread : threads) thread.join();
+            Log.flush();
+        } finally {
+            Log.flush();
+            log.changeOutputStream(Log.Level.DEBUG, System.out);
+            Log.setLogLevel(Log.Level.NORMAL);
+        }
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assert lines.length == 2000;
+        var lastIndex = new int[] {-1, -1, -1, -1};
+        for (var line : lines) {
+            assert line.startsWith("[ DEBUG  ] ") && line.contains("LogTest");
+            var parts = line.substring(line.indexOf("##   ") + 5).split(" message ");
+            var thread = Integer.parseInt(parts[0].substring(1));
+            var index = Integer.parseInt(parts[1]);
+            assert index == lastIndex[thread] + 1; // messages of one thread keep their order
+            lastIndex[thread] = index;
+        }
+    }
+}